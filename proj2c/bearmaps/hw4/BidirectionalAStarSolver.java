@@ -0,0 +1,210 @@
+package bearmaps.hw4;
+
+import bearmaps.proj2ab.ArrayHeapMinPQ;
+import edu.princeton.cs.algs4.Stopwatch;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A* search from both ends at once. The forward search grows from the start
+ * and the reverse search grows backwards from the end, each roughly half as
+ * far as a single search would, and they stop as soon as neither can improve
+ * on the best meeting point found so far.
+ *
+ * Both searches use the average potential
+ *     pf(v) = (h(v, end) - h(start, v)) / 2,   pr(v) = -pf(v),
+ * keying vertices by dist + pf in the forward queue and dist + pr in the
+ * reverse queue. Unlike the plain heuristic on each side, this makes both
+ * searches see the same reduced edge weights, so the search may stop as soon
+ * as the two smallest keys sum to at least the best path length found. This
+ * is only correct if the heuristic is consistent, as great-circle distance
+ * is.
+ */
+public class BidirectionalAStarSolver<Vertex> implements ShortestPathsSolver<Vertex> {
+    private SolverOutcome outcome;
+    private LinkedList<Vertex> solution = new LinkedList<>();
+    private double solutionWeight;
+    private int numStatesExplored;
+    private double explorationTime;
+    private final double INF = Double.POSITIVE_INFINITY;
+
+    private final AStarGraph<Vertex> input;
+    private final AStarGraph<Vertex> reverse;
+    private final Vertex start;
+    private final Vertex end;
+    private final Map<Vertex, Double> potential = new HashMap<>();
+
+    /**
+     * Solves on a graph in which every edge has a reverse edge of the same
+     * weight, as in the street graphs. Note that timeout passed in is in
+     * seconds.
+     */
+    public BidirectionalAStarSolver(AStarGraph<Vertex> input, Vertex start, Vertex end,
+                                    double timeout) {
+        this(input, input, start, end, timeout);
+    }
+
+    /**
+     * Solves on any directed graph, given its REVERSE: a graph in which
+     * neighbors(v) lists an edge v -> u for every edge u -> v of INPUT, with
+     * the same weight. Note that timeout passed in is in seconds.
+     */
+    public BidirectionalAStarSolver(AStarGraph<Vertex> input, AStarGraph<Vertex> reverse,
+                                    Vertex start, Vertex end, double timeout) {
+        this.input = input;
+        this.reverse = reverse;
+        this.start = start;
+        this.end = end;
+
+        ArrayHeapMinPQ<Vertex> forwardPQ = new ArrayHeapMinPQ<>();
+        ArrayHeapMinPQ<Vertex> reversePQ = new ArrayHeapMinPQ<>();
+        Map<Vertex, Double> distToStart = new HashMap<>();
+        Map<Vertex, Double> distToEnd = new HashMap<>();
+        Map<Vertex, Vertex> edgeTo = new HashMap<>();
+        Map<Vertex, Vertex> edgeFrom = new HashMap<>();
+
+        Stopwatch sw = new Stopwatch();
+        distToStart.put(start, 0.0);
+        forwardPQ.add(start, potential(start));
+        distToEnd.put(end, 0.0);
+        reversePQ.add(end, -potential(end));
+
+        // The best path found so far runs through meet and is best long.
+        double best = start.equals(end) ? 0 : INF;
+        Vertex meet = start.equals(end) ? start : null;
+
+        while (forwardPQ.size() != 0 && reversePQ.size() != 0) {
+            double topForward = distToStart.get(forwardPQ.getSmallest())
+                    + potential(forwardPQ.getSmallest());
+            double topReverse = distToEnd.get(reversePQ.getSmallest())
+                    - potential(reversePQ.getSmallest());
+            if (topForward + topReverse >= best) {
+                break;
+            }
+
+            // Expand whichever side has the smaller key.
+            boolean goForward = topForward <= topReverse;
+            ArrayHeapMinPQ<Vertex> pq = goForward ? forwardPQ : reversePQ;
+            Map<Vertex, Double> dist = goForward ? distToStart : distToEnd;
+            Map<Vertex, Double> otherDist = goForward ? distToEnd : distToStart;
+            Map<Vertex, Vertex> parent = goForward ? edgeTo : edgeFrom;
+            double sign = goForward ? 1 : -1;
+
+            Vertex source = pq.removeSmallest();
+            List<WeightedEdge<Vertex>> neighborEdges = goForward
+                    ? input.neighbors(source) : reverse.neighbors(source);
+            numStatesExplored += 1;
+
+            // Check time spent, if exceeds the timeout, return.
+            explorationTime = sw.elapsedTime();
+            if (explorationTime > timeout) {
+                outcome = SolverOutcome.TIMEOUT;
+                solution = new LinkedList<>();
+                solutionWeight = 0;
+                return;
+            }
+
+            for (WeightedEdge<Vertex> edge : neighborEdges) {
+                Vertex dest = edge.to();
+                double newDist = dist.get(source) + edge.weight();
+                if (newDist < dist.getOrDefault(dest, INF)) {
+                    dist.put(dest, newDist);
+                    parent.put(dest, source);
+                    double key = newDist + sign * potential(dest);
+                    if (pq.contains(dest)) {
+                        pq.changePriority(dest, key);
+                    } else {
+                        pq.add(dest, key);
+                    }
+
+                    // A vertex reached from both sides completes a path.
+                    Double rest = otherDist.get(dest);
+                    if (rest != null && newDist + rest < best) {
+                        best = newDist + rest;
+                        meet = dest;
+                    }
+                }
+            }
+        }
+
+        if (meet == null) {
+            outcome = SolverOutcome.UNSOLVABLE;
+            solution = new LinkedList<>();
+            solutionWeight = 0;
+            explorationTime = sw.elapsedTime();
+            return;
+        }
+
+        outcome = SolverOutcome.SOLVED;
+        solutionWeight = best;
+        for (Vertex v = meet; v != null; v = edgeTo.get(v)) {
+            solution.addFirst(v);
+        }
+        for (Vertex v = edgeFrom.get(meet); v != null; v = edgeFrom.get(v)) {
+            solution.addLast(v);
+        }
+        explorationTime = sw.elapsedTime();
+    }
+
+    /** Returns the forward potential of V, computing it on first use. */
+    private double potential(Vertex v) {
+        Double p = potential.get(v);
+        if (p == null) {
+            p = (input.estimatedDistanceToGoal(v, end)
+                    - reverse.estimatedDistanceToGoal(v, start)) / 2;
+            potential.put(v, p);
+        }
+        return p;
+    }
+
+    /**
+     * Returns one of SolverOutcome.SOLVED, SolverOutcome.TIMEOUT,
+     * or SolverOutcome.UNSOLVABLE, with the same meaning as for AStarSolver.
+     *
+     * @return the outcome
+     */
+    public SolverOutcome outcome() {
+        return outcome;
+    }
+
+    /**
+     * A list of vertices corresponding to a solution. Should be empty
+     * if result was TIMEOUT or UNSOLVABLE.
+     *
+     * @return a list of vertices corresponding to a solution
+     */
+    public List<Vertex> solution() {
+        return solution;
+    }
+
+    /**
+     * The total weight of the given solution, taking into account edge
+     * weights. Should be 0 if result was TIMEOUT or UNSOLVABLE.
+     *
+     * @return the total weight of the given solution
+     */
+    public double solutionWeight() {
+        return solutionWeight;
+    }
+
+    /**
+     * The total number of priority queue dequeue operations, counting both
+     * directions.
+     *
+     * @return the total number of priority queue dequeue operations
+     */
+    public int numStatesExplored() {
+        return numStatesExplored;
+    }
+
+    /**
+     * The total time spent in seconds by the constructor.
+     *
+     * @return the total time spent in seconds by the constructor
+     */
+    public double explorationTime() {
+        return explorationTime;
+    }
+}
@@ -0,0 +1,70 @@
+package bearmaps.hw4;
+
+import bearmaps.proj2ab.IntArrayHeapMinPQ;
+
+import java.util.Arrays;
+
+/**
+ * Finds every vertex of an IntAStarGraph within a given distance of a
+ * source: Dijkstra's algorithm, stopped as soon as the closest unsettled
+ * vertex is beyond the budget, so the work is proportional to the size of
+ * the ball it finds rather than to the graph. The search runs on the calling
+ * thread's SearchState, and the result is kept in primitive arrays.
+ */
+public class BoundedDijkstra {
+    private int[] vertices = new int[16];
+    private double[] distances = new double[16];
+    private int numReached;
+
+    /** Finds the vertices of G at most BUDGET from SOURCE. */
+    public BoundedDijkstra(IntAStarGraph g, int source, double budget) {
+        SearchState state = SearchState.forThread(g.numVertices());
+        state.begin();
+        IntArrayHeapMinPQ pq = state.heap();
+        state.touch(source, 0);
+        state.relax(source, 0, -1, -1);
+        pq.add(source, 0);
+
+        while (pq.size() != 0 && pq.smallestPriority() <= budget) {
+            int v = pq.removeSmallest();
+            double dv = state.dist(v);
+            if (numReached == vertices.length) {
+                vertices = Arrays.copyOf(vertices, numReached * 2);
+                distances = Arrays.copyOf(distances, numReached * 2);
+            }
+            vertices[numReached] = v;
+            distances[numReached] = dv;
+            numReached += 1;
+            for (int e = g.firstEdge(v); e < g.endEdge(v); e += 1) {
+                int w = g.edgeTarget(e);
+                if (!state.touched(w)) {
+                    state.touch(w, 0);
+                }
+                double d = dv + g.edgeWeight(e);
+                if (d < state.dist(w)) {
+                    state.relax(w, d, v, e);
+                    if (pq.contains(w)) {
+                        pq.changePriority(w, d);
+                    } else {
+                        pq.add(w, d);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Returns the number of vertices within the budget. */
+    public int numReached() {
+        return numReached;
+    }
+
+    /** Returns the I-th vertex reached, in increasing order of distance. */
+    public int vertex(int i) {
+        return vertices[i];
+    }
+
+    /** Returns the distance from the source to the I-th vertex reached. */
+    public double distance(int i) {
+        return distances[i];
+    }
+}
@@ -0,0 +1,85 @@
+package bearmaps.hw4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computes matrices of shortest distances between many sources and many
+ * targets, one row per source, with the rows split among several threads.
+ * Each row is an independent OneToManySolver query, so threads never share
+ * anything but the solver and write to disjoint rows.
+ *
+ * The worker threads come from a fixed pool shared by all callers, so the
+ * number of threads at work stays bounded however many matrices are asked
+ * for at once. The calling thread computes rows too, rather than waiting.
+ */
+public class DistanceMatrix {
+    private final ExecutorService pool;
+    private final int parallelism;
+
+    /** Creates a DistanceMatrix that uses up to PARALLELISM threads including the caller's. */
+    public DistanceMatrix(int parallelism) {
+        this.parallelism = Math.max(parallelism, 1);
+        if (this.parallelism == 1) {
+            pool = null;
+        } else {
+            AtomicInteger threads = new AtomicInteger();
+            pool = Executors.newFixedThreadPool(this.parallelism - 1, r -> {
+                Thread t = new Thread(r, "distance-matrix-" + threads.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /**
+     * Returns the distances from each of SOURCES to each target of SOLVER:
+     * entry [i][j] is the distance from SOURCES[i] to the j-th target, or
+     * infinity if it cannot be reached.
+     */
+    public double[][] compute(OneToManySolver solver, int[] sources) {
+        double[][] rows = new double[sources.length][];
+        // Rows are handed out one at a time, since some sources take far
+        // longer than others to reach all the targets.
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            for (int i = next.getAndIncrement(); i < sources.length; i = next.getAndIncrement()) {
+                rows[i] = solver.distancesFrom(sources[i]);
+            }
+        };
+        if (pool == null || sources.length < 2) {
+            worker.run();
+            return rows;
+        }
+
+        int helpers = Math.min(parallelism, sources.length) - 1;
+        List<Future<?>> futures = new ArrayList<>(helpers);
+        for (int i = 0; i < helpers; i += 1) {
+            futures.add(pool.submit(worker));
+        }
+        worker.run();
+        try {
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while computing distances", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not compute distances", e.getCause());
+        }
+        return rows;
+    }
+
+    /** Stops the worker threads. The DistanceMatrix must not be used afterwards. */
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package bearmaps.hw4;
+
+/**
+ * Represents a graph whose vertices are the dense integers 0..numVertices()-1
+ * and whose outgoing edges are numbered contiguously per vertex, so that
+ * solvers can walk it without allocating.
+ */
+public interface IntAStarGraph {
+    int numVertices();
+    /* Returns the id of the first outgoing edge of V. */
+    int firstEdge(int v);
+    /* Returns one past the id of the last outgoing edge of V. */
+    int endEdge(int v);
+    int edgeTarget(int e);
+    double edgeWeight(int e);
+    double estimatedDistanceToGoal(int s, int goal);
+}
@@ -0,0 +1,151 @@
+package bearmaps.hw4;
+
+import bearmaps.proj2ab.IntArrayHeapMinPQ;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An AStarSolver specialised for IntAStarGraphs. The search runs on the
+ * calling thread's SearchState, so repeated queries reuse the same primitive
+ * arrays instead of allocating maps. It expands vertices, relaxes edges and
+ * breaks ties in exactly the same order as AStarSolver, so on the same graph
+ * both solvers return identical paths and weights.
+ */
+public class IntAStarSolver implements IntShortestPathsSolver {
+    /* The clock is only read once per this many dequeues. */
+    private static final int TIMEOUT_CHECK_INTERVAL = 256;
+
+    private SolverOutcome outcome;
+    private int[] solution = new int[0];
+    private int[] solutionEdges = new int[0];
+    private double solutionWeight;
+    private int numStatesExplored;
+    private double explorationTime;
+
+    /**
+     * Constructor which finds the solution, computing everything necessary
+     * for all other methods to return their results in constant time. Note
+     * that timeout passed in is in seconds.
+     */
+    public IntAStarSolver(IntAStarGraph input, int start, int end, double timeout) {
+        long startTime = System.nanoTime();
+        long timeoutNanos = (long) (timeout * 1e9);
+        SearchState state = SearchState.forThread(input.numVertices());
+        state.begin();
+        IntArrayHeapMinPQ pq = state.heap();
+
+        state.touch(start, input.estimatedDistanceToGoal(start, end));
+        state.relax(start, 0.0, -1, -1);
+        pq.add(start, 0.0);
+
+        while (pq.size() != 0) {
+            if (pq.getSmallest() == end) {
+                outcome = SolverOutcome.SOLVED;
+                solutionWeight = state.dist(end);
+                buildSolution(state, start, end);
+                explorationTime = elapsedSeconds(startTime);
+                return;
+            }
+
+            int source = pq.removeSmallest();
+            numStatesExplored += 1;
+
+            if (numStatesExplored % TIMEOUT_CHECK_INTERVAL == 0
+                    && System.nanoTime() - startTime > timeoutNanos) {
+                outcome = SolverOutcome.TIMEOUT;
+                solutionWeight = 0;
+                explorationTime = elapsedSeconds(startTime);
+                return;
+            }
+
+            double sourceDist = state.dist(source);
+            for (int e = input.firstEdge(source); e < input.endEdge(source); e += 1) {
+                int dest = input.edgeTarget(e);
+                if (!state.touched(dest)) {
+                    state.touch(dest, input.estimatedDistanceToGoal(dest, end));
+                }
+
+                // Relax all edges outgoing from source one at a time.
+                double newDist = sourceDist + input.edgeWeight(e);
+                if (newDist < state.dist(dest)) {
+                    state.relax(dest, newDist, source, e);
+                    if (pq.contains(dest)) {
+                        pq.changePriority(dest, newDist + state.estimate(dest));
+                    } else {
+                        pq.add(dest, newDist + state.estimate(dest));
+                    }
+                }
+            }
+        }
+        outcome = SolverOutcome.UNSOLVABLE;
+        solutionWeight = 0;
+        explorationTime = elapsedSeconds(startTime);
+    }
+
+    private void buildSolution(SearchState state, int start, int end) {
+        int length = 1;
+        for (int v = end; v != start; v = state.parent(v)) {
+            length += 1;
+        }
+        solution = new int[length];
+        solutionEdges = new int[length - 1];
+        int v = end;
+        for (int i = length - 1; i > 0; i -= 1) {
+            solution[i] = v;
+            solutionEdges[i - 1] = state.parentEdge(v);
+            v = state.parent(v);
+        }
+        solution[0] = start;
+    }
+
+    private static double elapsedSeconds(long startTime) {
+        return (System.nanoTime() - startTime) / 1e9;
+    }
+
+    public SolverOutcome outcome() {
+        return outcome;
+    }
+
+    /**
+     * A list of vertices corresponding to a solution. Should be empty
+     * if result was TIMEOUT or UNSOLVABLE.
+     */
+    public List<Integer> solution() {
+        List<Integer> result = new ArrayList<>(solution.length);
+        for (int v : solution) {
+            result.add(v);
+        }
+        return result;
+    }
+
+    /**
+     * The vertices of the solution as a primitive array. Empty if result was
+     * TIMEOUT or UNSOLVABLE. Callers must not modify the returned array.
+     */
+    @Override
+    public int[] solutionVertices() {
+        return solution;
+    }
+
+    /**
+     * The ids of the edges traversed by the solution, in order; one shorter
+     * than solutionVertices(). Callers must not modify the returned array.
+     */
+    @Override
+    public int[] solutionEdges() {
+        return solutionEdges;
+    }
+
+    public double solutionWeight() {
+        return solutionWeight;
+    }
+
+    public int numStatesExplored() {
+        return numStatesExplored;
+    }
+
+    public double explorationTime() {
+        return explorationTime;
+    }
+}
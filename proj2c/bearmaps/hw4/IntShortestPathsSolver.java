@@ -0,0 +1,12 @@
+package bearmaps.hw4;
+
+/**
+ * Interface for shortest path solvers over IntAStarGraphs that also expose
+ * their solution as primitive arrays.
+ */
+public interface IntShortestPathsSolver extends ShortestPathsSolver<Integer> {
+    /* The vertices of the solution; empty unless the outcome is SOLVED. */
+    int[] solutionVertices();
+    /* The ids of the graph edges traversed by the solution, in order. */
+    int[] solutionEdges();
+}
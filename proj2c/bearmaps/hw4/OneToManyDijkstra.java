@@ -0,0 +1,86 @@
+package bearmaps.hw4;
+
+import bearmaps.proj2ab.IntArrayHeapMinPQ;
+
+import java.util.Arrays;
+
+/**
+ * A OneToManySolver that runs Dijkstra's algorithm over an IntAStarGraph from
+ * each source until every target has been settled, on the calling thread's
+ * SearchState. Each search is only as large as the ball around the source
+ * that reaches its farthest target.
+ */
+public class OneToManyDijkstra implements OneToManySolver {
+    private final IntAStarGraph graph;
+    /** The index of each target in uniqueTargets. */
+    private final int[] targetSlot;
+    /** For each vertex, its index in uniqueTargets, or -1 if it is not a target. */
+    private final int[] vertexSlot;
+    private final int numUnique;
+
+    /** Creates a solver for the distances in G to each vertex of TARGETS. */
+    public OneToManyDijkstra(IntAStarGraph g, int[] targets) {
+        graph = g;
+        vertexSlot = new int[g.numVertices()];
+        Arrays.fill(vertexSlot, -1);
+        targetSlot = new int[targets.length];
+        int unique = 0;
+        for (int i = 0; i < targets.length; i += 1) {
+            int t = targets[i];
+            if (vertexSlot[t] == -1) {
+                vertexSlot[t] = unique;
+                unique += 1;
+            }
+            targetSlot[i] = vertexSlot[t];
+        }
+        numUnique = unique;
+    }
+
+    @Override
+    public int numTargets() {
+        return targetSlot.length;
+    }
+
+    @Override
+    public double[] distancesFrom(int source) {
+        double[] settled = new double[numUnique];
+        Arrays.fill(settled, Double.POSITIVE_INFINITY);
+        int remaining = numUnique;
+        SearchState state = SearchState.forThread(graph.numVertices());
+        state.begin();
+        IntArrayHeapMinPQ pq = state.heap();
+        state.touch(source, 0);
+        state.relax(source, 0, -1, -1);
+        pq.add(source, 0);
+
+        while (pq.size() != 0 && remaining > 0) {
+            int v = pq.removeSmallest();
+            double dv = state.dist(v);
+            if (vertexSlot[v] != -1) {
+                settled[vertexSlot[v]] = dv;
+                remaining -= 1;
+            }
+            for (int e = graph.firstEdge(v); e < graph.endEdge(v); e += 1) {
+                int w = graph.edgeTarget(e);
+                if (!state.touched(w)) {
+                    state.touch(w, 0);
+                }
+                double d = dv + graph.edgeWeight(e);
+                if (d < state.dist(w)) {
+                    state.relax(w, d, v, e);
+                    if (pq.contains(w)) {
+                        pq.changePriority(w, d);
+                    } else {
+                        pq.add(w, d);
+                    }
+                }
+            }
+        }
+
+        double[] distances = new double[targetSlot.length];
+        for (int i = 0; i < distances.length; i += 1) {
+            distances[i] = settled[targetSlot[i]];
+        }
+        return distances;
+    }
+}
@@ -0,0 +1,14 @@
+package bearmaps.hw4;
+
+/**
+ * Finds the shortest distances from any one source to a fixed set of
+ * targets, chosen when the solver is created. Implementations must allow
+ * distancesFrom to be called from several threads at once.
+ */
+public interface OneToManySolver {
+    /* The number of targets. */
+    int numTargets();
+    /* The distance from SOURCE to each target, in target order, or infinity
+     * for a target that cannot be reached. */
+    double[] distancesFrom(int source);
+}
@@ -0,0 +1,115 @@
+package bearmaps.hw4;
+
+import bearmaps.proj2ab.IntArrayHeapMinPQ;
+
+import java.util.Arrays;
+
+/**
+ * Reusable per-search bookkeeping for solvers over an IntAStarGraph. Rather
+ * than clearing the distance and parent arrays between searches, every
+ * vertex carries the generation in which it was last touched; bumping the
+ * generation in begin() invalidates all of them in constant time.
+ *
+ * A SearchState is not thread-safe. Use forThread() to get the one that
+ * belongs to the calling thread.
+ */
+public class SearchState {
+    private static final ThreadLocal<SearchState> LOCAL =
+            ThreadLocal.withInitial(() -> new SearchState(0));
+
+    private double[] dist;
+    private double[] estimate;
+    private int[] parent;
+    private int[] parentEdge;
+    private int[] stamp;
+    private int generation;
+    private final IntArrayHeapMinPQ heap;
+
+    public SearchState(int numVertices) {
+        dist = new double[numVertices];
+        estimate = new double[numVertices];
+        parent = new int[numVertices];
+        parentEdge = new int[numVertices];
+        stamp = new int[numVertices];
+        heap = new IntArrayHeapMinPQ(numVertices);
+    }
+
+    /** Returns the calling thread's SearchState, sized for at least NUMVERTICES. */
+    public static SearchState forThread(int numVertices) {
+        SearchState state = LOCAL.get();
+        state.ensureCapacity(numVertices);
+        return state;
+    }
+
+    private void ensureCapacity(int numVertices) {
+        if (numVertices <= stamp.length) {
+            return;
+        }
+        dist = Arrays.copyOf(dist, numVertices);
+        estimate = Arrays.copyOf(estimate, numVertices);
+        parent = Arrays.copyOf(parent, numVertices);
+        parentEdge = Arrays.copyOf(parentEdge, numVertices);
+        stamp = Arrays.copyOf(stamp, numVertices);
+        heap.ensureCapacity(numVertices);
+    }
+
+    /** Forgets every vertex touched by the previous search and empties the heap. */
+    public void begin() {
+        generation += 1;
+        if (generation == 0) {
+            // The stamp counter wrapped around; old stamps could now collide.
+            Arrays.fill(stamp, 0);
+            generation = 1;
+        }
+        heap.clear();
+    }
+
+    /** Returns true if V has been touched since the last call to begin(). */
+    public boolean touched(int v) {
+        return stamp[v] == generation;
+    }
+
+    /**
+     * Marks V as touched with an infinite distance and the given cached
+     * heuristic ESTIMATE.
+     */
+    public void touch(int v, double estimate) {
+        stamp[v] = generation;
+        dist[v] = Double.POSITIVE_INFINITY;
+        this.estimate[v] = estimate;
+        parent[v] = -1;
+        parentEdge[v] = -1;
+    }
+
+    /** Returns the best known distance to V, or infinity if V is untouched. */
+    public double dist(int v) {
+        return touched(v) ? dist[v] : Double.POSITIVE_INFINITY;
+    }
+
+    /** Returns the heuristic estimate cached by touch(). Assumes V is touched. */
+    public double estimate(int v) {
+        return estimate[v];
+    }
+
+    /** Returns the vertex V was reached from, or -1. Assumes V is touched. */
+    public int parent(int v) {
+        return parent[v];
+    }
+
+    /** Returns the edge V was reached through, or -1. Assumes V is touched. */
+    public int parentEdge(int v) {
+        return parentEdge[v];
+    }
+
+    /** Records that V is reachable with distance D through edge E from PARENT. */
+    public void relax(int v, double d, int parent, int e) {
+        dist[v] = d;
+        this.parent[v] = parent;
+        parentEdge[v] = e;
+    }
+
+    /** Returns the priority queue used by this search. */
+    public IntArrayHeapMinPQ heap() {
+        return heap;
+    }
+}
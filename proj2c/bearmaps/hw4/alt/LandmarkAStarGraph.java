@@ -0,0 +1,43 @@
+package bearmaps.hw4.alt;
+
+import bearmaps.hw4.AStarGraph;
+import bearmaps.hw4.WeightedEdge;
+
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Adds the landmark bound to the heuristic of an AStarGraph, so AStarSolver
+ * can use it unchanged. The landmarks must have been selected on an
+ * IntAStarGraph with the same edges, and INDEXOF must map each vertex to its
+ * index there (or to a negative number if it has none, in which case only
+ * the original heuristic is used).
+ */
+public class LandmarkAStarGraph<Vertex> implements AStarGraph<Vertex> {
+    private final AStarGraph<Vertex> g;
+    private final Landmarks landmarks;
+    private final ToIntFunction<Vertex> indexOf;
+
+    public LandmarkAStarGraph(AStarGraph<Vertex> g, Landmarks landmarks,
+                              ToIntFunction<Vertex> indexOf) {
+        this.g = g;
+        this.landmarks = landmarks;
+        this.indexOf = indexOf;
+    }
+
+    @Override
+    public List<WeightedEdge<Vertex>> neighbors(Vertex v) {
+        return g.neighbors(v);
+    }
+
+    @Override
+    public double estimatedDistanceToGoal(Vertex s, Vertex goal) {
+        double estimate = g.estimatedDistanceToGoal(s, goal);
+        int sIndex = indexOf.applyAsInt(s);
+        int goalIndex = indexOf.applyAsInt(goal);
+        if (sIndex < 0 || goalIndex < 0) {
+            return estimate;
+        }
+        return Math.max(estimate, landmarks.lowerBound(sIndex, goalIndex));
+    }
+}
@@ -0,0 +1,269 @@
+package bearmaps.hw4.alt;
+
+import bearmaps.hw4.IntAStarGraph;
+import bearmaps.proj2ab.IntArrayHeapMinPQ;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Precomputed distances to and from a handful of landmark vertices, used to
+ * give A* a much tighter lower bound than great-circle distance (the "ALT"
+ * heuristic: A*, Landmarks, Triangle inequality). For any landmark L, the
+ * triangle inequality gives
+ *     d(v, t) >= d(L, t) - d(L, v)   and   d(v, t) >= d(v, L) - d(t, L),
+ * and the bound used is the largest of these over all landmarks. Since roads
+ * rarely run as the crow flies, this is usually far closer to the true
+ * distance, so A* settles fewer vertices.
+ *
+ * Distances are stored per vertex, so computing a bound reads one contiguous
+ * run of 2 * numLandmarks() doubles for each endpoint.
+ */
+public class Landmarks {
+    /** How landmarks are chosen. */
+    public enum Strategy {
+        /** Each landmark is the vertex farthest from all landmarks so far. */
+        FARTHEST,
+        /**
+         * Each landmark is the leaf of a shortest path tree whose subtree is
+         * worst served by the landmarks so far (Goldberg and Harrelson).
+         */
+        AVOID
+    }
+
+    private final int count;
+    private final int[] landmarks;
+    /* fromLandmark[v * count + i] is the distance from landmark i to v. */
+    private final double[] fromLandmark;
+    /* toLandmark[v * count + i] is the distance from v to landmark i. */
+    private final double[] toLandmark;
+
+    private Landmarks(int n, int count) {
+        this.count = count;
+        landmarks = new int[count];
+        fromLandmark = new double[n * count];
+        toLandmark = new double[n * count];
+    }
+
+    /**
+     * Chooses COUNT landmarks in G with the given STRATEGY and computes the
+     * distances between them and every vertex. Runs 2 * COUNT full Dijkstra
+     * searches, plus one more per landmark for the AVOID strategy.
+     */
+    public static Landmarks select(IntAStarGraph g, int count, Strategy strategy) {
+        int n = g.numVertices();
+        count = Math.min(count, n);
+        Landmarks result = new Landmarks(n, count);
+        IntAStarGraph reverse = new ReverseGraph(g);
+        Dijkstra forward = new Dijkstra(g);
+        Dijkstra backward = new Dijkstra(reverse);
+        Random random = new Random(n);
+
+        // minFrom[v] is the distance to v from the nearest landmark chosen so far.
+        double[] minFrom = new double[n];
+        Arrays.fill(minFrom, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < count; i += 1) {
+            int landmark;
+            if (i == 0) {
+                // Start from the far edge of the graph as seen from vertex 0.
+                forward.run(0);
+                landmark = forward.lastSettled();
+            } else if (strategy == Strategy.AVOID) {
+                landmark = result.avoid(forward, random.nextInt(n), i);
+                if (landmark < 0) {
+                    landmark = farthest(minFrom);
+                }
+            } else {
+                landmark = farthest(minFrom);
+            }
+            if (landmark < 0) {
+                return result.truncate(n, i);
+            }
+
+            result.landmarks[i] = landmark;
+            forward.run(landmark);
+            backward.run(landmark);
+            for (int v = 0; v < n; v += 1) {
+                result.fromLandmark[v * count + i] = forward.dist(v);
+                result.toLandmark[v * count + i] = backward.dist(v);
+                minFrom[v] = Math.min(minFrom[v], forward.dist(v));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the vertex with the largest finite MINFROM that is not a
+     * landmark already, or -1 if every reachable vertex is one.
+     */
+    private static int farthest(double[] minFrom) {
+        int best = -1;
+        for (int v = 0; v < minFrom.length; v += 1) {
+            if (minFrom[v] != Double.POSITIVE_INFINITY && minFrom[v] > 0
+                    && (best < 0 || minFrom[v] > minFrom[best])) {
+                best = v;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Picks the next landmark with the avoid strategy, given that the first
+     * CHOSEN landmarks are set. Grows a shortest path tree from ROOT and
+     * weighs every vertex by how much the current bound underestimates its
+     * distance from ROOT. Subtrees containing a landmark weigh nothing. The
+     * new landmark is found by starting at the heaviest subtree and always
+     * descending into the heaviest child. Returns -1 if every subtree is
+     * already covered.
+     */
+    private int avoid(Dijkstra tree, int root, int chosen) {
+        tree.run(root);
+        int n = fromLandmark.length / count;
+        double[] size = new double[n];
+        double[] heaviestChild = new double[n];
+        int[] leaf = new int[n];
+        boolean[] covered = new boolean[n];
+        for (int i = 0; i < chosen; i += 1) {
+            covered[landmarks[i]] = true;
+        }
+
+        // Visiting vertices in reverse settle order sees children before parents.
+        int best = -1;
+        for (int k = tree.numSettled() - 1; k >= 0; k -= 1) {
+            int v = tree.settled(k);
+            if (heaviestChild[v] == 0) {
+                leaf[v] = v;
+            }
+            if (covered[v]) {
+                size[v] = 0;
+            } else {
+                size[v] += tree.dist(v) - lowerBound(root, v, chosen);
+            }
+            int p = tree.parent(v);
+            if (p >= 0) {
+                covered[p] |= covered[v];
+                size[p] += size[v];
+                if (size[v] > heaviestChild[p]) {
+                    heaviestChild[p] = size[v];
+                    leaf[p] = leaf[v];
+                }
+            }
+            if (size[v] > 0 && (best < 0 || size[v] > size[best])) {
+                best = v;
+            }
+        }
+        return best < 0 ? -1 : leaf[best];
+    }
+
+    /** Drops all but the first CHOSEN landmarks. */
+    private Landmarks truncate(int n, int chosen) {
+        Landmarks result = new Landmarks(n, chosen);
+        System.arraycopy(landmarks, 0, result.landmarks, 0, chosen);
+        for (int v = 0; v < n; v += 1) {
+            System.arraycopy(fromLandmark, v * count, result.fromLandmark, v * chosen, chosen);
+            System.arraycopy(toLandmark, v * count, result.toLandmark, v * chosen, chosen);
+        }
+        return result;
+    }
+
+    /** Returns the number of landmarks. */
+    public int numLandmarks() {
+        return count;
+    }
+
+    /** Returns the vertex of the Ith landmark. */
+    public int landmark(int i) {
+        return landmarks[i];
+    }
+
+    /** Returns a lower bound on the distance from V to T. */
+    public double lowerBound(int v, int t) {
+        return lowerBound(v, t, count);
+    }
+
+    /** Returns the lower bound given by the first LIMIT landmarks. */
+    private double lowerBound(int v, int t, int limit) {
+        double best = 0;
+        int vBase = v * count;
+        int tBase = t * count;
+        for (int i = 0; i < limit; i += 1) {
+            // A landmark that cannot reach or be reached from both endpoints
+            // gives an infinite or NaN difference, which is skipped.
+            double ahead = fromLandmark[tBase + i] - fromLandmark[vBase + i];
+            if (ahead > best && ahead != Double.POSITIVE_INFINITY) {
+                best = ahead;
+            }
+            double behind = toLandmark[vBase + i] - toLandmark[tBase + i];
+            if (behind > best && behind != Double.POSITIVE_INFINITY) {
+                best = behind;
+            }
+        }
+        return best;
+    }
+
+    /** A full single-source Dijkstra search that remembers its settle order. */
+    private static class Dijkstra {
+        private final IntAStarGraph g;
+        private final double[] dist;
+        private final int[] parent;
+        private final int[] order;
+        private int numSettled;
+        private final IntArrayHeapMinPQ pq;
+
+        Dijkstra(IntAStarGraph g) {
+            this.g = g;
+            int n = g.numVertices();
+            dist = new double[n];
+            parent = new int[n];
+            order = new int[n];
+            pq = new IntArrayHeapMinPQ(n);
+        }
+
+        void run(int source) {
+            Arrays.fill(dist, Double.POSITIVE_INFINITY);
+            Arrays.fill(parent, -1);
+            numSettled = 0;
+            pq.clear();
+            dist[source] = 0;
+            pq.add(source, 0);
+            while (pq.size() != 0) {
+                int v = pq.removeSmallest();
+                order[numSettled] = v;
+                numSettled += 1;
+                for (int e = g.firstEdge(v); e < g.endEdge(v); e += 1) {
+                    int w = g.edgeTarget(e);
+                    double d = dist[v] + g.edgeWeight(e);
+                    if (d < dist[w]) {
+                        dist[w] = d;
+                        parent[w] = v;
+                        if (pq.contains(w)) {
+                            pq.changePriority(w, d);
+                        } else {
+                            pq.add(w, d);
+                        }
+                    }
+                }
+            }
+        }
+
+        double dist(int v) {
+            return dist[v];
+        }
+
+        int parent(int v) {
+            return parent[v];
+        }
+
+        int numSettled() {
+            return numSettled;
+        }
+
+        int settled(int k) {
+            return order[k];
+        }
+
+        int lastSettled() {
+            return order[numSettled - 1];
+        }
+    }
+}
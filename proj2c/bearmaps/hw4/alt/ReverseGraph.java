@@ -0,0 +1,69 @@
+package bearmaps.hw4.alt;
+
+import bearmaps.hw4.IntAStarGraph;
+
+/**
+ * The transpose of an IntAStarGraph, built once as its own CSR arrays. Edge
+ * ids are local to this graph. Used to compute distances to a landmark.
+ */
+class ReverseGraph implements IntAStarGraph {
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] weights;
+
+    ReverseGraph(IntAStarGraph g) {
+        int n = g.numVertices();
+        offsets = new int[n + 1];
+        for (int v = 0; v < n; v += 1) {
+            for (int e = g.firstEdge(v); e < g.endEdge(v); e += 1) {
+                offsets[g.edgeTarget(e) + 1] += 1;
+            }
+        }
+        for (int v = 0; v < n; v += 1) {
+            offsets[v + 1] += offsets[v];
+        }
+
+        targets = new int[offsets[n]];
+        weights = new double[offsets[n]];
+        int[] next = new int[n];
+        System.arraycopy(offsets, 0, next, 0, n);
+        for (int v = 0; v < n; v += 1) {
+            for (int e = g.firstEdge(v); e < g.endEdge(v); e += 1) {
+                int w = g.edgeTarget(e);
+                targets[next[w]] = v;
+                weights[next[w]] = g.edgeWeight(e);
+                next[w] += 1;
+            }
+        }
+    }
+
+    @Override
+    public int numVertices() {
+        return offsets.length - 1;
+    }
+
+    @Override
+    public int firstEdge(int v) {
+        return offsets[v];
+    }
+
+    @Override
+    public int endEdge(int v) {
+        return offsets[v + 1];
+    }
+
+    @Override
+    public int edgeTarget(int e) {
+        return targets[e];
+    }
+
+    @Override
+    public double edgeWeight(int e) {
+        return weights[e];
+    }
+
+    @Override
+    public double estimatedDistanceToGoal(int s, int goal) {
+        return 0;
+    }
+}
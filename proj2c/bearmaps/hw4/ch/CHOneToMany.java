@@ -0,0 +1,136 @@
+package bearmaps.hw4.ch;
+
+import bearmaps.hw4.OneToManySolver;
+import bearmaps.hw4.SearchState;
+import bearmaps.proj2ab.IntArrayHeapMinPQ;
+
+import java.util.Arrays;
+
+/**
+ * A OneToManySolver on a ContractionHierarchy, using buckets. When it is
+ * created, a backward upward search runs from each target, and every vertex
+ * it settles gets an entry (target, distance) in that vertex's bucket. A
+ * query from a source is then a single forward upward search: the shortest
+ * path to any target peaks at some vertex both searches settle, so scanning
+ * the buckets of the vertices the forward search settles finds the distance
+ * to every target at once.
+ *
+ * Upward searches settle only a few hundred vertices even on large graphs,
+ * so the buckets stay small and each source costs about as much as a single
+ * CHSolver query, however many targets there are.
+ */
+public class CHOneToMany implements OneToManySolver {
+    private final ContractionHierarchy ch;
+    private final int numTargets;
+    /* The bucket of vertex v is entries bucketOffsets[v] (inclusive) to
+     * bucketOffsets[v + 1] (exclusive) of bucketTargets and bucketDists. */
+    private final int[] bucketOffsets;
+    private final int[] bucketTargets;
+    private final double[] bucketDists;
+
+    /** Creates a solver for the distances in CH to each vertex of TARGETS. */
+    public CHOneToMany(ContractionHierarchy ch, int[] targets) {
+        this.ch = ch;
+        this.numTargets = targets.length;
+        int n = ch.graph().numVertices();
+        int[][] settled = new int[targets.length][];
+        double[][] settledDists = new double[targets.length][];
+        bucketOffsets = new int[n + 1];
+        for (int j = 0; j < targets.length; j += 1) {
+            backwardSearch(targets[j], j, settled, settledDists);
+            for (int v : settled[j]) {
+                bucketOffsets[v + 1] += 1;
+            }
+        }
+        for (int v = 0; v < n; v += 1) {
+            bucketOffsets[v + 1] += bucketOffsets[v];
+        }
+        bucketTargets = new int[bucketOffsets[n]];
+        bucketDists = new double[bucketOffsets[n]];
+        int[] fill = Arrays.copyOf(bucketOffsets, n);
+        for (int j = 0; j < targets.length; j += 1) {
+            for (int i = 0; i < settled[j].length; i += 1) {
+                int slot = fill[settled[j][i]];
+                bucketTargets[slot] = j;
+                bucketDists[slot] = settledDists[j][i];
+                fill[settled[j][i]] += 1;
+            }
+        }
+    }
+
+    /** Records the vertices the backward upward search from TARGET settles, and their distances. */
+    private void backwardSearch(int target, int j, int[][] settled, double[][] settledDists) {
+        SearchState state = ch.backwardState();
+        state.begin();
+        IntArrayHeapMinPQ pq = state.heap();
+        state.touch(target, 0);
+        state.relax(target, 0, -1, -1);
+        pq.add(target, 0);
+        int[] vertices = new int[16];
+        double[] dists = new double[16];
+        int count = 0;
+        while (pq.size() != 0) {
+            int v = pq.removeSmallest();
+            double dv = state.dist(v);
+            if (count == vertices.length) {
+                vertices = Arrays.copyOf(vertices, count * 2);
+                dists = Arrays.copyOf(dists, count * 2);
+            }
+            vertices[count] = v;
+            dists[count] = dv;
+            count += 1;
+            for (int i = ch.downFirst(v); i < ch.downEnd(v); i += 1) {
+                int e = ch.downEdge(i);
+                relax(state, ch.from(e), dv + ch.weight(e), v, e);
+            }
+        }
+        settled[j] = Arrays.copyOf(vertices, count);
+        settledDists[j] = Arrays.copyOf(dists, count);
+    }
+
+    private static void relax(SearchState state, int w, double d, int v, int e) {
+        if (!state.touched(w)) {
+            state.touch(w, 0);
+        }
+        if (d < state.dist(w)) {
+            state.relax(w, d, v, e);
+            if (state.heap().contains(w)) {
+                state.heap().changePriority(w, d);
+            } else {
+                state.heap().add(w, d);
+            }
+        }
+    }
+
+    @Override
+    public int numTargets() {
+        return numTargets;
+    }
+
+    @Override
+    public double[] distancesFrom(int source) {
+        double[] distances = new double[numTargets];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        SearchState state = ch.forwardState();
+        state.begin();
+        IntArrayHeapMinPQ pq = state.heap();
+        state.touch(source, 0);
+        state.relax(source, 0, -1, -1);
+        pq.add(source, 0);
+        while (pq.size() != 0) {
+            int v = pq.removeSmallest();
+            double dv = state.dist(v);
+            for (int i = bucketOffsets[v]; i < bucketOffsets[v + 1]; i += 1) {
+                double d = dv + bucketDists[i];
+                if (d < distances[bucketTargets[i]]) {
+                    distances[bucketTargets[i]] = d;
+                }
+            }
+            for (int i = ch.upFirst(v); i < ch.upEnd(v); i += 1) {
+                int e = ch.upEdge(i);
+                relax(state, ch.to(e), dv + ch.weight(e), v, e);
+            }
+        }
+        return distances;
+    }
+}
@@ -0,0 +1,192 @@
+package bearmaps.hw4.ch;
+
+import bearmaps.hw4.IntShortestPathsSolver;
+import bearmaps.hw4.SearchState;
+import bearmaps.hw4.SolverOutcome;
+import bearmaps.proj2ab.IntArrayHeapMinPQ;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Answers a shortest path query on a ContractionHierarchy with a
+ * bidirectional upward search: a forward Dijkstra from the start that only
+ * follows edges to higher-ranked vertices, and a backward Dijkstra from the
+ * end that does the same on reversed edges. Each side stops once its smallest
+ * key can no longer beat the best meeting point found so far. Shortcuts on
+ * the resulting path are then unpacked back into original graph edges.
+ */
+public class CHSolver implements IntShortestPathsSolver {
+    private SolverOutcome outcome;
+    private int[] solution = new int[0];
+    private int[] solutionEdges = new int[0];
+    private double solutionWeight;
+    private int numStatesExplored;
+    private double explorationTime;
+
+    public CHSolver(ContractionHierarchy ch, int start, int end) {
+        long startTime = System.nanoTime();
+        SearchState forward = ch.forwardState();
+        SearchState backward = ch.backwardState();
+        forward.begin();
+        backward.begin();
+        IntArrayHeapMinPQ forwardPQ = forward.heap();
+        IntArrayHeapMinPQ backwardPQ = backward.heap();
+
+        forward.touch(start, 0);
+        forward.relax(start, 0, -1, -1);
+        forwardPQ.add(start, 0);
+        backward.touch(end, 0);
+        backward.relax(end, 0, -1, -1);
+        backwardPQ.add(end, 0);
+
+        double best = Double.POSITIVE_INFINITY;
+        int meet = -1;
+        while (true) {
+            boolean forwardDone = forwardPQ.size() == 0 || forwardPQ.smallestPriority() >= best;
+            boolean backwardDone = backwardPQ.size() == 0
+                    || backwardPQ.smallestPriority() >= best;
+            if (forwardDone && backwardDone) {
+                break;
+            }
+
+            boolean goForward = !forwardDone && (backwardDone
+                    || forwardPQ.smallestPriority() <= backwardPQ.smallestPriority());
+            SearchState state = goForward ? forward : backward;
+            SearchState other = goForward ? backward : forward;
+            int v = state.heap().removeSmallest();
+            numStatesExplored += 1;
+
+            double dv = state.dist(v);
+            if (dv + other.dist(v) < best) {
+                best = dv + other.dist(v);
+                meet = v;
+            }
+
+            int begin = goForward ? ch.upFirst(v) : ch.downFirst(v);
+            int finish = goForward ? ch.upEnd(v) : ch.downEnd(v);
+            for (int i = begin; i < finish; i += 1) {
+                int e = goForward ? ch.upEdge(i) : ch.downEdge(i);
+                int w = goForward ? ch.to(e) : ch.from(e);
+                if (!state.touched(w)) {
+                    state.touch(w, 0);
+                }
+                double d = dv + ch.weight(e);
+                if (d < state.dist(w)) {
+                    state.relax(w, d, v, e);
+                    if (state.heap().contains(w)) {
+                        state.heap().changePriority(w, d);
+                    } else {
+                        state.heap().add(w, d);
+                    }
+                }
+            }
+        }
+
+        if (meet == -1) {
+            outcome = SolverOutcome.UNSOLVABLE;
+        } else {
+            outcome = SolverOutcome.SOLVED;
+            solutionWeight = best;
+            unpack(ch, forward, backward, start, meet);
+        }
+        explorationTime = (System.nanoTime() - startTime) / 1e9;
+    }
+
+    /** Expands the hierarchy edges of the path through MEET into graph edges. */
+    private void unpack(ContractionHierarchy ch, SearchState forward, SearchState backward,
+                        int start, int meet) {
+        // A stack of hierarchy edges still to expand, with the first edge of the
+        // path on top: the backward half goes in last-edge-first, then the
+        // forward half, which parent pointers already yield last-edge-first.
+        int[] pending = new int[16];
+        int pendingSize = 0;
+        int[] backwardEdges = new int[16];
+        int backwardCount = 0;
+        for (int v = meet; backward.parentEdge(v) != -1; v = backward.parent(v)) {
+            backwardEdges = push(backwardEdges, backwardCount, backward.parentEdge(v));
+            backwardCount += 1;
+        }
+        for (int i = backwardCount - 1; i >= 0; i -= 1) {
+            pending = push(pending, pendingSize, backwardEdges[i]);
+            pendingSize += 1;
+        }
+        for (int v = meet; forward.parentEdge(v) != -1; v = forward.parent(v)) {
+            pending = push(pending, pendingSize, forward.parentEdge(v));
+            pendingSize += 1;
+        }
+
+        int[] edges = new int[16];
+        int numEdges = 0;
+        while (pendingSize > 0) {
+            pendingSize -= 1;
+            int e = pending[pendingSize];
+            if (ch.isShortcut(e)) {
+                pending = push(pending, pendingSize, ch.second(e));
+                pending = push(pending, pendingSize + 1, ch.first(e));
+                pendingSize += 2;
+            } else {
+                edges = push(edges, numEdges, ch.first(e));
+                numEdges += 1;
+            }
+        }
+
+        solutionEdges = Arrays.copyOf(edges, numEdges);
+        solution = new int[numEdges + 1];
+        solution[0] = start;
+        for (int i = 0; i < numEdges; i += 1) {
+            solution[i + 1] = ch.graph().edgeTarget(solutionEdges[i]);
+        }
+    }
+
+    private static int[] push(int[] array, int size, int value) {
+        if (size == array.length) {
+            array = Arrays.copyOf(array, size * 2);
+        }
+        array[size] = value;
+        return array;
+    }
+
+    @Override
+    public SolverOutcome outcome() {
+        return outcome;
+    }
+
+    @Override
+    public List<Integer> solution() {
+        List<Integer> result = new ArrayList<>(solution.length);
+        for (int v : solution) {
+            result.add(v);
+        }
+        return result;
+    }
+
+    @Override
+    public int[] solutionVertices() {
+        return solution;
+    }
+
+    @Override
+    public int[] solutionEdges() {
+        return solutionEdges;
+    }
+
+    @Override
+    public double solutionWeight() {
+        return solutionWeight;
+    }
+
+    /**
+     * The total number of vertices settled by both searches.
+     */
+    @Override
+    public int numStatesExplored() {
+        return numStatesExplored;
+    }
+
+    @Override
+    public double explorationTime() {
+        return explorationTime;
+    }
+}
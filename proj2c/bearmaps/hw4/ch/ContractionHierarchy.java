@@ -0,0 +1,332 @@
+package bearmaps.hw4.ch;
+
+import bearmaps.hw4.IntAStarGraph;
+import bearmaps.hw4.SearchState;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A contraction hierarchy over an IntAStarGraph: every vertex has a rank, and
+ * the original edges plus the shortcuts added during preprocessing are split
+ * into an upward graph (towards higher rank) and a downward graph (from higher
+ * rank, stored reversed). Any shortest path can then be found by two small
+ * Dijkstra searches that only ever go up; see CHSolver.
+ *
+ * Building a hierarchy is expensive, so it can be saved to disk and loaded
+ * back. A saved hierarchy records a fingerprint of the graph it was built for
+ * and is rejected if loaded against a different graph, or if any length,
+ * vertex or edge in it is out of range, so that a corrupt file is rebuilt
+ * rather than failing inside a query.
+ */
+public class ContractionHierarchy {
+    private static final int MAGIC = 0x42434831;
+    private static final int VERSION = 1;
+
+    private final IntAStarGraph graph;
+    private final long fingerprint;
+    private final int[] rank;
+
+    /* The edge table. Edges with second == -1 copy original edge first; others
+     * are shortcuts made of the two hierarchy edges first and second. */
+    private final int[] from;
+    private final int[] to;
+    private final double[] weight;
+    private final int[] first;
+    private final int[] second;
+
+    private final int[] upOffsets;
+    private final int[] upEdges;
+    private final int[] downOffsets;
+    private final int[] downEdges;
+
+    private final ThreadLocal<SearchState> forwardState;
+    private final ThreadLocal<SearchState> backwardState;
+
+    ContractionHierarchy(IntAStarGraph graph, long fingerprint, int[] rank, int[] from, int[] to,
+                         double[] weight, int[] first, int[] second, int[] upOffsets,
+                         int[] upEdges, int[] downOffsets, int[] downEdges) {
+        this.graph = graph;
+        this.fingerprint = fingerprint;
+        this.rank = rank;
+        this.from = from;
+        this.to = to;
+        this.weight = weight;
+        this.first = first;
+        this.second = second;
+        this.upOffsets = upOffsets;
+        this.upEdges = upEdges;
+        this.downOffsets = downOffsets;
+        this.downEdges = downEdges;
+        int n = rank.length;
+        forwardState = ThreadLocal.withInitial(() -> new SearchState(n));
+        backwardState = ThreadLocal.withInitial(() -> new SearchState(n));
+    }
+
+    /** Preprocesses G into a contraction hierarchy. */
+    public static ContractionHierarchy build(IntAStarGraph g) {
+        return new Contractor(g).contract(g, fingerprint(g));
+    }
+
+    /**
+     * Loads the hierarchy saved at PATH if it was built for G, and otherwise
+     * builds a new one and saves it there.
+     */
+    public static ContractionHierarchy loadOrBuild(String path, IntAStarGraph g) {
+        ContractionHierarchy ch = load(path, g);
+        if (ch == null) {
+            ch = build(g);
+            ch.save(path);
+        }
+        return ch;
+    }
+
+    /** Returns the graph this hierarchy was built for. */
+    public IntAStarGraph graph() {
+        return graph;
+    }
+
+    /** Returns the number of hierarchy edges, original and shortcut. */
+    public int numEdges() {
+        return from.length;
+    }
+
+    /** Returns the position of V in the contraction order. */
+    public int rank(int v) {
+        return rank[v];
+    }
+
+    /* The upward graph: upEdge(i) for upFirst(v) <= i < upEnd(v) leaves v. */
+    int upFirst(int v) {
+        return upOffsets[v];
+    }
+
+    int upEnd(int v) {
+        return upOffsets[v + 1];
+    }
+
+    int upEdge(int i) {
+        return upEdges[i];
+    }
+
+    /* The downward graph: downEdge(i) for downFirst(v) <= i < downEnd(v) enters v. */
+    int downFirst(int v) {
+        return downOffsets[v];
+    }
+
+    int downEnd(int v) {
+        return downOffsets[v + 1];
+    }
+
+    int downEdge(int i) {
+        return downEdges[i];
+    }
+
+    int from(int e) {
+        return from[e];
+    }
+
+    int to(int e) {
+        return to[e];
+    }
+
+    double weight(int e) {
+        return weight[e];
+    }
+
+    boolean isShortcut(int e) {
+        return second[e] != -1;
+    }
+
+    /* For an original edge, the graph edge it copies; for a shortcut, its first half. */
+    int first(int e) {
+        return first[e];
+    }
+
+    int second(int e) {
+        return second[e];
+    }
+
+    SearchState forwardState() {
+        return forwardState.get();
+    }
+
+    SearchState backwardState() {
+        return backwardState.get();
+    }
+
+    /**
+     * Writes this hierarchy to PATH. Failures are reported but not fatal,
+     * since the hierarchy can always be rebuilt.
+     */
+    public void save(String path) {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fingerprint);
+            writeInts(out, rank);
+            writeInts(out, from);
+            writeInts(out, to);
+            out.writeInt(weight.length);
+            for (double w : weight) {
+                out.writeDouble(w);
+            }
+            writeInts(out, first);
+            writeInts(out, second);
+            writeInts(out, upOffsets);
+            writeInts(out, upEdges);
+            writeInts(out, downOffsets);
+            writeInts(out, downEdges);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Reads the hierarchy saved at PATH, or returns null if there is none, it
+     * was built for a graph other than G, or it is truncated or corrupt.
+     */
+    public static ContractionHierarchy load(String path, IntAStarGraph g) {
+        File file = new File(path);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                return null;
+            }
+            long fingerprint = in.getLong();
+            if (fingerprint != fingerprint(g)) {
+                return null;
+            }
+            int[] rank = readInts(in);
+            int[] from = readInts(in);
+            int[] to = readInts(in);
+            double[] weight = new double[readLength(in, Double.BYTES)];
+            in.asDoubleBuffer().get(weight);
+            in.position(in.position() + Double.BYTES * weight.length);
+            int[] first = readInts(in);
+            int[] second = readInts(in);
+            int[] upOffsets = readInts(in);
+            int[] upEdges = readInts(in);
+            int[] downOffsets = readInts(in);
+            int[] downEdges = readInts(in);
+            checkVertices(g, rank, from, to);
+            checkEdges(g, from, to, weight, first, second);
+            checkAdjacency(g.numVertices(), upOffsets, upEdges, from.length);
+            checkAdjacency(g.numVertices(), downOffsets, downEdges, from.length);
+            return new ContractionHierarchy(g, fingerprint, rank, from, to, weight, first,
+                    second, upOffsets, upEdges, downOffsets, downEdges);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            // A truncated or corrupt hierarchy is simply rebuilt.
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /** Checks that every vertex of G has a rank and every edge joins vertices of G. */
+    private static void checkVertices(IntAStarGraph g, int[] rank, int[] from, int[] to) {
+        int n = g.numVertices();
+        check(rank.length == n, "rank has " + rank.length + " entries for " + n + " vertices");
+        for (int r : rank) {
+            check(r >= 0 && r < n, "rank out of range: " + r);
+        }
+        check(to.length == from.length, "edge ends differ in length");
+        for (int e = 0; e < from.length; e += 1) {
+            check(from[e] >= 0 && from[e] < n && to[e] >= 0 && to[e] < n,
+                    "edge " + e + " joins a vertex out of range");
+        }
+    }
+
+    /**
+     * Checks that each original edge names an edge of G leaving its source,
+     * and that each shortcut is made of edges before it, so that unpacking
+     * always ends.
+     */
+    private static void checkEdges(IntAStarGraph g, int[] from, int[] to, double[] weight,
+                                   int[] first, int[] second) {
+        int m = from.length;
+        check(weight.length == m && first.length == m && second.length == m,
+                "edge table columns differ in length");
+        for (int e = 0; e < m; e += 1) {
+            if (second[e] == -1) {
+                check(first[e] >= g.firstEdge(from[e]) && first[e] < g.endEdge(from[e]),
+                        "edge " + e + " copies an edge out of range");
+            } else {
+                check(first[e] >= 0 && first[e] < e && second[e] >= 0 && second[e] < e,
+                        "shortcut " + e + " is made of edges out of range");
+            }
+        }
+    }
+
+    /**
+     * Checks that OFFSETS has N + 1 entries, rising from 0 to the length of
+     * EDGES, and that every entry of EDGES is below NUMEDGES.
+     */
+    private static void checkAdjacency(int n, int[] offsets, int[] edges, int numEdges) {
+        check(offsets.length == n + 1, "offsets have " + offsets.length + " entries for "
+                + n + " vertices");
+        check(offsets[0] == 0 && offsets[n] == edges.length, "offsets do not span the edges");
+        for (int v = 0; v < n; v += 1) {
+            check(offsets[v] <= offsets[v + 1], "offsets decrease at vertex " + v);
+        }
+        for (int e : edges) {
+            check(e >= 0 && e < numEdges, "edge id out of range: " + e);
+        }
+    }
+
+    private static void check(boolean ok, String problem) {
+        if (!ok) {
+            throw new IllegalArgumentException("Corrupt contraction hierarchy: " + problem);
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    /**
+     * Reads a length, and throws a BufferUnderflowException if it is negative
+     * or more elements of ELEMENTBYTES bytes than IN has left.
+     */
+    private static int readLength(ByteBuffer in, int elementBytes) {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining() / elementBytes) {
+            throw new BufferUnderflowException();
+        }
+        return length;
+    }
+
+    private static int[] readInts(ByteBuffer in) {
+        int[] values = new int[readLength(in, Integer.BYTES)];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + Integer.BYTES * values.length);
+        return values;
+    }
+
+    /** Hashes the structure and edge weights of G. */
+    static long fingerprint(IntAStarGraph g) {
+        long h = g.numVertices();
+        for (int v = 0; v < g.numVertices(); v += 1) {
+            for (int e = g.firstEdge(v); e < g.endEdge(v); e += 1) {
+                h = 31 * h + v;
+                h = 31 * h + g.edgeTarget(e);
+                h = 31 * h + Double.doubleToLongBits(g.edgeWeight(e));
+            }
+        }
+        return h;
+    }
+}
@@ -0,0 +1,335 @@
+package bearmaps.hw4.ch;
+
+import bearmaps.hw4.IntAStarGraph;
+import bearmaps.hw4.SearchState;
+import bearmaps.proj2ab.IntArrayHeapMinPQ;
+
+import java.util.Arrays;
+
+/**
+ * Builds a ContractionHierarchy by contracting the vertices of a graph one at
+ * a time, cheapest first. Contracting v removes it from the remaining graph
+ * and adds a shortcut u -> w for every pair of remaining neighbours whose
+ * shortest path runs through v, which a bounded "witness" Dijkstra search
+ * decides. The cost of contracting a vertex is its edge difference (shortcuts
+ * added minus edges removed) plus the number of its already-contracted
+ * neighbours, which keeps the hierarchy spread out evenly. Priorities are
+ * updated lazily.
+ */
+class Contractor {
+    /** A witness search gives up after settling this many vertices. */
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+
+    private final int n;
+
+    /* The edge table. Edges with second == -1 are copies of original edge first. */
+    private int[] from;
+    private int[] to;
+    private double[] weight;
+    private int[] first;
+    private int[] second;
+    private int numEdges;
+
+    /* Ids of the edges leaving and entering each vertex, including shortcuts. */
+    private final int[][] out;
+    private final int[] outSize;
+    private final int[][] in;
+    private final int[] inSize;
+
+    private final boolean[] contracted;
+    private final int[] contractedNeighbors;
+    /* mark[u] == v + 1 once u's priority has been updated for v's contraction. */
+    private final int[] mark;
+    /* isTarget[w] == targetStamp while w is a target of the current witness search. */
+    private final int[] isTarget;
+    private int targetStamp;
+    private final int[] rank;
+    private final SearchState witness;
+
+    Contractor(IntAStarGraph g) {
+        n = g.numVertices();
+        from = new int[16];
+        to = new int[16];
+        weight = new double[16];
+        first = new int[16];
+        second = new int[16];
+        out = new int[n][];
+        in = new int[n][];
+        outSize = new int[n];
+        inSize = new int[n];
+        for (int v = 0; v < n; v += 1) {
+            out[v] = new int[4];
+            in[v] = new int[4];
+        }
+        contracted = new boolean[n];
+        contractedNeighbors = new int[n];
+        mark = new int[n];
+        isTarget = new int[n];
+        rank = new int[n];
+        witness = new SearchState(n);
+
+        for (int v = 0; v < n; v += 1) {
+            for (int e = g.firstEdge(v); e < g.endEdge(v); e += 1) {
+                if (g.edgeTarget(e) != v) {
+                    addEdge(v, g.edgeTarget(e), g.edgeWeight(e), e, -1);
+                }
+            }
+        }
+    }
+
+    /** Contracts every vertex and returns the resulting hierarchy. */
+    ContractionHierarchy contract(IntAStarGraph g, long fingerprint) {
+        IntArrayHeapMinPQ pq = new IntArrayHeapMinPQ(n);
+        for (int v = 0; v < n; v += 1) {
+            pq.add(v, priority(v));
+        }
+
+        int nextRank = 0;
+        while (pq.size() != 0) {
+            int v = pq.removeSmallest();
+            // Lazy update: the priority may have gone stale since v was queued.
+            double p = priority(v);
+            if (pq.size() != 0 && p > pq.smallestPriority()) {
+                pq.add(v, p);
+                continue;
+            }
+
+            processShortcuts(v, true);
+            contracted[v] = true;
+            // Only uncontracted vertices are searched from now on, so drop the
+            // edges into and out of v from its neighbours' lists.
+            for (int i = 0; i < outSize[v]; i += 1) {
+                remove(in, inSize, to[out[v][i]], out[v][i]);
+            }
+            for (int i = 0; i < inSize[v]; i += 1) {
+                remove(out, outSize, from[in[v][i]], in[v][i]);
+            }
+            rank[v] = nextRank;
+            nextRank += 1;
+
+            for (int i = 0; i < outSize[v]; i += 1) {
+                touchNeighbor(pq, v, to[out[v][i]]);
+            }
+            for (int i = 0; i < inSize[v]; i += 1) {
+                touchNeighbor(pq, v, from[in[v][i]]);
+            }
+        }
+        return assemble(g, fingerprint);
+    }
+
+    private void touchNeighbor(IntArrayHeapMinPQ pq, int v, int u) {
+        if (!contracted[u] && mark[u] != v + 1) {
+            mark[u] = v + 1;
+            contractedNeighbors[u] += 1;
+            pq.changePriority(u, priority(u));
+        }
+    }
+
+    private double priority(int v) {
+        int removed = 0;
+        for (int i = 0; i < outSize[v]; i += 1) {
+            removed += contracted[to[out[v][i]]] ? 0 : 1;
+        }
+        for (int i = 0; i < inSize[v]; i += 1) {
+            removed += contracted[from[in[v][i]]] ? 0 : 1;
+        }
+        return processShortcuts(v, false) - removed + contractedNeighbors[v];
+    }
+
+    /**
+     * Counts the shortcuts needed to contract V, adding them to the graph if
+     * ADD is true.
+     */
+    private int processShortcuts(int v, boolean add) {
+        double maxOut = 0;
+        for (int i = 0; i < outSize[v]; i += 1) {
+            int e = out[v][i];
+            if (!contracted[to[e]]) {
+                maxOut = Math.max(maxOut, weight[e]);
+            }
+        }
+
+        int count = 0;
+        for (int i = 0; i < inSize[v]; i += 1) {
+            int inEdge = in[v][i];
+            int u = from[inEdge];
+            if (contracted[u]) {
+                continue;
+            }
+            int targets = 0;
+            targetStamp += 1;
+            for (int j = 0; j < outSize[v]; j += 1) {
+                int w = to[out[v][j]];
+                if (!contracted[w] && w != u && isTarget[w] != targetStamp) {
+                    isTarget[w] = targetStamp;
+                    targets += 1;
+                }
+            }
+            witnessSearch(u, v, weight[inEdge] + maxOut, targets);
+            for (int j = 0; j < outSize[v]; j += 1) {
+                int outEdge = out[v][j];
+                int w = to[outEdge];
+                if (contracted[w] || w == u) {
+                    continue;
+                }
+                double via = weight[inEdge] + weight[outEdge];
+                if (witness.dist(w) > via) {
+                    count += 1;
+                    if (add) {
+                        addEdge(u, w, via, inEdge, outEdge);
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Runs Dijkstra from SOURCE over the uncontracted vertices other than
+     * AVOID, stopping once all TARGETS marked in isTarget are settled,
+     * distances exceed MAXDIST, or the settle limit is hit.
+     */
+    private void witnessSearch(int source, int avoid, double maxDist, int targets) {
+        witness.begin();
+        IntArrayHeapMinPQ heap = witness.heap();
+        witness.touch(source, 0);
+        witness.relax(source, 0, -1, -1);
+        heap.add(source, 0);
+
+        int settled = 0;
+        while (heap.size() != 0 && settled < WITNESS_SETTLE_LIMIT
+                && heap.smallestPriority() <= maxDist) {
+            int x = heap.removeSmallest();
+            settled += 1;
+            if (isTarget[x] == targetStamp) {
+                targets -= 1;
+                if (targets == 0) {
+                    return;
+                }
+            }
+            double dx = witness.dist(x);
+            for (int i = 0; i < outSize[x]; i += 1) {
+                int e = out[x][i];
+                int y = to[e];
+                if (contracted[y] || y == avoid) {
+                    continue;
+                }
+                if (!witness.touched(y)) {
+                    witness.touch(y, 0);
+                }
+                double d = dx + weight[e];
+                if (d < witness.dist(y)) {
+                    witness.relax(y, d, x, e);
+                    if (heap.contains(y)) {
+                        heap.changePriority(y, d);
+                    } else {
+                        heap.add(y, d);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the edge U -> W, unless a remaining edge U -> W is already at least
+     * as short. A longer parallel edge is unlinked instead, since it can
+     * never be part of a shortest path and would only cause more shortcuts.
+     */
+    private void addEdge(int u, int w, double length, int firstChild, int secondChild) {
+        for (int i = 0; i < outSize[u]; i += 1) {
+            int e = out[u][i];
+            if (to[e] == w) {
+                if (weight[e] <= length) {
+                    return;
+                }
+                unlink(e);
+                break;
+            }
+        }
+
+        if (numEdges == from.length) {
+            from = Arrays.copyOf(from, numEdges * 2);
+            to = Arrays.copyOf(to, numEdges * 2);
+            weight = Arrays.copyOf(weight, numEdges * 2);
+            first = Arrays.copyOf(first, numEdges * 2);
+            second = Arrays.copyOf(second, numEdges * 2);
+        }
+        from[numEdges] = u;
+        to[numEdges] = w;
+        weight[numEdges] = length;
+        first[numEdges] = firstChild;
+        second[numEdges] = secondChild;
+
+        if (outSize[u] == out[u].length) {
+            out[u] = Arrays.copyOf(out[u], outSize[u] * 2);
+        }
+        out[u][outSize[u]] = numEdges;
+        outSize[u] += 1;
+        if (inSize[w] == in[w].length) {
+            in[w] = Arrays.copyOf(in[w], inSize[w] * 2);
+        }
+        in[w][inSize[w]] = numEdges;
+        inSize[w] += 1;
+
+        numEdges += 1;
+    }
+
+    /**
+     * Removes edge E from the adjacency lists of its endpoints. It stays in the
+     * edge table, since shortcuts may already refer to it.
+     */
+    private void unlink(int e) {
+        remove(out, outSize, from[e], e);
+        remove(in, inSize, to[e], e);
+    }
+
+    private static void remove(int[][] lists, int[] sizes, int v, int e) {
+        for (int i = 0; i < sizes[v]; i += 1) {
+            if (lists[v][i] == e) {
+                sizes[v] -= 1;
+                lists[v][i] = lists[v][sizes[v]];
+                return;
+            }
+        }
+    }
+
+    /**
+     * Splits the edge table into the upward graph (edges towards higher rank,
+     * stored at their tail) and the downward graph (edges from higher rank,
+     * stored reversed at their head).
+     */
+    private ContractionHierarchy assemble(IntAStarGraph g, long fingerprint) {
+        int[] upOffsets = new int[n + 1];
+        int[] downOffsets = new int[n + 1];
+        for (int e = 0; e < numEdges; e += 1) {
+            if (rank[from[e]] < rank[to[e]]) {
+                upOffsets[from[e] + 1] += 1;
+            } else {
+                downOffsets[to[e] + 1] += 1;
+            }
+        }
+        for (int v = 0; v < n; v += 1) {
+            upOffsets[v + 1] += upOffsets[v];
+            downOffsets[v + 1] += downOffsets[v];
+        }
+
+        int[] upNext = Arrays.copyOf(upOffsets, n);
+        int[] downNext = Arrays.copyOf(downOffsets, n);
+        int[] upEdges = new int[upOffsets[n]];
+        int[] downEdges = new int[downOffsets[n]];
+        for (int e = 0; e < numEdges; e += 1) {
+            if (rank[from[e]] < rank[to[e]]) {
+                upEdges[upNext[from[e]]] = e;
+                upNext[from[e]] += 1;
+            } else {
+                downEdges[downNext[to[e]]] = e;
+                downNext[to[e]] += 1;
+            }
+        }
+
+        return new ContractionHierarchy(g, fingerprint, rank,
+                Arrays.copyOf(from, numEdges), Arrays.copyOf(to, numEdges),
+                Arrays.copyOf(weight, numEdges), Arrays.copyOf(first, numEdges),
+                Arrays.copyOf(second, numEdges), upOffsets, upEdges, downOffsets, downEdges);
+    }
+}
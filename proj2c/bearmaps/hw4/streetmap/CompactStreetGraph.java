@@ -0,0 +1,309 @@
+package bearmaps.hw4.streetmap;
+
+import bearmaps.hw4.IntAStarGraph;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A frozen, compressed-sparse-row (CSR) view of the street graph. Vertices are
+ * remapped to dense indices 0..numVertices()-1 in ascending OSM id order, and
+ * all adjacency data lives in primitive arrays, so iterating over the outgoing
+ * edges of a vertex allocates nothing:
+ *
+ * <pre>
+ *     for (int e = g.firstEdge(v); e &lt; g.endEdge(v); e += 1) {
+ *         int w = g.edgeTarget(e);
+ *         double weight = g.edgeWeight(e);
+ *     }
+ * </pre>
+ *
+ * Instances are immutable once built; use a {@link Builder} to create one.
+ */
+public class CompactStreetGraph implements IntAStarGraph {
+    /** Marks an edge whose way has no name. */
+    public static final int NO_NAME = -1;
+
+    private final long[] ids;
+    private final double[] lons;
+    private final double[] lats;
+
+    /** The outgoing edges of vertex v are offsets[v] (inclusive) to offsets[v + 1] (exclusive). */
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] weights;
+    private final int[] edgeNames;
+    private final String[] wayNames;
+
+    CompactStreetGraph(long[] ids, double[] lons, double[] lats, int[] offsets,
+                               int[] targets, double[] weights, int[] edgeNames,
+                               String[] wayNames) {
+        this.ids = ids;
+        this.lons = lons;
+        this.lats = lats;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.edgeNames = edgeNames;
+        this.wayNames = wayNames;
+    }
+
+    /** Returns the number of vertices in this graph. */
+    @Override
+    public int numVertices() {
+        return ids.length;
+    }
+
+    /** Returns the number of directed edges in this graph. */
+    public int numEdges() {
+        return targets.length;
+    }
+
+    /**
+     * Returns the dense index of the vertex with the given OSM id, or -1 if
+     * there is no such vertex.
+     */
+    public int indexOf(long id) {
+        int index = Arrays.binarySearch(ids, id);
+        return index < 0 ? -1 : index;
+    }
+
+    /** Returns the OSM id of vertex V. */
+    public long id(int v) {
+        return ids[v];
+    }
+
+    /** Returns the longitude of vertex V. */
+    public double lon(int v) {
+        return lons[v];
+    }
+
+    /** Returns the latitude of vertex V. */
+    public double lat(int v) {
+        return lats[v];
+    }
+
+    /** Returns the out-degree of vertex V. */
+    public int degree(int v) {
+        return offsets[v + 1] - offsets[v];
+    }
+
+    /** Returns the id of the first outgoing edge of vertex V. */
+    @Override
+    public int firstEdge(int v) {
+        return offsets[v];
+    }
+
+    /** Returns one past the id of the last outgoing edge of vertex V. */
+    @Override
+    public int endEdge(int v) {
+        return offsets[v + 1];
+    }
+
+    /** Returns the vertex that edge E points to. */
+    @Override
+    public int edgeTarget(int e) {
+        return targets[e];
+    }
+
+    /** Returns the length of edge E in miles. */
+    @Override
+    public double edgeWeight(int e) {
+        return weights[e];
+    }
+
+    /**
+     * Returns the great-circle distance between S and GOAL.
+     */
+    @Override
+    public double estimatedDistanceToGoal(int s, int goal) {
+        return StreetMapGraph.distance(lons[s], lons[goal], lats[s], lats[goal]);
+    }
+
+    /** Returns the name code of edge E's way, or NO_NAME if the way is unnamed. */
+    public int edgeNameCode(int e) {
+        return edgeNames[e];
+    }
+
+    /** Returns the name of edge E's way, or null if the way is unnamed. */
+    public String edgeName(int e) {
+        int code = edgeNames[e];
+        return code == NO_NAME ? null : wayNames[code];
+    }
+
+    /**
+     * Returns the id of the edge from V to W, or -1 if there is none. If there
+     * are parallel edges, the first one added wins.
+     */
+    public int findEdge(int v, int w) {
+        for (int e = offsets[v]; e < offsets[v + 1]; e += 1) {
+            if (targets[e] == w) {
+                return e;
+            }
+        }
+        return -1;
+    }
+
+    /** Writes this graph's arrays to OUT, in the layout readFrom expects. */
+    void writeTo(DataOutputStream out) throws IOException {
+        GraphSnapshot.writeLongs(out, ids);
+        GraphSnapshot.writeDoubles(out, lons);
+        GraphSnapshot.writeDoubles(out, lats);
+        GraphSnapshot.writeInts(out, offsets);
+        GraphSnapshot.writeInts(out, targets);
+        GraphSnapshot.writeDoubles(out, weights);
+        GraphSnapshot.writeInts(out, edgeNames);
+        GraphSnapshot.writeStrings(out, wayNames);
+    }
+
+    /**
+     * Reads a graph written by writeTo from the current position of IN.
+     * Throws an IllegalArgumentException if the arrays do not fit together.
+     */
+    static CompactStreetGraph readFrom(ByteBuffer in) {
+        long[] ids = GraphSnapshot.readLongs(in);
+        double[] lons = GraphSnapshot.readDoubles(in);
+        double[] lats = GraphSnapshot.readDoubles(in);
+        int[] offsets = GraphSnapshot.readInts(in);
+        int[] targets = GraphSnapshot.readInts(in);
+        double[] weights = GraphSnapshot.readDoubles(in);
+        int[] edgeNames = GraphSnapshot.readInts(in);
+        String[] wayNames = GraphSnapshot.readStrings(in);
+        int n = ids.length;
+        int m = targets.length;
+        if (lons.length != n || lats.length != n || offsets.length != n + 1
+                || offsets[n] != m || weights.length != m || edgeNames.length != m) {
+            throw new IllegalArgumentException("Inconsistent graph arrays");
+        }
+        return new CompactStreetGraph(ids, lons, lats, offsets, targets, weights, edgeNames,
+                wayNames);
+    }
+
+    /**
+     * Accumulates vertices and edges keyed by OSM id, then freezes them into a
+     * CompactStreetGraph. Edges keep the order in which they were added.
+     */
+    public static class Builder {
+        private long[] nodeIds = new long[16];
+        private double[] nodeLons = new double[16];
+        private double[] nodeLats = new double[16];
+        private int numNodes;
+
+        private long[] edgeFrom = new long[16];
+        private long[] edgeTo = new long[16];
+        private double[] edgeWeight = new double[16];
+        private int[] edgeName = new int[16];
+        private int numEdges;
+
+        private final Map<String, Integer> nameCodes = new HashMap<>();
+        private String[] names = new String[16];
+
+        /** Adds a vertex. Vertices must have distinct ids. */
+        public Builder addNode(long id, double lat, double lon) {
+            if (numNodes == nodeIds.length) {
+                nodeIds = Arrays.copyOf(nodeIds, numNodes * 2);
+                nodeLons = Arrays.copyOf(nodeLons, numNodes * 2);
+                nodeLats = Arrays.copyOf(nodeLats, numNodes * 2);
+            }
+            nodeIds[numNodes] = id;
+            nodeLons[numNodes] = lon;
+            nodeLats[numNodes] = lat;
+            numNodes += 1;
+            return this;
+        }
+
+        /** Adds a directed edge between two vertices that have been (or will be) added. */
+        public Builder addEdge(long fromID, long toID, double weight, String name) {
+            if (numEdges == edgeFrom.length) {
+                edgeFrom = Arrays.copyOf(edgeFrom, numEdges * 2);
+                edgeTo = Arrays.copyOf(edgeTo, numEdges * 2);
+                edgeWeight = Arrays.copyOf(edgeWeight, numEdges * 2);
+                edgeName = Arrays.copyOf(edgeName, numEdges * 2);
+            }
+            edgeFrom[numEdges] = fromID;
+            edgeTo[numEdges] = toID;
+            edgeWeight[numEdges] = weight;
+            edgeName[numEdges] = intern(name);
+            numEdges += 1;
+            return this;
+        }
+
+        private int intern(String name) {
+            if (name == null) {
+                return NO_NAME;
+            }
+            Integer code = nameCodes.get(name);
+            if (code == null) {
+                code = nameCodes.size();
+                if (code == names.length) {
+                    names = Arrays.copyOf(names, code * 2);
+                }
+                names[code] = name;
+                nameCodes.put(name, code);
+            }
+            return code;
+        }
+
+        /**
+         * Freezes everything added so far into a CompactStreetGraph. Throws an
+         * IllegalArgumentException if an edge refers to an unknown vertex or if
+         * two vertices share an id.
+         */
+        public CompactStreetGraph build() {
+            // Sort the vertices by OSM id so that lookups can binary search.
+            long[] ids = Arrays.copyOf(nodeIds, numNodes);
+            Arrays.sort(ids);
+            for (int i = 1; i < numNodes; i += 1) {
+                if (ids[i] == ids[i - 1]) {
+                    throw new IllegalArgumentException("Duplicate vertex " + ids[i]);
+                }
+            }
+            double[] lons = new double[numNodes];
+            double[] lats = new double[numNodes];
+            for (int i = 0; i < numNodes; i += 1) {
+                int index = lookup(ids, nodeIds[i]);
+                lons[index] = nodeLons[i];
+                lats[index] = nodeLats[i];
+            }
+
+            // Counting sort of the edges by source vertex; stable, so each
+            // vertex's edges stay in insertion order.
+            int[] sources = new int[numEdges];
+            int[] offsets = new int[numNodes + 1];
+            for (int e = 0; e < numEdges; e += 1) {
+                sources[e] = lookup(ids, edgeFrom[e]);
+                offsets[sources[e] + 1] += 1;
+            }
+            for (int v = 0; v < numNodes; v += 1) {
+                offsets[v + 1] += offsets[v];
+            }
+
+            int[] next = Arrays.copyOf(offsets, numNodes);
+            int[] targets = new int[numEdges];
+            double[] weights = new double[numEdges];
+            int[] edgeNames = new int[numEdges];
+            for (int e = 0; e < numEdges; e += 1) {
+                int slot = next[sources[e]];
+                next[sources[e]] += 1;
+                targets[slot] = lookup(ids, edgeTo[e]);
+                weights[slot] = edgeWeight[e];
+                edgeNames[slot] = edgeName[e];
+            }
+
+            return new CompactStreetGraph(ids, lons, lats, offsets, targets, weights, edgeNames,
+                    Arrays.copyOf(names, nameCodes.size()));
+        }
+
+        private static int lookup(long[] ids, long id) {
+            int index = Arrays.binarySearch(ids, id);
+            if (index < 0) {
+                throw new IllegalArgumentException("Edge refers to unknown vertex " + id);
+            }
+            return index;
+        }
+    }
+}
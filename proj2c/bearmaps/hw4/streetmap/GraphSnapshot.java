@@ -0,0 +1,217 @@
+package bearmaps.hw4.streetmap;
+
+import bearmaps.proj2ab.StaticKDTree;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A binary image of a StreetMapGraph, so that the server does not have to
+ * parse the OSM XML on every start. The file is memory-mapped on load
+ * and its arrays are bulk-copied straight out of the mapping.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *     int MAGIC, int VERSION, long source length, long source lastModified
+ *     the CompactStreetGraph arrays (see CompactStreetGraph.writeTo)
+ *     int[] node name codes, one per vertex, -1 if unnamed
+ *     String[] node names
+ *     double[] xs, double[] ys, int[] ids of the spatial index, in tree order
+ * </pre>
+ * Arrays are an int length followed by the elements; strings are an int byte
+ * count (-1 for null) followed by UTF-8 bytes.
+ *
+ * A snapshot records the length and modification time of the XML it was made
+ * from, and is ignored if either has changed or if it was written by a
+ * different VERSION of this class. Bump VERSION whenever the layout changes.
+ */
+class GraphSnapshot {
+    /** Appended to the XML path to get the path of its snapshot. */
+    static final String SUFFIX = ".snapshot";
+
+    private static final int MAGIC = 0x42534e50;
+    private static final int VERSION = 2;
+
+    /**
+     * Returns the graph stored in the snapshot at PATH, or null if there is
+     * none, it is unreadable, or it was not made from the current SOURCE.
+     */
+    static StreetMapGraph load(String path, File source) {
+        File file = new File(path);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC || in.getInt() != VERSION
+                    || in.getLong() != source.length() || in.getLong() != source.lastModified()) {
+                return null;
+            }
+            CompactStreetGraph compact = CompactStreetGraph.readFrom(in);
+            int[] nameCodes = readInts(in);
+            String[] names = readStrings(in);
+            double[] lons = readDoubles(in);
+            double[] lats = readDoubles(in);
+            StaticKDTree spatialIndex = StaticKDTree.fromTreeOrder(lons, lats, readInts(in),
+                    StreetMapGraph.lonScale(lats));
+            for (int i = 0; i < spatialIndex.size(); i += 1) {
+                if (spatialIndex.id(i) < 0 || spatialIndex.id(i) >= compact.numVertices()) {
+                    return null;
+                }
+            }
+            return new StreetMapGraph(compact, new NodeStore(compact, nameCodes, names),
+                    spatialIndex);
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException
+                | IllegalArgumentException e) {
+            // A truncated or corrupt snapshot is simply regenerated.
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Writes G to a snapshot at PATH, stamped with the length and modification
+     * time of SOURCE. The snapshot is written to a temporary file and then
+     * moved into place, so a crash never leaves a half-written snapshot.
+     * Failures are reported but not fatal, since the XML can always be
+     * parsed again.
+     */
+    static void save(String path, File source, StreetMapGraph g) {
+        File target = new File(path);
+        File temp = new File(path + ".tmp");
+        CompactStreetGraph compact = g.compactGraph();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(source.length());
+            out.writeLong(source.lastModified());
+            compact.writeTo(out);
+            g.nodeStore().writeNames(out);
+            writeSpatialIndex(out, g.spatialIndex());
+        } catch (IOException e) {
+            e.printStackTrace();
+            temp.delete();
+            return;
+        }
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+            temp.delete();
+        }
+    }
+
+    private static void writeSpatialIndex(DataOutputStream out, StaticKDTree tree)
+            throws IOException {
+        double[] xs = new double[tree.size()];
+        double[] ys = new double[tree.size()];
+        int[] ids = new int[tree.size()];
+        for (int i = 0; i < tree.size(); i += 1) {
+            xs[i] = tree.x(i);
+            ys[i] = tree.y(i);
+            ids[i] = tree.id(i);
+        }
+        writeDoubles(out, xs);
+        writeDoubles(out, ys);
+        writeInts(out, ids);
+    }
+
+    static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    static void writeLongs(DataOutputStream out, long[] values) throws IOException {
+        out.writeInt(values.length);
+        for (long value : values) {
+            out.writeLong(value);
+        }
+    }
+
+    static void writeDoubles(DataOutputStream out, double[] values) throws IOException {
+        out.writeInt(values.length);
+        for (double value : values) {
+            out.writeDouble(value);
+        }
+    }
+
+    static void writeStrings(DataOutputStream out, String[] values) throws IOException {
+        out.writeInt(values.length);
+        for (String value : values) {
+            if (value == null) {
+                out.writeInt(-1);
+            } else {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+
+    /* The readers below bulk-copy through a view buffer, which does not move
+     * IN's position, so they advance it by hand afterwards. */
+
+    /**
+     * Reads an array length, checking that the array can fit in what is left
+     * of IN so that a corrupt length cannot trigger a huge allocation.
+     */
+    private static int readLength(ByteBuffer in, int elementBytes) {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining() / elementBytes) {
+            throw new BufferUnderflowException();
+        }
+        return length;
+    }
+
+    static int[] readInts(ByteBuffer in) {
+        int[] values = new int[readLength(in, Integer.BYTES)];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + Integer.BYTES * values.length);
+        return values;
+    }
+
+    static long[] readLongs(ByteBuffer in) {
+        long[] values = new long[readLength(in, Long.BYTES)];
+        in.asLongBuffer().get(values);
+        in.position(in.position() + Long.BYTES * values.length);
+        return values;
+    }
+
+    static double[] readDoubles(ByteBuffer in) {
+        double[] values = new double[readLength(in, Double.BYTES)];
+        in.asDoubleBuffer().get(values);
+        in.position(in.position() + Double.BYTES * values.length);
+        return values;
+    }
+
+    static String[] readStrings(ByteBuffer in) {
+        String[] values = new String[readLength(in, Integer.BYTES)];
+        for (int i = 0; i < values.length; i += 1) {
+            int length = in.getInt();
+            if (length > in.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            if (length >= 0) {
+                byte[] bytes = new byte[length];
+                in.get(bytes);
+                values[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+        return values;
+    }
+}
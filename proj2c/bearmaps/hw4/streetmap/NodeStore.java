@@ -0,0 +1,122 @@
+package bearmaps.hw4.streetmap;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The attributes of every vertex of a CompactStreetGraph, stored by column
+ * rather than as an object per node. Ids, latitudes and longitudes are the
+ * graph's own arrays, sorted by id, so a node is found by binary search on
+ * its id. Names are interned: each distinct name is stored once, and each
+ * vertex has the int code of its name, or NO_NAME.
+ *
+ * A vertex is referred to by its index in the graph throughout, from 0 to
+ * size() - 1.
+ */
+public class NodeStore {
+    /** Marks a vertex without a name. */
+    public static final int NO_NAME = -1;
+
+    private final CompactStreetGraph graph;
+    private final int[] nameCodes;
+    private final String[] names;
+
+    /**
+     * Creates a store over the vertices of GRAPH, where vertex v has name
+     * NAMES[NAMECODES[v]], or none if NAMECODES[v] is NO_NAME. Throws an
+     * IllegalArgumentException if the codes do not fit the graph and names.
+     */
+    NodeStore(CompactStreetGraph graph, int[] nameCodes, String[] names) {
+        if (nameCodes.length != graph.numVertices()) {
+            throw new IllegalArgumentException("Expected " + graph.numVertices()
+                    + " name codes, got " + nameCodes.length);
+        }
+        for (int code : nameCodes) {
+            if (code < NO_NAME || code >= names.length) {
+                throw new IllegalArgumentException("Bad name code " + code);
+            }
+        }
+        this.graph = graph;
+        this.nameCodes = nameCodes;
+        this.names = names;
+    }
+
+    /** Creates a store over the vertices of GRAPH, where vertex v is named VERTEXNAMES[v] or null. */
+    static NodeStore of(CompactStreetGraph graph, String[] vertexNames) {
+        int[] codes = new int[vertexNames.length];
+        Map<String, Integer> dictionary = new HashMap<>();
+        String[] names = new String[16];
+        for (int v = 0; v < vertexNames.length; v += 1) {
+            if (vertexNames[v] == null) {
+                codes[v] = NO_NAME;
+                continue;
+            }
+            Integer code = dictionary.get(vertexNames[v]);
+            if (code == null) {
+                code = dictionary.size();
+                if (code == names.length) {
+                    names = Arrays.copyOf(names, code * 2);
+                }
+                names[code] = vertexNames[v];
+                dictionary.put(vertexNames[v], code);
+            }
+            codes[v] = code;
+        }
+        return new NodeStore(graph, codes, Arrays.copyOf(names, dictionary.size()));
+    }
+
+    /** Returns the number of vertices. */
+    public int size() {
+        return nameCodes.length;
+    }
+
+    /** Returns the index of the vertex with OSM id ID, or -1 if there is none. */
+    public int indexOf(long id) {
+        return graph.indexOf(id);
+    }
+
+    /** Returns the OSM id of vertex V. */
+    public long id(int v) {
+        return graph.id(v);
+    }
+
+    /** Returns the latitude of vertex V. */
+    public double lat(int v) {
+        return graph.lat(v);
+    }
+
+    /** Returns the longitude of vertex V. */
+    public double lon(int v) {
+        return graph.lon(v);
+    }
+
+    /** Returns the code of vertex V's name, or NO_NAME if it has none. */
+    public int nameCode(int v) {
+        return nameCodes[v];
+    }
+
+    /** Returns the name of vertex V, or null if it has none. */
+    public String name(int v) {
+        int code = nameCodes[v];
+        return code == NO_NAME ? null : names[code];
+    }
+
+    /** Returns the number of distinct names. */
+    public int numNames() {
+        return names.length;
+    }
+
+    /** Returns the name with code CODE. */
+    public String nameOf(int code) {
+        return names[code];
+    }
+
+    /** Writes the name codes and then the names to OUT, in the layout GraphSnapshot expects. */
+    void writeNames(DataOutputStream out) throws IOException {
+        GraphSnapshot.writeInts(out, nameCodes);
+        GraphSnapshot.writeStrings(out, names);
+    }
+}
@@ -0,0 +1,476 @@
+package bearmaps.hw4.streetmap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads the street graph out of an OSM XML file in three stages, so that
+ * reading a large extract keeps every core busy rather than one parser
+ * thread.
+ *
+ * 1. The calling thread pulls elements off a StAX stream and appends nodes
+ *    and the node references of street ways straight into primitive arrays.
+ *    Ways are cut into batches of about a fixed number of references.
+ * 2. Each full batch of ways goes to a pool of threads, which look up the
+ *    coordinates of its nodes and work out the length of each edge, while
+ *    the calling thread carries on reading.
+ * 3. freeze() waits for the batches and lays the vertices and edges out
+ *    directly as a CompactStreetGraph.
+ *
+ * A failure at any stage, whether reading the stream or weighing a batch,
+ * makes freeze() throw, so a file that could not be read in full never
+ * turns into a smaller graph.
+ *
+ * The graph is the one the OSM documentation's rules give: every segment of
+ * a way with an allowed highway tag is an edge in both directions, named
+ * after the way, and only nodes with an edge or a name of their own are
+ * kept. See OSM documentation on
+ * <a href="http://wiki.openstreetmap.org/wiki/Key:highway">the highway tag</a>,
+ * <a href="http://wiki.openstreetmap.org/wiki/Way">the way XML element</a>, and
+ * <a href="http://wiki.openstreetmap.org/wiki/Node">the node XML element</a>.
+ */
+public class OsmReader {
+    /**
+     * Only allow for non-service roads; this prevents going on pedestrian streets as much as
+     * possible. Note that in Berkeley, many of the campus roads are tagged as motor vehicle
+     * roads, but in practice we walk all over them with such impunity that we forget cars can
+     * actually drive on them.
+     */
+    private static final Set<String> ALLOWED_HIGHWAY_TYPES = new HashSet<>(Arrays.asList
+            ("motorway", "trunk", "primary", "secondary", "tertiary", "unclassified",
+                    "residential", "living_street", "motorway_link", "trunk_link", "primary_link",
+                    "secondary_link", "tertiary_link"));
+    /** The name of a way without a name tag. */
+    private static final String NO_WAY_NAME = "";
+
+    /* What the element being read belongs to. */
+    private static final int IN_NOTHING = 0, IN_NODE = 1, IN_WAY = 2;
+
+    private final int batchRefs;
+    private final ExecutorService pool;
+
+    /* Nodes in the order they were read, duplicates included. */
+    private long[] nodeIds = new long[1024];
+    private double[] nodeLons = new double[1024];
+    private double[] nodeLats = new double[1024];
+    private String[] nodeNames = new String[1024];
+    private int numNodes;
+    /** A lookup table of the nodes read so far, or null if a node has been read since. */
+    private NodeTable table;
+
+    /* The batch of ways being filled: way w has references wayStarts[w] to
+     * wayStarts[w + 1], name code wayNames[w], and may only join the first
+     * wayNodes[w] nodes, the ones read before it ended. */
+    private long[] refs;
+    private int numRefs;
+    private int[] wayStarts = new int[64];
+    private int[] wayNames = new int[64];
+    private int[] wayNodes = new int[64];
+    private int numWays;
+    /** Where the references of the way being read start. */
+    private int wayStart;
+    private final List<Future<EdgeBatch>> batches = new ArrayList<>();
+
+    private final Map<String, Integer> nameCodes = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    private CompactStreetGraph graph;
+    private NodeStore nodes;
+    /** Why read() stopped part way through, or null if it has not. */
+    private Exception failure;
+
+    /**
+     * Creates a reader that weighs edges on up to PARALLELISM threads, in
+     * batches of about BATCHREFS node references.
+     */
+    public OsmReader(int parallelism, int batchRefs) {
+        this.batchRefs = Math.max(batchRefs, 2);
+        refs = new long[this.batchRefs];
+        AtomicInteger threads = new AtomicInteger();
+        pool = Executors.newFixedThreadPool(Math.max(parallelism, 1), r -> {
+            Thread t = new Thread(r, "osm-reader-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Reads the nodes and ways of the OSM XML in IN. If reading fails part
+     * way through, the error is thrown, and freeze() throws it again rather
+     * than building a graph out of what was read before it.
+     */
+    public void read(InputStream in) throws XMLStreamException {
+        try {
+            readElements(in);
+        } catch (XMLStreamException | RuntimeException e) {
+            failure = e;
+            throw e;
+        }
+    }
+
+    private void readElements(InputStream in) throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        XMLStreamReader xml = factory.createXMLStreamReader(in);
+        try {
+            int state = IN_NOTHING;
+            boolean validWay = false;
+            String wayName = NO_WAY_NAME;
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String element = xml.getLocalName();
+                    if (element.equals("node")) {
+                        state = IN_NODE;
+                        addNode(Long.parseLong(xml.getAttributeValue(null, "id")),
+                                Double.parseDouble(xml.getAttributeValue(null, "lat")),
+                                Double.parseDouble(xml.getAttributeValue(null, "lon")));
+                    } else if (element.equals("way")) {
+                        state = IN_WAY;
+                        validWay = false;
+                        wayName = NO_WAY_NAME;
+                        wayStart = numRefs;
+                    } else if (state == IN_WAY && element.equals("nd")) {
+                        addRef(Long.parseLong(xml.getAttributeValue(null, "ref")));
+                    } else if (element.equals("tag") && state != IN_NOTHING) {
+                        String k = xml.getAttributeValue(null, "k");
+                        String v = xml.getAttributeValue(null, "v");
+                        if (state == IN_NODE && k.equals("name")) {
+                            nodeNames[numNodes - 1] = v;
+                        } else if (state == IN_WAY && k.equals("highway")) {
+                            validWay = ALLOWED_HIGHWAY_TYPES.contains(v);
+                        } else if (state == IN_WAY && k.equals("name")) {
+                            wayName = v;
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String element = xml.getLocalName();
+                    if (element.equals("way")) {
+                        if (validWay && numRefs - wayStart > 1) {
+                            endWay(wayName);
+                        } else {
+                            numRefs = wayStart;
+                        }
+                        state = IN_NOTHING;
+                    } else if (element.equals("node")) {
+                        state = IN_NOTHING;
+                    }
+                }
+            }
+        } finally {
+            xml.close();
+        }
+    }
+
+    private void addNode(long id, double lat, double lon) {
+        if (numNodes == nodeIds.length) {
+            nodeIds = Arrays.copyOf(nodeIds, numNodes * 2);
+            nodeLons = Arrays.copyOf(nodeLons, numNodes * 2);
+            nodeLats = Arrays.copyOf(nodeLats, numNodes * 2);
+            nodeNames = Arrays.copyOf(nodeNames, numNodes * 2);
+        }
+        nodeIds[numNodes] = id;
+        nodeLats[numNodes] = lat;
+        nodeLons[numNodes] = lon;
+        numNodes += 1;
+        table = null;
+    }
+
+    /**
+     * Appends a reference of the way being read. If the batch is full, the
+     * ways before it are sent off and it moves to the front of the next one.
+     */
+    private void addRef(long ref) {
+        if (numRefs == refs.length) {
+            if (numWays > 0) {
+                dispatch();
+                wayStart = 0;
+            }
+            if (numRefs == refs.length) {
+                refs = Arrays.copyOf(refs, numRefs * 2);
+            }
+        }
+        refs[numRefs] = ref;
+        numRefs += 1;
+    }
+
+    private void endWay(String wayName) {
+        if (numWays + 1 >= wayStarts.length) {
+            wayStarts = Arrays.copyOf(wayStarts, wayStarts.length * 2);
+            wayNames = Arrays.copyOf(wayNames, wayNames.length * 2);
+            wayNodes = Arrays.copyOf(wayNodes, wayNodes.length * 2);
+        }
+        wayStarts[numWays] = wayStart;
+        wayNames[numWays] = intern(wayName);
+        wayNodes[numWays] = numNodes;
+        numWays += 1;
+        wayStarts[numWays] = numRefs;
+        if (numRefs >= batchRefs) {
+            dispatch();
+        }
+    }
+
+    private int intern(String name) {
+        Integer code = nameCodes.get(name);
+        if (code == null) {
+            code = names.size();
+            nameCodes.put(name, code);
+            names.add(name);
+        }
+        return code;
+    }
+
+    /**
+     * Hands the finished ways of the current batch to the pool. The batch
+     * looks nodes up in a table of every node read so far, which may include
+     * nodes read after some of its ways, so each way carries the number of
+     * nodes read before it: edges only join those, as in a single pass over
+     * the file, however the ways are batched.
+     */
+    private void dispatch() {
+        if (numWays == 0) {
+            return;
+        }
+        if (table == null) {
+            table = new NodeTable(nodeIds, numNodes);
+        }
+        EdgeBatch batch = new EdgeBatch(table, nodeLons, nodeLats,
+                Arrays.copyOf(refs, wayStarts[numWays]), Arrays.copyOf(wayStarts, numWays + 1),
+                Arrays.copyOf(wayNames, numWays), Arrays.copyOf(wayNodes, numWays));
+        batches.add(pool.submit(batch::weigh, batch));
+        // Any references past the last finished way belong to the next batch.
+        int leftover = numRefs - wayStarts[numWays];
+        System.arraycopy(refs, wayStarts[numWays], refs, 0, leftover);
+        numRefs = leftover;
+        numWays = 0;
+        wayStarts[0] = 0;
+        refs = refs.length > batchRefs * 2 ? Arrays.copyOf(refs, Math.max(batchRefs, leftover))
+                : refs;
+    }
+
+    /**
+     * Waits for every batch and builds the graph out of everything read, then
+     * stops the pool. The reader must not read anything afterwards. Throws an
+     * IllegalStateException if read() or any batch failed.
+     */
+    public CompactStreetGraph freeze() {
+        if (graph != null) {
+            return graph;
+        }
+        if (failure != null) {
+            pool.shutdownNow();
+            throw new IllegalStateException("Could not read OSM data", failure);
+        }
+        dispatch();
+        List<EdgeBatch> weighed = new ArrayList<>(batches.size());
+        try {
+            for (Future<EdgeBatch> f : batches) {
+                weighed.add(f.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading OSM data", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not read OSM data", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        if (table == null) {
+            table = new NodeTable(nodeIds, numNodes);
+        }
+
+        // Keep the nodes with an edge or a name, numbered in order of id.
+        int[] degree = new int[numNodes];
+        for (EdgeBatch batch : weighed) {
+            for (int i = 0; i < batch.numEdges; i += 1) {
+                degree[batch.from[i]] += 1;
+            }
+        }
+        int[] vertexOf = new int[numNodes];
+        Arrays.fill(vertexOf, -1);
+        int n = 0;
+        for (int p = 0; p < table.size(); p += 1) {
+            int node = table.node(p);
+            if (degree[node] > 0 || nodeNames[node] != null) {
+                vertexOf[node] = n;
+                n += 1;
+            }
+        }
+        long[] ids = new long[n];
+        double[] lons = new double[n];
+        double[] lats = new double[n];
+        String[] vertexNames = new String[n];
+        int[] offsets = new int[n + 1];
+        for (int node = 0; node < numNodes; node += 1) {
+            int v = vertexOf[node];
+            if (v >= 0) {
+                ids[v] = nodeIds[node];
+                lons[v] = nodeLons[node];
+                lats[v] = nodeLats[node];
+                vertexNames[v] = nodeNames[node];
+                offsets[v + 1] = degree[node];
+            }
+        }
+        for (int v = 0; v < n; v += 1) {
+            offsets[v + 1] += offsets[v];
+        }
+
+        // Counting sort of the edges by source, in the order the ways were read.
+        int m = offsets[n];
+        int[] next = Arrays.copyOf(offsets, n);
+        int[] targets = new int[m];
+        double[] weights = new double[m];
+        int[] edgeNames = new int[m];
+        for (EdgeBatch batch : weighed) {
+            for (int i = 0; i < batch.numEdges; i += 1) {
+                int v = vertexOf[batch.from[i]];
+                int slot = next[v];
+                next[v] += 1;
+                targets[slot] = vertexOf[batch.to[i]];
+                weights[slot] = batch.weight[i];
+                edgeNames[slot] = batch.name[i];
+            }
+        }
+        graph = new CompactStreetGraph(ids, lons, lats, offsets, targets, weights,
+                edgeNames, names.toArray(new String[0]));
+        nodes = NodeStore.of(graph, vertexNames);
+        return graph;
+    }
+
+    /** Returns the ids, coordinates and names of the vertices of the frozen graph. */
+    public NodeStore nodes() {
+        freeze();
+        return nodes;
+    }
+
+    /**
+     * The nodes read up to some point, sorted by id for binary search. A node
+     * id read more than once stands for the first node read with it.
+     */
+    private static class NodeTable {
+        private final long[] sortedIds;
+        /** The node, in reading order, with each sorted id. */
+        private final int[] nodes;
+
+        NodeTable(long[] ids, int count) {
+            long[] sorted = Arrays.copyOf(ids, count);
+            boolean inOrder = true;
+            for (int i = 1; i < count && inOrder; i += 1) {
+                inOrder = sorted[i - 1] < sorted[i];
+            }
+            if (!inOrder) {
+                Arrays.sort(sorted);
+                int unique = 0;
+                for (int i = 0; i < count; i += 1) {
+                    if (unique == 0 || sorted[unique - 1] != sorted[i]) {
+                        sorted[unique] = sorted[i];
+                        unique += 1;
+                    }
+                }
+                sorted = Arrays.copyOf(sorted, unique);
+            }
+            sortedIds = sorted;
+            nodes = new int[sorted.length];
+            Arrays.fill(nodes, -1);
+            for (int node = 0; node < count; node += 1) {
+                int p = inOrder ? node : Arrays.binarySearch(sorted, ids[node]);
+                if (nodes[p] == -1) {
+                    nodes[p] = node;
+                }
+            }
+        }
+
+        int size() {
+            return sortedIds.length;
+        }
+
+        int node(int p) {
+            return nodes[p];
+        }
+
+        /** Returns the node with id ID, or -1 if none was read. */
+        int find(long id) {
+            int p = Arrays.binarySearch(sortedIds, id);
+            return p < 0 ? -1 : nodes[p];
+        }
+    }
+
+    /**
+     * A batch of ways, and once weigh() has run, the edges along them: both
+     * directions of every segment between two nodes read before the way.
+     */
+    private static class EdgeBatch {
+        private final NodeTable table;
+        private final double[] lons;
+        private final double[] lats;
+        private final long[] refs;
+        private final int[] wayStarts;
+        private final int[] wayNames;
+        private final int[] wayNodes;
+
+        int[] from;
+        int[] to;
+        double[] weight;
+        int[] name;
+        int numEdges;
+
+        EdgeBatch(NodeTable table, double[] lons, double[] lats, long[] refs, int[] wayStarts,
+                  int[] wayNames, int[] wayNodes) {
+            this.table = table;
+            this.lons = lons;
+            this.lats = lats;
+            this.refs = refs;
+            this.wayStarts = wayStarts;
+            this.wayNames = wayNames;
+            this.wayNodes = wayNodes;
+        }
+
+        void weigh() {
+            int capacity = 2 * refs.length;
+            from = new int[capacity];
+            to = new int[capacity];
+            weight = new double[capacity];
+            name = new int[capacity];
+            int[] nodes = new int[refs.length];
+            for (int i = 0; i < refs.length; i += 1) {
+                nodes[i] = table.find(refs[i]);
+            }
+            for (int w = 0; w + 1 < wayStarts.length; w += 1) {
+                for (int i = wayStarts[w]; i + 1 < wayStarts[w + 1]; i += 1) {
+                    int a = nodes[i];
+                    int b = nodes[i + 1];
+                    if (a < 0 || b < 0 || a >= wayNodes[w] || b >= wayNodes[w]) {
+                        continue;
+                    }
+                    double d = StreetMapGraph.distance(lons[a], lons[b], lats[a], lats[b]);
+                    add(a, b, d, wayNames[w]);
+                    add(b, a, d, wayNames[w]);
+                }
+            }
+        }
+
+        private void add(int a, int b, double d, int code) {
+            from[numEdges] = a;
+            to[numEdges] = b;
+            weight[numEdges] = d;
+            name[numEdges] = code;
+            numEdges += 1;
+        }
+    }
+}
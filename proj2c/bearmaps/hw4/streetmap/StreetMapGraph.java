@@ -2,53 +2,134 @@ package bearmaps.hw4.streetmap;
 
 import bearmaps.hw4.AStarGraph;
 import bearmaps.hw4.WeightedEdge;
-import org.xml.sax.SAXException;
+import bearmaps.proj2ab.StaticKDTree;
 
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLStreamException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.*;
 
+/**
+ * The street graph read from an OSM XML file. The file is read by an
+ * {@link OsmReader} straight into a {@link CompactStreetGraph}, and this
+ * class is an AStarGraph view over it. A StaticKDTree over the vertices with
+ * outgoing edges is built at the same time, for finding the vertex nearest a
+ * location. It scales longitudes by the cosine of the map's middle latitude,
+ * so its plane distances are close to great-circle ones; the few nearest
+ * candidates it returns are then ranked by great-circle distance exactly.
+ */
 public class StreetMapGraph implements AStarGraph<Long> {
-    private Map<Long, Node> nodes = new HashMap<>();
-    private Map<Long, Set<WeightedEdge<Long>>> neighbors = new HashMap<>();
+    /** The most threads that work out edge lengths while a file is read. */
+    private static final int READ_THREADS = Runtime.getRuntime().availableProcessors();
+    /** Ways are handed to those threads in batches of about this many node references. */
+    private static final int READ_BATCH_REFS = 1 << 16;
+    /**
+     * How many more candidates than asked for are taken from the spatial
+     * index and re-ranked by great-circle distance. Its scaled distances are
+     * off by well under a percent over a city, so only near ties can swap.
+     */
+    private static final int NEAREST_SLACK = 8;
 
-    private StreetMapGraph() {
-    }
+    private NodeStore nodes;
+    private CompactStreetGraph compact;
+    private StaticKDTree spatialIndex;
 
+    /**
+     * Reads the graph from the OSM XML file FILENAME. The parsed graph is
+     * cached in a binary snapshot next to the file, which later calls load
+     * instead as long as the XML has not changed.
+     */
     public StreetMapGraph(String filename) {
-        StreetMapGraph smg = StreetMapGraph.readFromXML(filename);
+        StreetMapGraph smg = StreetMapGraph.load(filename);
         this.nodes = smg.nodes;
-        this.neighbors = smg.neighbors;
+        this.compact = smg.compact;
+        this.spatialIndex = smg.spatialIndex;
+    }
+
+    /**
+     * Creates a graph directly from its frozen form. NODES holds the
+     * attributes of each vertex of COMPACT.
+     */
+    StreetMapGraph(CompactStreetGraph compact, NodeStore nodes, StaticKDTree spatialIndex) {
+        this.compact = compact;
+        this.nodes = nodes;
+        this.spatialIndex = spatialIndex;
     }
 
     /**
      * Returns a list of outgoing edges for V. Assumes V exists in this
-     * graph.
+     * graph. Allocates a fresh list of edges on every call; hot loops should
+     * iterate over compactGraph() instead.
      **/
     @Override
     public List<WeightedEdge<Long>> neighbors(Long v) {
-        Set<WeightedEdge<Long>> incidentSet = neighbors.get(v);
         List<WeightedEdge<Long>> incidentList = new ArrayList<>();
-        for (WeightedEdge<Long> e : incidentSet) {
-            incidentList.add(e);
+        int index = compact.indexOf(v);
+        if (index < 0) {
+            return incidentList;
+        }
+        for (int e = compact.firstEdge(index); e < compact.endEdge(index); e += 1) {
+            WeightedEdge<Long> edge = new WeightedEdge<>(v, compact.id(compact.edgeTarget(e)),
+                    compact.edgeWeight(e));
+            edge.setName(compact.edgeName(e));
+            incidentList.add(edge);
         }
 
         return incidentList;
     }
 
+    /**
+     * Returns the frozen CSR representation of this graph. Vertex indices in
+     * the returned graph can be mapped back to OSM ids with its id method.
+     */
+    public CompactStreetGraph compactGraph() {
+        return compact;
+    }
+
+    /**
+     * Returns a spatial index over the vertices that have outgoing edges,
+     * with x as longitude and y as latitude, and x scaled by lonScale. Its
+     * ids are vertex indices in compactGraph().
+     */
+    public StaticKDTree spatialIndex() {
+        return spatialIndex;
+    }
+
+    /**
+     * Returns the indices in compactGraph() of the K vertices with outgoing
+     * edges nearest (LON, LAT) by great-circle distance, nearest first, or of
+     * all of them if there are fewer than K.
+     */
+    public int[] nearestVertices(double lon, double lat, int k) {
+        // max() guards against K + NEAREST_SLACK overflowing.
+        int[] candidates = spatialIndex.kNearestIds(lon, lat, Math.max(k, k + NEAREST_SLACK));
+        double[] dists = new double[candidates.length];
+        // Insertion sort: the candidates are few and already nearly in order.
+        for (int i = 0; i < candidates.length; i += 1) {
+            int v = candidates[i];
+            double d = distance(compact.lon(v), lon, compact.lat(v), lat);
+            int j = i;
+            for (; j > 0 && dists[j - 1] > d; j -= 1) {
+                candidates[j] = candidates[j - 1];
+                dists[j] = dists[j - 1];
+            }
+            candidates[j] = v;
+            dists[j] = d;
+        }
+        return Arrays.copyOf(candidates, Math.max(0, Math.min(k, candidates.length)));
+    }
+
     /**
      * Returns the great-circle distance between S and GOAL. Assumes
      * S and GOAL exist in this graph.
      */
     @Override
     public double estimatedDistanceToGoal(Long s, Long goal) {
-        Node sNode = nodes.get(s);
-        Node goalNode = nodes.get(goal);
-        return distance(sNode.lon(), goalNode.lon(), sNode.lat(), goalNode.lat());
+        int sIndex = nodes.indexOf(s);
+        int goalIndex = nodes.indexOf(goal);
+        return distance(nodes.lon(sIndex), nodes.lon(goalIndex),
+                nodes.lat(sIndex), nodes.lat(goalIndex));
     }
 
     /**
@@ -57,74 +138,86 @@ public class StreetMapGraph implements AStarGraph<Long> {
      **/
     private Set<Long> vertices() {
         Set<Long> vertices = new HashSet<>();
-        for (long id : nodes.keySet()) {
-            vertices.add(id);
+        for (int v = 0; v < nodes.size(); v += 1) {
+            vertices.add(nodes.id(v));
         }
 
         return vertices;
     }
 
     /**
-     * Factory method. Creates and returns a graph from an OSM XML
-     * file. Assumes file is correctly formatted.
+     * Loads the snapshot of FILENAME if it is up to date, and otherwise parses
+     * FILENAME and writes a fresh snapshot. A snapshot is only written after
+     * the whole file has been read without error, since it is trusted for as
+     * long as the file is unchanged.
      */
-    private static StreetMapGraph readFromXML(String filename) {
-        StreetMapGraph smg = new StreetMapGraph();
-        try {
-            File inputFile = new File(filename);
-            FileInputStream inputStream = new FileInputStream(inputFile);
-            SAXParserFactory factory = SAXParserFactory.newInstance();
-            SAXParser saxParser = factory.newSAXParser();
-            GraphBuildingHandler gbh = new GraphBuildingHandler(smg);
-            saxParser.parse(inputStream, gbh);
-        } catch (ParserConfigurationException | SAXException | IOException e) {
-            e.printStackTrace();
-        }
-
-        smg.clean();
+    private static StreetMapGraph load(String filename) {
+        File source = new File(filename);
+        String snapshotPath = filename + GraphSnapshot.SUFFIX;
+        StreetMapGraph smg = GraphSnapshot.load(snapshotPath, source);
+        if (smg == null) {
+            smg = readFromXML(filename);
+            if (source.isFile()) {
+                GraphSnapshot.save(snapshotPath, source, smg);
+            }
+        }
         return smg;
     }
 
-    /** Adds a node to this graph, if it doesn't yet exist. **/
-    void addNode(Node node) {
-        if (!nodes.containsKey(node.id())) {
-            nodes.put(node.id(), node);
-            neighbors.put(node.id(), new HashSet<>());
+    /**
+     * Factory method. Creates and returns a graph from an OSM XML file.
+     * Throws an IllegalStateException if the file cannot be read or is not
+     * well-formed, rather than returning the part read before the error.
+     */
+    private static StreetMapGraph readFromXML(String filename) {
+        OsmReader reader = new OsmReader(READ_THREADS, READ_BATCH_REFS);
+        try (FileInputStream inputStream = new FileInputStream(filename)) {
+            reader.read(inputStream);
+        } catch (XMLStreamException | IOException e) {
+            throw new IllegalStateException("Could not read OSM data from " + filename, e);
         }
+        CompactStreetGraph compact = reader.freeze();
+        return new StreetMapGraph(compact, reader.nodes(), buildSpatialIndex(compact));
     }
 
-    /** Adds an edge to this graph, if FROMID and TOID are in this graph. Does
-     *  not add additional edge if edge already exists.
-     **/
-    void addWeightedEdge(long fromID, long toID, String name) {
-        if (nodes.containsKey(fromID) && nodes.containsKey(toID)) {
-            Node from = nodes.get(fromID);
-            Node to = nodes.get(toID);
-            double weight = distance(from.lon(), to.lon(), from.lat(), to.lat());
-
-            Set<WeightedEdge<Long>> edgeSet = neighbors.get(fromID);
-            WeightedEdge<Long> weightedEdge = new WeightedEdge<>(from.id(), to.id(), weight);
-            weightedEdge.setName(name);
-            edgeSet.add(weightedEdge);
+    /** Builds a StaticKDTree over the vertices of G with outgoing edges. */
+    private static StaticKDTree buildSpatialIndex(CompactStreetGraph g) {
+        int count = 0;
+        for (int v = 0; v < g.numVertices(); v += 1) {
+            count += g.degree(v) > 0 ? 1 : 0;
         }
+        double[] xs = new double[count];
+        double[] ys = new double[count];
+        int[] ids = new int[count];
+        int i = 0;
+        for (int v = 0; v < g.numVertices(); v += 1) {
+            if (g.degree(v) > 0) {
+                xs[i] = g.lon(v);
+                ys[i] = g.lat(v);
+                ids[i] = v;
+                i += 1;
+            }
+        }
+        return new StaticKDTree(xs, ys, ids, true, lonScale(ys));
     }
 
     /**
-     * Removes vertices with 0 out-degree from graph. Note that this will
-     * cause issues if edges are not bidirectional.
-     **/
-    private void clean() {
-        List<Long> toRemove = new ArrayList<>();
-        for (long id : nodes.keySet()) {
-            if (neighbors(id).size() == 0 && nodes.get(id).name() == null) {
-                toRemove.add(id);
-            }
+     * Returns the cosine of the latitude halfway between the least and
+     * greatest of LATS, which a degree of longitude there is as long as
+     * relative to a degree of latitude. Returns 1 if LATS is empty.
+     */
+    static double lonScale(double[] lats) {
+        if (lats.length == 0) {
+            return 1;
         }
-
-        for (long id : toRemove) {
-            nodes.remove(id);
-            neighbors.remove(id);
+        double min = lats[0];
+        double max = lats[0];
+        for (double lat : lats) {
+            min = Math.min(min, lat);
+            max = Math.max(max, lat);
         }
+        // Near the poles a degree of longitude is next to nothing; keep the scale usable.
+        return Math.max(Math.cos(Math.toRadians((min + max) / 2)), 1e-6);
     }
 
     /**
@@ -179,7 +272,7 @@ public class StreetMapGraph implements AStarGraph<Long> {
      *
      * @source Kevin Lowe & Antares Chen, and https://www.movable-type.co.uk/scripts/latlong.html
      **/
-    private double distance(double lonV, double lonW, double latV, double latW) {
+    static double distance(double lonV, double lonW, double latV, double latW) {
         double phi1 = Math.toRadians(latV);
         double phi2 = Math.toRadians(latW);
         double dphi = Math.toRadians(latW - latV);
@@ -197,10 +290,11 @@ public class StreetMapGraph implements AStarGraph<Long> {
      * @return The longitude of the vertex.
      */
     public double lon(long v) {
-        if (!nodes.containsKey(v)) {
+        int index = nodes.indexOf(v);
+        if (index < 0) {
             return 0.0;
         }
-        return nodes.get(v).lon();
+        return nodes.lon(index);
     }
 
     /**
@@ -209,10 +303,11 @@ public class StreetMapGraph implements AStarGraph<Long> {
      * @return The latitude of the vertex.
      */
     public double lat(long v) {
-        if (!nodes.containsKey(v)) {
+        int index = nodes.indexOf(v);
+        if (index < 0) {
             return 0.0;
         }
-        return nodes.get(v).lat();
+        return nodes.lat(index);
     }
 
     /**
@@ -221,17 +316,32 @@ public class StreetMapGraph implements AStarGraph<Long> {
      * @return The name of the vertex.
      */
     public String name(long v) {
-        if (!nodes.containsKey(v)) {
+        int index = nodes.indexOf(v);
+        if (index < 0) {
             return null;
         }
-        return nodes.get(v).name();
+        return nodes.name(index);
     }
 
+    /**
+     * Returns the ids, coordinates and names of the vertices, by column.
+     * Its vertex indices are those of compactGraph().
+     */
+    public NodeStore nodeStore() {
+        return nodes;
+    }
+
+    /**
+     * Returns a Node object for every vertex. These are made afresh on every
+     * call, so code that reads every node should use nodeStore() instead.
+     */
     protected List<Node> getNodes() {
-        List<Node> nodes = new ArrayList<>();
-        for(Map.Entry<Long, Node> nodeEntry: this.nodes.entrySet()){
-            nodes.add(nodeEntry.getValue());
+        List<Node> list = new ArrayList<>(nodes.size());
+        for (int v = 0; v < nodes.size(); v += 1) {
+            Node node = Node.of(nodes.id(v), nodes.lat(v), nodes.lon(v));
+            node.setName(nodes.name(v));
+            list.add(node);
         }
-        return nodes;
+        return list;
     }
 }
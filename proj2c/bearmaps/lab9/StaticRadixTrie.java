@@ -0,0 +1,429 @@
+package bearmaps.lab9;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable radix trie over a fixed set of weighted keys, built for
+ * autocomplete. Each node knows the k heaviest keys below it, so the top
+ * matches for a prefix take O(prefix length + k) to find no matter how many
+ * keys share the prefix.
+ *
+ * The keys are kept sorted, which makes the keys below any node a contiguous
+ * range of them. A node is therefore just that range, the length of the
+ * prefix it spells, and where its children are; every node is stored in
+ * parallel primitive arrays rather than as an object. Nodes are numbered
+ * breadth first, so the children of a node are numbered consecutively, in
+ * order of the character that leads to them.
+ */
+public class StaticRadixTrie {
+    private static final int ROOT = 0;
+
+    /** The keys in sorted order, and the weight of each. */
+    private final String[] keys;
+    private final int[] weights;
+    private final int k;
+    private final int maxKeyLength;
+
+    /* Node v spells keys[lo[v]].substring(0, depth[v]) and is above keys
+     * lo[v] up to but not including hi[v]. Its children are firstChild[v]
+     * up to firstChild[v] + childCount[v], and each child c is reached by
+     * the character firstChar[c]. */
+    private final int[] lo;
+    private final int[] hi;
+    private final int[] depth;
+    private final int[] firstChild;
+    private final int[] childCount;
+    private final char[] firstChar;
+
+    /** The heaviest keys below node v are top[topStart[v]] up to top[topStart[v + 1]]. */
+    private final int[] topStart;
+    private final int[] top;
+
+    /**
+     * Builds a trie of KEYS, where WEIGHTS[i] is the weight of KEYS[i], that
+     * can list the K heaviest keys with any prefix. Keys of equal weight are
+     * listed in sorted order.
+     */
+    public StaticRadixTrie(String[] keys, int[] weights, int k) {
+        if (keys.length != weights.length) {
+            throw new IllegalArgumentException("Need one weight per key.");
+        }
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        }
+        int n = keys.length;
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i += 1) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> keys[a].compareTo(keys[b]));
+        this.keys = new String[n];
+        this.weights = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            this.keys[i] = keys[order[i]];
+            this.weights[i] = weights[order[i]];
+            if (i > 0 && this.keys[i].equals(this.keys[i - 1])) {
+                throw new IllegalArgumentException("Duplicate key: " + this.keys[i]);
+            }
+        }
+        this.k = k;
+        int longest = 0;
+        for (String key : keys) {
+            longest = Math.max(longest, key.length());
+        }
+        maxKeyLength = longest;
+
+        // Each node with one child is above a key, so no node count can
+        // exceed twice the number of keys, plus the root.
+        int capacity = 2 * n + 1;
+        int[] nodeLo = new int[capacity];
+        int[] nodeHi = new int[capacity];
+        int[] nodeDepth = new int[capacity];
+        int[] nodeFirstChild = new int[capacity];
+        int[] nodeChildCount = new int[capacity];
+        char[] nodeFirstChar = new char[capacity];
+        nodeHi[ROOT] = n;
+        int count = 1;
+        for (int v = 0; v < count; v += 1) {
+            int d = nodeDepth[v];
+            int a = nodeLo[v];
+            // Only the first key in a node's range can end at the node.
+            if (a < nodeHi[v] && this.keys[a].length() == d) {
+                a += 1;
+            }
+            nodeFirstChild[v] = count;
+            while (a < nodeHi[v]) {
+                char c = this.keys[a].charAt(d);
+                int b = a + 1;
+                while (b < nodeHi[v] && this.keys[b].charAt(d) == c) {
+                    b += 1;
+                }
+                nodeLo[count] = a;
+                nodeHi[count] = b;
+                nodeDepth[count] = commonPrefixLength(this.keys[a], this.keys[b - 1]);
+                nodeFirstChar[count] = c;
+                count += 1;
+                a = b;
+            }
+            nodeChildCount[v] = count - nodeFirstChild[v];
+        }
+        lo = Arrays.copyOf(nodeLo, count);
+        hi = Arrays.copyOf(nodeHi, count);
+        depth = Arrays.copyOf(nodeDepth, count);
+        firstChild = Arrays.copyOf(nodeFirstChild, count);
+        childCount = Arrays.copyOf(nodeChildCount, count);
+        firstChar = Arrays.copyOf(nodeFirstChar, count);
+
+        topStart = new int[count + 1];
+        for (int v = 0; v < count; v += 1) {
+            topStart[v + 1] = topStart[v] + Math.min(k, hi[v] - lo[v]);
+        }
+        top = new int[topStart[count]];
+        // Children are numbered after their parents, so going backwards
+        // finishes every child before its parent.
+        for (int v = count - 1; v >= 0; v -= 1) {
+            collectTop(v);
+        }
+    }
+
+    private static int commonPrefixLength(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i += 1) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    /** Fills in the top keys of V from its own key and its children's top keys. */
+    private void collectTop(int v) {
+        if (k == 0) {
+            return;
+        }
+        int start = topStart[v];
+        int size = 0;
+        if (isKey(v)) {
+            size = insertTop(start, size, lo[v]);
+        }
+        for (int c = firstChild[v]; c < firstChild[v] + childCount[v]; c += 1) {
+            for (int i = topStart[c]; i < topStart[c + 1]; i += 1) {
+                if (size == k && !heavier(top[i], top[start + k - 1])) {
+                    // The child's list is sorted, so the rest are lighter still.
+                    break;
+                }
+                size = insertTop(start, size, top[i]);
+            }
+        }
+    }
+
+    /**
+     * Inserts key KEY into the sorted list of SIZE keys at top[START], keeping
+     * at most k, and returns the new size.
+     */
+    private int insertTop(int start, int size, int key) {
+        int i = size < k ? size : k - 1;
+        while (i > 0 && heavier(key, top[start + i - 1])) {
+            top[start + i] = top[start + i - 1];
+            i -= 1;
+        }
+        top[start + i] = key;
+        return Math.min(size + 1, k);
+    }
+
+    /** Returns whether key A comes before key B in a top list. */
+    private boolean heavier(int a, int b) {
+        return weights[a] > weights[b] || (weights[a] == weights[b] && a < b);
+    }
+
+    /** Returns whether node V spells one of the keys. */
+    private boolean isKey(int v) {
+        return lo[v] < hi[v] && keys[lo[v]].length() == depth[v];
+    }
+
+    /** Returns the child of V reached by C, or -1 if there is none. */
+    private int child(int v, char c) {
+        int left = firstChild[v];
+        int right = firstChild[v] + childCount[v] - 1;
+        while (left <= right) {
+            int mid = (left + right) >>> 1;
+            if (firstChar[mid] < c) {
+                left = mid + 1;
+            } else if (firstChar[mid] > c) {
+                right = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the highest node whose keys all start with PREFIX, or -1 if no
+     * key does. The node may spell more than PREFIX, if PREFIX ends part way
+     * along the edge into it.
+     */
+    private int find(String prefix) {
+        int v = ROOT;
+        int d = 0;
+        while (d < prefix.length()) {
+            int c = child(v, prefix.charAt(d));
+            if (c < 0) {
+                return -1;
+            }
+            String label = keys[lo[c]];
+            int end = Math.min(depth[c], prefix.length());
+            for (int i = d + 1; i < end; i += 1) {
+                if (label.charAt(i) != prefix.charAt(i)) {
+                    return -1;
+                }
+            }
+            v = c;
+            d = end;
+        }
+        return v;
+    }
+
+    /** Returns the number of keys. */
+    public int size() {
+        return keys.length;
+    }
+
+    /** Returns the number of keys listed by topKeysWithPrefix. */
+    public int k() {
+        return k;
+    }
+
+    /** Returns true if KEY is one of the keys. */
+    public boolean contains(String key) {
+        int v = find(key);
+        return v >= 0 && depth[v] == key.length() && isKey(v);
+    }
+
+    /** Returns the weight of KEY, or 0 if it is not one of the keys. */
+    public int weight(String key) {
+        int v = find(key);
+        return v >= 0 && depth[v] == key.length() && isKey(v) ? weights[lo[v]] : 0;
+    }
+
+    /** Returns every key that starts with PREFIX, in sorted order. */
+    public List<String> keysWithPrefix(String prefix) {
+        int v = find(prefix);
+        if (v < 0) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(Arrays.asList(keys).subList(lo[v], hi[v]));
+    }
+
+    /**
+     * Returns the k heaviest keys that start with PREFIX, heaviest first, or
+     * all of them if there are fewer than k.
+     */
+    public List<String> topKeysWithPrefix(String prefix) {
+        int v = find(prefix);
+        if (v < 0) {
+            return Collections.emptyList();
+        }
+        List<String> result = new ArrayList<>(topStart[v + 1] - topStart[v]);
+        for (int i = topStart[v]; i < topStart[v + 1]; i += 1) {
+            result.add(keys[top[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns up to LIMIT keys that start with something within MAXDISTANCE
+     * edits of QUERY, ranked by that distance and then by weight. An edit is
+     * inserting, deleting or changing a character, or swapping two adjacent
+     * ones. Gives up after BUDGETNANOS nanoseconds, returning the best keys
+     * found so far. LIMIT is capped at k.
+     */
+    public List<String> fuzzyKeysWithPrefix(String query, int maxDistance, int limit,
+                                            long budgetNanos) {
+        return new FuzzySearch(query, maxDistance, true, budgetNanos).run(Math.min(limit, k));
+    }
+
+    /**
+     * Returns up to LIMIT keys within MAXDISTANCE edits of QUERY, ranked by
+     * distance and then by weight, as fuzzyKeysWithPrefix does for prefixes.
+     */
+    public List<String> fuzzyKeys(String query, int maxDistance, int limit, long budgetNanos) {
+        return new FuzzySearch(query, maxDistance, false, budgetNanos).run(limit);
+    }
+
+    /**
+     * A walk over the trie that keeps, for the string spelled so far, the
+     * row of the edit distance table against the query. Rows only grow along
+     * a path, so a subtree is skipped as soon as every entry of its row is
+     * over the distance allowed, and the walk touches only the small part of
+     * the trie near the query.
+     *
+     * When matching prefixes, a row whose last entry is within the distance
+     * means every key below matches, so the node's top keys are taken as they
+     * are and the walk goes deeper only while it could find a closer prefix.
+     */
+    private class FuzzySearch {
+        /** How many characters are walked between checks of the clock. */
+        private static final int CLOCK_INTERVAL = 256;
+
+        private final String query;
+        private final int maxDistance;
+        private final boolean prefix;
+        private final long deadline;
+        /** rows[i] is the row for the first i characters of the current path. */
+        private final int[][] rows;
+        /** The smallest distance found for each key reached. */
+        private final Map<Integer, Integer> distances = new HashMap<>();
+        private int steps;
+        private boolean outOfTime;
+
+        FuzzySearch(String query, int maxDistance, boolean prefix, long budgetNanos) {
+            this.query = query;
+            this.maxDistance = maxDistance;
+            this.prefix = prefix;
+            this.deadline = System.nanoTime() + budgetNanos;
+            rows = new int[maxKeyLength + 1][query.length() + 1];
+            for (int j = 0; j <= query.length(); j += 1) {
+                rows[0][j] = j;
+            }
+        }
+
+        List<String> run(int limit) {
+            int m = query.length();
+            int best = maxDistance + 1;
+            if (m <= maxDistance) {
+                if (prefix) {
+                    found(ROOT, m);
+                    best = m;
+                } else if (isKey(ROOT)) {
+                    distances.put(lo[ROOT], m);
+                }
+            }
+            walk(ROOT, best);
+
+            List<Integer> matches = new ArrayList<>(distances.keySet());
+            matches.sort((a, b) -> {
+                int byDistance = Integer.compare(distances.get(a), distances.get(b));
+                if (byDistance != 0) {
+                    return byDistance;
+                }
+                return heavier(a, b) ? -1 : heavier(b, a) ? 1 : 0;
+            });
+            List<String> result = new ArrayList<>();
+            for (int i = 0; i < Math.min(limit, matches.size()); i += 1) {
+                result.add(keys[matches.get(i)]);
+            }
+            return result;
+        }
+
+        /**
+         * Walks the children of V, whose row is rows[depth[V]]. BEST is the
+         * smallest prefix distance already found on the path to V.
+         */
+        private void walk(int v, int best) {
+            int m = query.length();
+            for (int c = firstChild[v]; c < firstChild[v] + childCount[v] && !outOfTime; c += 1) {
+                String label = keys[lo[c]];
+                int childBest = best;
+                boolean pruned = false;
+                for (int i = depth[v]; i < depth[c]; i += 1) {
+                    int rowMin = nextRow(i, label);
+                    if (rowMin > maxDistance || (prefix && rowMin >= childBest)) {
+                        pruned = true;
+                        break;
+                    }
+                    if (prefix && rows[i + 1][m] < childBest) {
+                        childBest = rows[i + 1][m];
+                        found(c, childBest);
+                    }
+                }
+                if (pruned) {
+                    continue;
+                }
+                if (!prefix && isKey(c) && rows[depth[c]][m] <= maxDistance) {
+                    distances.merge(lo[c], rows[depth[c]][m], Math::min);
+                }
+                walk(c, childBest);
+            }
+        }
+
+        /**
+         * Fills in rows[i + 1] from rows[i] for LABEL.charAt(i), and returns
+         * its smallest entry.
+         */
+        private int nextRow(int i, String label) {
+            steps += 1;
+            if (steps % CLOCK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+                outOfTime = true;
+            }
+            int[] prev = rows[i];
+            int[] row = rows[i + 1];
+            char ch = label.charAt(i);
+            row[0] = prev[0] + 1;
+            int rowMin = row[0];
+            for (int j = 1; j <= query.length(); j += 1) {
+                char q = query.charAt(j - 1);
+                int cost = Math.min(prev[j] + 1, row[j - 1] + 1);
+                cost = Math.min(cost, prev[j - 1] + (q == ch ? 0 : 1));
+                if (i > 0 && j > 1 && q == label.charAt(i - 1) && query.charAt(j - 2) == ch) {
+                    cost = Math.min(cost, rows[i - 1][j - 2] + 1);
+                }
+                row[j] = cost;
+                rowMin = Math.min(rowMin, cost);
+            }
+            return rowMin;
+        }
+
+        /** Records that the top keys below V are within DISTANCE of the query. */
+        private void found(int v, int distance) {
+            for (int i = topStart[v]; i < topStart[v + 1]; i += 1) {
+                distances.merge(top[i], distance, Math::min);
+            }
+        }
+    }
+}
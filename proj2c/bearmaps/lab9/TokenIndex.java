@@ -0,0 +1,200 @@
+package bearmaps.lab9;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An inverted index over a fixed list of documents, each a string of
+ * space-separated tokens, for finding the documents that contain every word
+ * of a query in any order. Document d is the d-th string it was built from.
+ *
+ * Each token has a posting list: the documents containing it, as a sorted
+ * int array, with how many times it occurs in each in a parallel array. A
+ * query intersects the lists of its tokens, shortest first, by galloping
+ * through each longer list, so the cost depends mostly on the rarest token.
+ * Matches are ranked by BM25, which favors rare tokens and short documents.
+ */
+public class TokenIndex {
+    /** BM25 term frequency saturation. */
+    private static final double K1 = 1.2;
+    /** BM25 document length normalization. */
+    private static final double B = 0.75;
+
+    private final Map<String, Integer> tokenIds = new HashMap<>();
+    private final int[][] postings;
+    private final int[][] frequencies;
+    private final int[] documentLengths;
+    private final double averageLength;
+
+    /** Builds an index of DOCUMENTS. */
+    public TokenIndex(String[] documents) {
+        List<List<Integer>> docs = new ArrayList<>();
+        List<List<Integer>> freqs = new ArrayList<>();
+        documentLengths = new int[documents.length];
+        long totalLength = 0;
+        for (int d = 0; d < documents.length; d += 1) {
+            String[] tokens = tokenize(documents[d]);
+            documentLengths[d] = tokens.length;
+            totalLength += tokens.length;
+            for (String token : tokens) {
+                Integer t = tokenIds.get(token);
+                if (t == null) {
+                    t = tokenIds.size();
+                    tokenIds.put(token, t);
+                    docs.add(new ArrayList<>());
+                    freqs.add(new ArrayList<>());
+                }
+                // Documents are added in order, so a repeat of a token in
+                // this document is always at the end of its list.
+                List<Integer> list = docs.get(t);
+                int last = list.size() - 1;
+                if (last >= 0 && list.get(last) == d) {
+                    freqs.get(t).set(last, freqs.get(t).get(last) + 1);
+                } else {
+                    list.add(d);
+                    freqs.get(t).add(1);
+                }
+            }
+        }
+        averageLength = documents.length == 0 ? 0 : (double) totalLength / documents.length;
+        postings = new int[docs.size()][];
+        frequencies = new int[docs.size()][];
+        for (int t = 0; t < postings.length; t += 1) {
+            postings[t] = docs.get(t).stream().mapToInt(Integer::intValue).toArray();
+            frequencies[t] = freqs.get(t).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /** Splits S into its tokens, dropping empty ones. */
+    public static String[] tokenize(String s) {
+        return Arrays.stream(s.trim().split(" +")).filter(t -> !t.isEmpty())
+                .toArray(String[]::new);
+    }
+
+    /** Returns the number of documents. */
+    public int size() {
+        return documentLengths.length;
+    }
+
+    /** Returns the documents that contain TOKEN, in increasing order. */
+    public int[] postings(String token) {
+        Integer t = tokenIds.get(token);
+        return t == null ? new int[0] : postings[t].clone();
+    }
+
+    /**
+     * Returns the documents that contain every token of QUERY, best first
+     * by BM25 score, at most LIMIT of them. Ties go to the earlier document.
+     */
+    public int[] search(String query, int limit) {
+        Set<String> uniqueTokens = new LinkedHashSet<>(Arrays.asList(tokenize(query)));
+        if (uniqueTokens.isEmpty()) {
+            return new int[0];
+        }
+        int[] tokens = new int[uniqueTokens.size()];
+        int n = 0;
+        for (String token : uniqueTokens) {
+            Integer t = tokenIds.get(token);
+            if (t == null) {
+                return new int[0];
+            }
+            tokens[n] = t;
+            n += 1;
+        }
+        // Intersect from the rarest token up, so the candidates only shrink.
+        Integer[] order = new Integer[tokens.length];
+        for (int i = 0; i < tokens.length; i += 1) {
+            order[i] = tokens[i];
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(postings[a].length, postings[b].length));
+
+        int[] matches = postings[order[0]].clone();
+        int numMatches = matches.length;
+        for (int i = 1; i < order.length && numMatches > 0; i += 1) {
+            numMatches = intersect(matches, numMatches, postings[order[i]]);
+        }
+
+        double[] scores = new double[numMatches];
+        for (int t : tokens) {
+            double idf = idf(t);
+            int[] list = postings[t];
+            int at = 0;
+            for (int i = 0; i < numMatches; i += 1) {
+                at = gallop(list, at, matches[i]);
+                double tf = frequencies[t][at];
+                double norm = K1 * (1 - B + B * documentLengths[matches[i]] / averageLength);
+                scores[i] += idf * tf * (K1 + 1) / (tf + norm);
+            }
+        }
+
+        Integer[] ranked = new Integer[numMatches];
+        for (int i = 0; i < numMatches; i += 1) {
+            ranked[i] = i;
+        }
+        Arrays.sort(ranked, (a, b) -> scores[a] != scores[b]
+                ? Double.compare(scores[b], scores[a]) : Integer.compare(matches[a], matches[b]));
+        int[] result = new int[Math.min(limit, numMatches)];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = matches[ranked[i]];
+        }
+        return result;
+    }
+
+    /** The BM25 inverse document frequency of token T. */
+    private double idf(int t) {
+        int df = postings[t].length;
+        return Math.log(1 + (size() - df + 0.5) / (df + 0.5));
+    }
+
+    /**
+     * Keeps only the first SIZE entries of CANDIDATES that are also in LIST,
+     * in place, and returns how many that is. Both must be sorted.
+     */
+    static int intersect(int[] candidates, int size, int[] list) {
+        int kept = 0;
+        int at = 0;
+        for (int i = 0; i < size && at < list.length; i += 1) {
+            at = gallop(list, at, candidates[i]);
+            if (at < list.length && list[at] == candidates[i]) {
+                candidates[kept] = candidates[i];
+                kept += 1;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Returns the first index at or after FROM at which sorted LIST holds a
+     * value of at least TARGET, or LIST.length if there is none. Probes
+     * FROM + 1, FROM + 2, FROM + 4, ... to bracket it, then binary searches
+     * the bracket, so the cost grows with the log of the distance skipped.
+     */
+    static int gallop(int[] list, int from, int target) {
+        if (from >= list.length || list[from] >= target) {
+            return from;
+        }
+        // list[lo] < target throughout.
+        int lo = from;
+        int step = 1;
+        while (lo + step < list.length && list[lo + step] < target) {
+            lo += step;
+            step *= 2;
+        }
+        int hi = Math.min(lo + step, list.length);
+        // Now list[lo] < target <= list[hi], taking list[list.length] as infinite.
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            if (list[mid] < target) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+        return hi;
+    }
+}
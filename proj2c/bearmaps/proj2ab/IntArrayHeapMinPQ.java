@@ -0,0 +1,163 @@
+package bearmaps.proj2ab;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * An ArrayHeapMinPQ specialised for int items in the range [0, capacity).
+ * Items and priorities live in parallel primitive arrays, and an int[]
+ * position index replaces the HashMap, so no operation boxes or hashes.
+ * Sifting follows exactly the same rules as ArrayHeapMinPQ, so both heaps
+ * break ties between equal priorities identically.
+ */
+public class IntArrayHeapMinPQ implements IntExtrinsicMinPQ {
+    private int[] items;
+    private double[] priorities;
+    /* positions[item] is the heap index of item, or -1 if it is absent. */
+    private int[] positions;
+    private int size;
+
+    public IntArrayHeapMinPQ(int capacity) {
+        items = new int[Math.max(capacity, 1)];
+        priorities = new double[items.length];
+        positions = new int[items.length];
+        Arrays.fill(positions, -1);
+    }
+
+    /* Grows the heap so that it accepts items up to (but excluding) capacity. */
+    @Override
+    public void ensureCapacity(int capacity) {
+        if (capacity <= positions.length) {
+            return;
+        }
+        int oldLength = positions.length;
+        items = Arrays.copyOf(items, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+        positions = Arrays.copyOf(positions, capacity);
+        Arrays.fill(positions, oldLength, capacity, -1);
+    }
+
+    /* Adds an item with the given priority value. Throws an
+     * IllegalArgumentException if item is already present. */
+    @Override
+    public void add(int item, double priority) {
+        if (contains(item)) {
+            throw new IllegalArgumentException();
+        }
+        items[size] = item;
+        priorities[size] = priority;
+        positions[item] = size;
+        size += 1;
+        climb(size - 1);
+    }
+
+    /* Returns true if the PQ contains the given item. */
+    @Override
+    public boolean contains(int item) {
+        return positions[item] >= 0;
+    }
+
+    /* Returns the minimum item. Throws NoSuchElementException if the PQ is empty. */
+    @Override
+    public int getSmallest() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return items[0];
+    }
+
+    /* Returns the priority of the minimum item. Throws NoSuchElementException if the PQ is empty. */
+    @Override
+    public double smallestPriority() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return priorities[0];
+    }
+
+    /* Removes and returns the minimum item. Throws NoSuchElementException if the PQ is empty. */
+    @Override
+    public int removeSmallest() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        int toRemove = items[0];
+        swap(0, size - 1);
+        size -= 1;
+        positions[toRemove] = -1;
+        sink(0);
+        return toRemove;
+    }
+
+    /* Returns the number of items in the PQ. */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /* Changes the priority of the given item. Throws NoSuchElementException if the item
+     * doesn't exist. */
+    @Override
+    public void changePriority(int item, double priority) {
+        if (!contains(item)) {
+            throw new NoSuchElementException();
+        }
+        int index = positions[item];
+        double oldPriority = priorities[index];
+        priorities[index] = priority;
+        if (oldPriority < priority) {
+            sink(index);
+        } else {
+            climb(index);
+        }
+    }
+
+    /* Removes every item. Takes time proportional to the current size, not the capacity. */
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i += 1) {
+            positions[items[i]] = -1;
+        }
+        size = 0;
+    }
+
+    // Helper of add().
+    private void climb(int i) {
+        while (i > 0 && priorities[i] < priorities[(i - 1) / 2]) {
+            swap(i, (i - 1) / 2);
+            i = (i - 1) / 2;
+        }
+    }
+
+    // Helper of removeSmallest().
+    private void sink(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = 2 * i + 2;
+            if (left < size && priorities[left] < priorities[i]) {
+                smallest = left;
+            }
+            if (right < size && priorities[right] < priorities[smallest]) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    // Swap two nodes.
+    private void swap(int i, int j) {
+        int tempItem = items[i];
+        double tempPriority = priorities[i];
+        items[i] = items[j];
+        priorities[i] = priorities[j];
+        items[j] = tempItem;
+        priorities[j] = tempPriority;
+        positions[items[i]] = i;
+        positions[items[j]] = j;
+    }
+}
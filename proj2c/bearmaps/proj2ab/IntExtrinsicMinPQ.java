@@ -0,0 +1,26 @@
+package bearmaps.proj2ab;
+
+/**
+ * An ExtrinsicMinPQ whose items are ints in the range [0, capacity), so an
+ * implementation can index its bookkeeping by item instead of hashing it.
+ */
+public interface IntExtrinsicMinPQ {
+    /* Inserts an item with the given priority value. */
+    void add(int item, double priority);
+    /* Returns true if the PQ contains the given item. */
+    boolean contains(int item);
+    /* Returns the minimum item. */
+    int getSmallest();
+    /* Returns the priority of the minimum item. */
+    double smallestPriority();
+    /* Removes and returns the minimum item. */
+    int removeSmallest();
+    /* Changes the priority of the given item. */
+    void changePriority(int item, double priority);
+    /* Returns the number of items in the PQ. */
+    int size();
+    /* Removes every item. */
+    void clear();
+    /* Grows the PQ so that it accepts items up to (but excluding) capacity. */
+    void ensureCapacity(int capacity);
+}
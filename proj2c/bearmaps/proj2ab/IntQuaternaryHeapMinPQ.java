@@ -0,0 +1,161 @@
+package bearmaps.proj2ab;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * An IntExtrinsicMinPQ kept as a 4-ary heap: the children of index i are
+ * 4i + 1 to 4i + 4. The heap is half as deep as a binary one, so climbing
+ * does half the work, and the four children sit next to each other in
+ * memory, so sinking costs about the same per level. Sifting moves a hole
+ * down or up rather than swapping at every level.
+ *
+ * Ties between equal priorities may be broken differently than in
+ * IntArrayHeapMinPQ.
+ */
+public class IntQuaternaryHeapMinPQ implements IntExtrinsicMinPQ {
+    private int[] items;
+    private double[] priorities;
+    /* positions[item] is the heap index of item, or -1 if it is absent. */
+    private int[] positions;
+    private int size;
+
+    public IntQuaternaryHeapMinPQ(int capacity) {
+        items = new int[Math.max(capacity, 1)];
+        priorities = new double[items.length];
+        positions = new int[items.length];
+        Arrays.fill(positions, -1);
+    }
+
+    @Override
+    public void ensureCapacity(int capacity) {
+        if (capacity <= positions.length) {
+            return;
+        }
+        int oldLength = positions.length;
+        items = Arrays.copyOf(items, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+        positions = Arrays.copyOf(positions, capacity);
+        Arrays.fill(positions, oldLength, capacity, -1);
+    }
+
+    /* Adds an item with the given priority value. Throws an
+     * IllegalArgumentException if item is already present. */
+    @Override
+    public void add(int item, double priority) {
+        if (contains(item)) {
+            throw new IllegalArgumentException();
+        }
+        size += 1;
+        climb(size - 1, item, priority);
+    }
+
+    @Override
+    public boolean contains(int item) {
+        return positions[item] >= 0;
+    }
+
+    /* Returns the minimum item. Throws NoSuchElementException if the PQ is empty. */
+    @Override
+    public int getSmallest() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return items[0];
+    }
+
+    /* Returns the priority of the minimum item. Throws NoSuchElementException if the PQ is empty. */
+    @Override
+    public double smallestPriority() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return priorities[0];
+    }
+
+    /* Removes and returns the minimum item. Throws NoSuchElementException if the PQ is empty. */
+    @Override
+    public int removeSmallest() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        int toRemove = items[0];
+        positions[toRemove] = -1;
+        size -= 1;
+        if (size > 0) {
+            sink(0, items[size], priorities[size]);
+        }
+        return toRemove;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /* Changes the priority of the given item. Throws NoSuchElementException if the item
+     * doesn't exist. */
+    @Override
+    public void changePriority(int item, double priority) {
+        if (!contains(item)) {
+            throw new NoSuchElementException();
+        }
+        int index = positions[item];
+        if (priority > priorities[index]) {
+            sink(index, item, priority);
+        } else {
+            climb(index, item, priority);
+        }
+    }
+
+    /* Removes every item. Takes time proportional to the current size, not the capacity. */
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i += 1) {
+            positions[items[i]] = -1;
+        }
+        size = 0;
+    }
+
+    /* Puts ITEM with PRIORITY into the hole at index i, moving parents down until it fits. */
+    private void climb(int i, int item, double priority) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 2;
+            if (priorities[parent] <= priority) {
+                break;
+            }
+            place(i, items[parent], priorities[parent]);
+            i = parent;
+        }
+        place(i, item, priority);
+    }
+
+    /* Puts ITEM with PRIORITY into the hole at index i, moving children up until it fits. */
+    private void sink(int i, int item, double priority) {
+        while (true) {
+            int first = 4 * i + 1;
+            if (first >= size) {
+                break;
+            }
+            int smallest = first;
+            int last = Math.min(first + 4, size);
+            for (int c = first + 1; c < last; c += 1) {
+                if (priorities[c] < priorities[smallest]) {
+                    smallest = c;
+                }
+            }
+            if (priorities[smallest] >= priority) {
+                break;
+            }
+            place(i, items[smallest], priorities[smallest]);
+            i = smallest;
+        }
+        place(i, item, priority);
+    }
+
+    private void place(int i, int item, double priority) {
+        items[i] = item;
+        priorities[i] = priority;
+        positions[item] = i;
+    }
+}
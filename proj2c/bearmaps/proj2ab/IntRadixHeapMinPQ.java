@@ -0,0 +1,200 @@
+package bearmaps.proj2ab;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * An IntExtrinsicMinPQ for monotone workloads such as Dijkstra's algorithm,
+ * where no priority is ever below the last one removed. Priorities must be
+ * non-negative, and are compared as the bits of their IEEE representation,
+ * which for non-negative doubles orders them the same way as their values.
+ *
+ * Items are kept in 65 unordered buckets. Bucket 0 holds the items whose
+ * priority equals the last one removed, and bucket b > 0 those whose
+ * priority first differs from it in bit b - 1, counting from the lowest.
+ * Adding or changing a priority is constant time. When bucket 0 runs out,
+ * the lowest nonempty bucket is redistributed around its minimum, and each
+ * of its items lands in a strictly lower bucket, so every item moves at
+ * most 64 times in all.
+ *
+ * Adding or changing a priority to below the last one removed throws an
+ * IllegalArgumentException. Items with equal priorities come out in no
+ * particular order.
+ */
+public class IntRadixHeapMinPQ implements IntExtrinsicMinPQ {
+    private static final int NUM_BUCKETS = 65;
+
+    private final int[][] buckets = new int[NUM_BUCKETS][];
+    private final int[] bucketSizes = new int[NUM_BUCKETS];
+    /* bucketOf[item] is the bucket holding item, or -1 if it is absent. */
+    private int[] bucketOf;
+    /* slotOf[item] is the index of item within its bucket. */
+    private int[] slotOf;
+    private long[] keys;
+    /* The key of the last item removed, which no key in the PQ is below. */
+    private long last;
+    private int size;
+
+    public IntRadixHeapMinPQ(int capacity) {
+        capacity = Math.max(capacity, 1);
+        bucketOf = new int[capacity];
+        slotOf = new int[capacity];
+        keys = new long[capacity];
+        Arrays.fill(bucketOf, -1);
+        for (int b = 0; b < NUM_BUCKETS; b += 1) {
+            buckets[b] = new int[4];
+        }
+    }
+
+    @Override
+    public void ensureCapacity(int capacity) {
+        if (capacity <= bucketOf.length) {
+            return;
+        }
+        int oldLength = bucketOf.length;
+        bucketOf = Arrays.copyOf(bucketOf, capacity);
+        slotOf = Arrays.copyOf(slotOf, capacity);
+        keys = Arrays.copyOf(keys, capacity);
+        Arrays.fill(bucketOf, oldLength, capacity, -1);
+    }
+
+    /* Adds an item with the given priority value. Throws an
+     * IllegalArgumentException if item is already present or the priority
+     * is below the last one removed. */
+    @Override
+    public void add(int item, double priority) {
+        if (contains(item)) {
+            throw new IllegalArgumentException();
+        }
+        keys[item] = keyOf(priority);
+        insert(item);
+        size += 1;
+    }
+
+    @Override
+    public boolean contains(int item) {
+        return bucketOf[item] >= 0;
+    }
+
+    /* Returns the minimum item. Throws NoSuchElementException if the PQ is empty. */
+    @Override
+    public int getSmallest() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        refill();
+        return buckets[0][bucketSizes[0] - 1];
+    }
+
+    /* Returns the priority of the minimum item. Throws NoSuchElementException if the PQ is empty. */
+    @Override
+    public double smallestPriority() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        refill();
+        return Double.longBitsToDouble(last);
+    }
+
+    /* Removes and returns the minimum item. Throws NoSuchElementException if the PQ is empty. */
+    @Override
+    public int removeSmallest() {
+        int item = getSmallest();
+        bucketSizes[0] -= 1;
+        bucketOf[item] = -1;
+        size -= 1;
+        return item;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /* Changes the priority of the given item. Throws NoSuchElementException if the item
+     * doesn't exist, and IllegalArgumentException if the priority is below the last one
+     * removed. */
+    @Override
+    public void changePriority(int item, double priority) {
+        if (!contains(item)) {
+            throw new NoSuchElementException();
+        }
+        long key = keyOf(priority);
+        unlink(item);
+        keys[item] = key;
+        insert(item);
+    }
+
+    /* Removes every item and forgets the last priority removed. Takes time
+     * proportional to the current size, not the capacity. */
+    @Override
+    public void clear() {
+        for (int b = 0; b < NUM_BUCKETS; b += 1) {
+            for (int i = 0; i < bucketSizes[b]; i += 1) {
+                bucketOf[buckets[b][i]] = -1;
+            }
+            bucketSizes[b] = 0;
+        }
+        last = 0;
+        size = 0;
+    }
+
+    /* Returns the key of PRIORITY, checking that it may be added. */
+    private long keyOf(double priority) {
+        // Adding 0.0 turns -0.0, whose sign bit would sort it last, into 0.0.
+        long key = Double.doubleToLongBits(priority + 0.0);
+        if (key < last) {
+            throw new IllegalArgumentException("Priority " + priority
+                    + " is below the last one removed, " + Double.longBitsToDouble(last));
+        }
+        return key;
+    }
+
+    private int bucketIndex(long key) {
+        return key == last ? 0 : 64 - Long.numberOfLeadingZeros(key ^ last);
+    }
+
+    private void insert(int item) {
+        int b = bucketIndex(keys[item]);
+        if (bucketSizes[b] == buckets[b].length) {
+            buckets[b] = Arrays.copyOf(buckets[b], bucketSizes[b] * 2);
+        }
+        buckets[b][bucketSizes[b]] = item;
+        bucketOf[item] = b;
+        slotOf[item] = bucketSizes[b];
+        bucketSizes[b] += 1;
+    }
+
+    /* Removes ITEM from its bucket by moving the bucket's last item into its slot. */
+    private void unlink(int item) {
+        int b = bucketOf[item];
+        int moved = buckets[b][bucketSizes[b] - 1];
+        buckets[b][slotOf[item]] = moved;
+        slotOf[moved] = slotOf[item];
+        bucketSizes[b] -= 1;
+    }
+
+    /* Makes bucket 0 nonempty, if the PQ is, by redistributing the lowest nonempty bucket. */
+    private void refill() {
+        if (bucketSizes[0] > 0) {
+            return;
+        }
+        int b = 1;
+        while (bucketSizes[b] == 0) {
+            b += 1;
+        }
+        int[] bucket = buckets[b];
+        int count = bucketSizes[b];
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < count; i += 1) {
+            min = Math.min(min, keys[bucket[i]]);
+        }
+        last = min;
+        bucketSizes[b] = 0;
+        // Every key in the bucket agrees with min above bit b - 1, so each
+        // lands in a bucket below b, and insert never touches this array.
+        for (int i = 0; i < count; i += 1) {
+            insert(bucket[i]);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package bearmaps.proj2ab;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A PointSet that answers nearest queries by checking every point. Slow, but
+ * obviously correct, so it serves as the reference for the tree-based sets.
+ * Like StaticKDTree, it ranks points by squared Euclidean distance in (x, y).
+ */
+public class NaivePointSet implements SpatialPointSet {
+    private final List<Point> points;
+
+    public NaivePointSet(List<Point> points) {
+        this.points = new ArrayList<>(points);
+    }
+
+    @Override
+    public Point nearest(double x, double y) {
+        Point best = null;
+        double bestDist = Double.POSITIVE_INFINITY;
+        for (Point p : points) {
+            double dist = squaredDistance(p, x, y);
+            if (dist < bestDist) {
+                best = p;
+                bestDist = dist;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public List<Point> kNearest(double x, double y, int k) {
+        List<Point> sorted = new ArrayList<>(points);
+        sorted.sort(Comparator.comparingDouble(p -> squaredDistance(p, x, y)));
+        return new ArrayList<>(sorted.subList(0, Math.min(k, sorted.size())));
+    }
+
+    @Override
+    public List<Point> rangeSearch(double xMin, double yMin, double xMax, double yMax) {
+        List<Point> result = new ArrayList<>();
+        for (Point p : points) {
+            if (p.getX() >= xMin && p.getX() <= xMax && p.getY() >= yMin && p.getY() <= yMax) {
+                result.add(p);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Point> withinRadius(double x, double y, double radius) {
+        List<Point> result = new ArrayList<>();
+        for (Point p : points) {
+            if (squaredDistance(p, x, y) <= radius * radius) {
+                result.add(p);
+            }
+        }
+        return result;
+    }
+
+    private static double squaredDistance(Point p, double x, double y) {
+        double dx = p.getX() - x;
+        double dy = p.getY() - y;
+        return dx * dx + dy * dy;
+    }
+}
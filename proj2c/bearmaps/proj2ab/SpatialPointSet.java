@@ -0,0 +1,21 @@
+package bearmaps.proj2ab;
+
+import java.util.List;
+
+/**
+ * A PointSet that also answers k-nearest and region queries. Distances are
+ * Euclidean in (x, y).
+ */
+public interface SpatialPointSet extends PointSet {
+    /**
+     * Returns the K points nearest (X, Y), nearest first. Returns every point
+     * if there are fewer than K.
+     */
+    List<Point> kNearest(double x, double y, int k);
+
+    /** Returns the points with XMIN <= x <= XMAX and YMIN <= y <= YMAX, in no order. */
+    List<Point> rangeSearch(double xMin, double yMin, double xMax, double yMax);
+
+    /** Returns the points at most RADIUS from (X, Y), in no order. */
+    List<Point> withinRadius(double x, double y, double radius);
+}
@@ -0,0 +1,499 @@
+package bearmaps.proj2ab;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * An immutable 2-d tree bulk-loaded from a fixed set of points. Unlike KDTree,
+ * which inserts points one at a time into linked nodes, the tree is laid out
+ * implicitly in three flat arrays: the subtree over slots [lo, hi) has its
+ * root at the middle slot, with the left subtree before it and the right one
+ * after. Every root is the median of its subtree along the split dimension,
+ * so the tree is perfectly balanced and needs no child pointers.
+ *
+ * Distances are squared Euclidean in (x, y), which ranks points the same as
+ * Euclidean distance without taking a square root. A tree may be given an
+ * x scale, by which x differences are multiplied before they are squared;
+ * for longitudes and latitudes, the cosine of the latitude of the map makes
+ * distances in the plane match distances on the ground. nearestId allocates
+ * nothing, and all queries are safe to call from many threads at once. The
+ * *Ids variants of the queries return point ids rather than Points.
+ */
+public class StaticKDTree implements SpatialPointSet {
+    /* Subranges smaller than this are built on the current thread. */
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    private final double[] xs;
+    private final double[] ys;
+    private final int[] ids;
+    private final double xScale;
+
+    private StaticKDTree(double[] xs, double[] ys, int[] ids, double xScale) {
+        this.xs = xs;
+        this.ys = ys;
+        this.ids = ids;
+        this.xScale = xScale;
+    }
+
+    /** Builds a tree over POINTS. The id of each point is its index in the list. */
+    public StaticKDTree(List<Point> points) {
+        int n = points.size();
+        xs = new double[n];
+        ys = new double[n];
+        ids = new int[n];
+        xScale = 1;
+        int i = 0;
+        for (Point p : points) {
+            xs[i] = p.getX();
+            ys[i] = p.getY();
+            ids[i] = i;
+            i += 1;
+        }
+        new Build(xs, ys, ids, 0, n, true).compute();
+    }
+
+    /**
+     * Builds a tree over the points (XS[i], YS[i]) with ids IDS[i]. The arrays
+     * are copied, not modified. If PARALLEL is true, large subtrees are built
+     * in parallel on the common fork/join pool.
+     */
+    public StaticKDTree(double[] xs, double[] ys, int[] ids, boolean parallel) {
+        this(xs, ys, ids, parallel, 1);
+    }
+
+    /**
+     * Builds a tree over the points (XS[i], YS[i]) with ids IDS[i], measuring
+     * distances with x differences multiplied by XSCALE.
+     */
+    public StaticKDTree(double[] xs, double[] ys, int[] ids, boolean parallel, double xScale) {
+        if (xs.length != ys.length || xs.length != ids.length) {
+            throw new IllegalArgumentException("Coordinate and id arrays differ in length");
+        }
+        checkScale(xScale);
+        this.xs = xs.clone();
+        this.ys = ys.clone();
+        this.ids = ids.clone();
+        this.xScale = xScale;
+        Build build = new Build(this.xs, this.ys, this.ids, 0, xs.length, true);
+        if (parallel && xs.length >= PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(build);
+        } else {
+            build.compute();
+        }
+    }
+
+    /**
+     * Wraps arrays that are already in tree order, such as ones read back
+     * from x(i), y(i) and id(i) of another tree. The arrays are not copied.
+     */
+    public static StaticKDTree fromTreeOrder(double[] xs, double[] ys, int[] ids) {
+        return fromTreeOrder(xs, ys, ids, 1);
+    }
+
+    /** Like fromTreeOrder(XS, YS, IDS), for a tree with x scale XSCALE. */
+    public static StaticKDTree fromTreeOrder(double[] xs, double[] ys, int[] ids,
+                                             double xScale) {
+        if (xs.length != ys.length || xs.length != ids.length) {
+            throw new IllegalArgumentException("Coordinate and id arrays differ in length");
+        }
+        checkScale(xScale);
+        return new StaticKDTree(xs, ys, ids, xScale);
+    }
+
+    private static void checkScale(double xScale) {
+        if (!(xScale > 0) || Double.isInfinite(xScale)) {
+            throw new IllegalArgumentException("x scale must be positive: " + xScale);
+        }
+    }
+
+    /** Returns the number of points in this tree. */
+    public int size() {
+        return xs.length;
+    }
+
+    /** Returns the factor x differences are multiplied by when measuring distances. */
+    public double xScale() {
+        return xScale;
+    }
+
+    /** Returns the x coordinate of the point in tree slot I. */
+    public double x(int i) {
+        return xs[i];
+    }
+
+    /** Returns the y coordinate of the point in tree slot I. */
+    public double y(int i) {
+        return ys[i];
+    }
+
+    /** Returns the id of the point in tree slot I. */
+    public int id(int i) {
+        return ids[i];
+    }
+
+    /** Returns the nearest point to (X, Y), or null if this tree is empty. */
+    @Override
+    public Point nearest(double x, double y) {
+        int slot = nearestSlot(x, y);
+        return slot < 0 ? null : new Point(xs[slot], ys[slot]);
+    }
+
+    /** Returns the id of the nearest point to (X, Y), or -1 if this tree is empty. */
+    public int nearestId(double x, double y) {
+        int slot = nearestSlot(x, y);
+        return slot < 0 ? -1 : ids[slot];
+    }
+
+    private int nearestSlot(double x, double y) {
+        if (xs.length == 0) {
+            return -1;
+        }
+        return nearest(0, xs.length, true, x, y, xs.length >>> 1);
+    }
+
+    /**
+     * Returns the slot nearest (X, Y) among BEST and the subtree over slots
+     * [LO, HI), which splits on x if SPLITX is true and on y otherwise.
+     */
+    private int nearest(int lo, int hi, boolean splitX, double x, double y, int best) {
+        if (lo >= hi) {
+            return best;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (squaredDistance(mid, x, y) < squaredDistance(best, x, y)) {
+            best = mid;
+        }
+
+        double diff = splitX ? (x - xs[mid]) * xScale : y - ys[mid];
+        if (diff < 0) {
+            best = nearest(lo, mid, !splitX, x, y, best);
+            // The right side can only help if the splitting line is closer
+            // than the best point so far.
+            if (diff * diff < squaredDistance(best, x, y)) {
+                best = nearest(mid + 1, hi, !splitX, x, y, best);
+            }
+        } else {
+            best = nearest(mid + 1, hi, !splitX, x, y, best);
+            if (diff * diff < squaredDistance(best, x, y)) {
+                best = nearest(lo, mid, !splitX, x, y, best);
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public List<Point> kNearest(double x, double y, int k) {
+        return toPoints(kNearestSlots(x, y, k));
+    }
+
+    /** Returns the ids of the K points nearest (X, Y), nearest first. */
+    public int[] kNearestIds(double x, double y, int k) {
+        return toIds(kNearestSlots(x, y, k));
+    }
+
+    /**
+     * Collects the K nearest slots in a bounded max-heap keyed by distance,
+     * so the farthest candidate is always at the root, ready to be compared
+     * against and evicted. Returns the slots nearest first.
+     */
+    private int[] kNearestSlots(double x, double y, int k) {
+        k = Math.min(k, xs.length);
+        if (k <= 0) {
+            return new int[0];
+        }
+        int[] heap = new int[k];
+        double[] dists = new double[k];
+        int size = kNearest(0, xs.length, true, x, y, heap, dists, 0);
+
+        // Heap sort: repeatedly move the farthest remaining slot to the back.
+        while (size > 1) {
+            size -= 1;
+            swap(heap, dists, 0, size);
+            sinkMax(heap, dists, 0, size);
+        }
+        return heap;
+    }
+
+    /**
+     * Offers the subtree over slots [LO, HI) to the max-heap of the first SIZE
+     * entries of HEAP and DISTS, which holds at most HEAP.length entries.
+     * Returns the new heap size.
+     */
+    private int kNearest(int lo, int hi, boolean splitX, double x, double y,
+                         int[] heap, double[] dists, int size) {
+        if (lo >= hi) {
+            return size;
+        }
+        int mid = (lo + hi) >>> 1;
+        double d = squaredDistance(mid, x, y);
+        if (size < heap.length) {
+            heap[size] = mid;
+            dists[size] = d;
+            size += 1;
+            for (int i = size - 1; i > 0 && dists[(i - 1) / 2] < dists[i]; i = (i - 1) / 2) {
+                swap(heap, dists, i, (i - 1) / 2);
+            }
+        } else if (d < dists[0]) {
+            heap[0] = mid;
+            dists[0] = d;
+            sinkMax(heap, dists, 0, size);
+        }
+
+        double diff = splitX ? (x - xs[mid]) * xScale : y - ys[mid];
+        int near = diff < 0 ? lo : mid + 1;
+        int nearEnd = diff < 0 ? mid : hi;
+        int far = diff < 0 ? mid + 1 : lo;
+        int farEnd = diff < 0 ? hi : mid;
+        size = kNearest(near, nearEnd, !splitX, x, y, heap, dists, size);
+        if (size < heap.length || diff * diff < dists[0]) {
+            size = kNearest(far, farEnd, !splitX, x, y, heap, dists, size);
+        }
+        return size;
+    }
+
+    private static void sinkMax(int[] heap, double[] dists, int i, int size) {
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && dists[child + 1] > dists[child]) {
+                child += 1;
+            }
+            if (dists[child] <= dists[i]) {
+                return;
+            }
+            swap(heap, dists, i, child);
+            i = child;
+        }
+    }
+
+    private static void swap(int[] heap, double[] dists, int i, int j) {
+        int slot = heap[i];
+        heap[i] = heap[j];
+        heap[j] = slot;
+        double d = dists[i];
+        dists[i] = dists[j];
+        dists[j] = d;
+    }
+
+    @Override
+    public List<Point> rangeSearch(double xMin, double yMin, double xMax, double yMax) {
+        return toPoints(rangeSearchSlots(xMin, yMin, xMax, yMax));
+    }
+
+    /** Returns the ids of the points in the given box, in no order. */
+    public int[] rangeSearchIds(double xMin, double yMin, double xMax, double yMax) {
+        return toIds(rangeSearchSlots(xMin, yMin, xMax, yMax));
+    }
+
+    private int[] rangeSearchSlots(double xMin, double yMin, double xMax, double yMax) {
+        SlotBuffer found = new SlotBuffer();
+        rangeSearch(0, xs.length, true, xMin, yMin, xMax, yMax, found);
+        return found.toArray();
+    }
+
+    private void rangeSearch(int lo, int hi, boolean splitX, double xMin, double yMin,
+                             double xMax, double yMax, SlotBuffer found) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (xs[mid] >= xMin && xs[mid] <= xMax && ys[mid] >= yMin && ys[mid] <= yMax) {
+            found.add(mid);
+        }
+        // Everything left of mid is <= it along the split, everything right >=.
+        double key = splitX ? xs[mid] : ys[mid];
+        if (key >= (splitX ? xMin : yMin)) {
+            rangeSearch(lo, mid, !splitX, xMin, yMin, xMax, yMax, found);
+        }
+        if (key <= (splitX ? xMax : yMax)) {
+            rangeSearch(mid + 1, hi, !splitX, xMin, yMin, xMax, yMax, found);
+        }
+    }
+
+    @Override
+    public List<Point> withinRadius(double x, double y, double radius) {
+        return toPoints(withinRadiusSlots(x, y, radius));
+    }
+
+    /** Returns the ids of the points at most RADIUS from (X, Y), in no order. */
+    public int[] withinRadiusIds(double x, double y, double radius) {
+        return toIds(withinRadiusSlots(x, y, radius));
+    }
+
+    private int[] withinRadiusSlots(double x, double y, double radius) {
+        SlotBuffer found = new SlotBuffer();
+        withinRadius(0, xs.length, true, x, y, radius, found);
+        return found.toArray();
+    }
+
+    private void withinRadius(int lo, int hi, boolean splitX, double x, double y,
+                              double radius, SlotBuffer found) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (squaredDistance(mid, x, y) <= radius * radius) {
+            found.add(mid);
+        }
+        double key = splitX ? xs[mid] : ys[mid];
+        double center = splitX ? x : y;
+        double reach = splitX ? radius / xScale : radius;
+        if (key >= center - reach) {
+            withinRadius(lo, mid, !splitX, x, y, radius, found);
+        }
+        if (key <= center + reach) {
+            withinRadius(mid + 1, hi, !splitX, x, y, radius, found);
+        }
+    }
+
+    private List<Point> toPoints(int[] slots) {
+        List<Point> points = new ArrayList<>(slots.length);
+        for (int slot : slots) {
+            points.add(new Point(xs[slot], ys[slot]));
+        }
+        return points;
+    }
+
+    private int[] toIds(int[] slots) {
+        int[] result = new int[slots.length];
+        for (int i = 0; i < slots.length; i += 1) {
+            result[i] = ids[slots[i]];
+        }
+        return result;
+    }
+
+    /** A growable array of slots found by a region query. */
+    private static class SlotBuffer {
+        private int[] slots = new int[16];
+        private int size;
+
+        void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size] = slot;
+            size += 1;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(slots, size);
+        }
+    }
+
+    private double squaredDistance(int slot, double x, double y) {
+        double dx = (xs[slot] - x) * xScale;
+        double dy = ys[slot] - y;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Arranges slots [lo, hi) into tree order: partitions around the median
+     * along the split dimension, then recurses on both halves, forking the
+     * left half when it is large enough to be worth a task.
+     */
+    private static class Build extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] xs;
+        private final double[] ys;
+        private final int[] ids;
+        private final int lo;
+        private final int hi;
+        private final boolean splitX;
+
+        Build(double[] xs, double[] ys, int[] ids, int lo, int hi, boolean splitX) {
+            this.xs = xs;
+            this.ys = ys;
+            this.ids = ids;
+            this.lo = lo;
+            this.hi = hi;
+            this.splitX = splitX;
+        }
+
+        @Override
+        protected void compute() {
+            arrange(lo, hi, splitX);
+        }
+
+        private void arrange(int from, int to, boolean dimX) {
+            while (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                select(from, to - 1, mid, dimX);
+                if (mid - from >= PARALLEL_THRESHOLD && getPool() != null) {
+                    Build left = new Build(xs, ys, ids, from, mid, !dimX);
+                    left.fork();
+                    arrange(mid + 1, to, !dimX);
+                    left.join();
+                    return;
+                }
+                // Recurse on the left half, which is never the larger one,
+                // and loop on the right.
+                arrange(from, mid, !dimX);
+                from = mid + 1;
+                dimX = !dimX;
+            }
+        }
+
+        private double key(int i, boolean dimX) {
+            return dimX ? xs[i] : ys[i];
+        }
+
+        /**
+         * Quickselect: reorders slots [left, right] so that slot K holds the
+         * element that would be there if they were sorted by the given
+         * dimension, with no larger element before it and no smaller after.
+         * Partitions three ways, so runs of equal coordinates (points on the
+         * same street, say) do not degrade it to quadratic time.
+         */
+        private void select(int left, int right, int k, boolean dimX) {
+            while (right > left) {
+                // Median of three as the pivot.
+                int middle = (left + right) >>> 1;
+                double a = key(left, dimX);
+                double b = key(middle, dimX);
+                double c = key(right, dimX);
+                double pivot = Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+
+                // Invariant: [left, lt) < pivot, [lt, i) == pivot, (gt, right] > pivot.
+                int lt = left;
+                int gt = right;
+                int i = left;
+                while (i <= gt) {
+                    double key = key(i, dimX);
+                    if (key < pivot) {
+                        swap(i, lt);
+                        lt += 1;
+                        i += 1;
+                    } else if (key > pivot) {
+                        swap(i, gt);
+                        gt -= 1;
+                    } else {
+                        i += 1;
+                    }
+                }
+
+                if (k < lt) {
+                    right = lt - 1;
+                } else if (k > gt) {
+                    left = gt + 1;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private void swap(int i, int j) {
+            double x = xs[i];
+            xs[i] = xs[j];
+            xs[j] = x;
+            double y = ys[i];
+            ys[i] = ys[j];
+            ys[j] = y;
+            int id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+        }
+    }
+}
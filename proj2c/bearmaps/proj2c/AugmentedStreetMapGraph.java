@@ -1,10 +1,11 @@
 package bearmaps.proj2c;
 
-import bearmaps.hw4.streetmap.Node;
+import bearmaps.hw4.alt.Landmarks;
+import bearmaps.hw4.ch.ContractionHierarchy;
+import bearmaps.hw4.streetmap.NodeStore;
 import bearmaps.hw4.streetmap.StreetMapGraph;
-import bearmaps.proj2ab.KDTree;
-import bearmaps.proj2ab.Point;
-import bearmaps.lab9.MyTrieSet;
+import bearmaps.lab9.StaticRadixTrie;
+import bearmaps.lab9.TokenIndex;
 
 import java.util.*;
 
@@ -16,75 +17,178 @@ import java.util.*;
  * @author Alan Yao, Josh Hug, ________
  */
 public class AugmentedStreetMapGraph extends StreetMapGraph {
-    private Map<Point, Long> pointToID;
-    private KDTree kdTree;
+    /** The most names getLocationsByPrefix returns. */
+    private static final int AUTOCOMPLETE_RESULTS = 10;
 
-    private MyTrieSet trieSet;
-    private Map<String, List<Node>> cleanedNameToNodes;
+    /**
+     * The longest a search may spend looking for misspelled names, so that
+     * it stays fast enough to run on every keypress.
+     */
+    private static final long FUZZY_SEARCH_BUDGET_NANOS = 5000000;
+
+    /**
+     * The cleaned location names, weighted by how many nodes have each, so
+     * that the most common names are suggested first.
+     */
+    private StaticRadixTrie locationTrie;
+    /**
+     * The words of the cleaned location names, so that names can be found
+     * from their words in any order. Document i is cleanedNames[i].
+     */
+    private TokenIndex locationTokens;
+    private String[] cleanedNames;
+    /** The index in cleanedNames of each cleaned name. */
+    private Map<String, Integer> cleanedNameIndex;
+    /*
+     * The vertices whose names clean to cleanedNames[i] are
+     * locationVertices[locationOffsets[i]] up to locationOffsets[i + 1].
+     */
+    private int[] locationOffsets;
+    private int[] locationVertices;
+
+    private ContractionHierarchy contractionHierarchy;
+    private Landmarks landmarks;
 
     public AugmentedStreetMapGraph(String dbPath) {
         super(dbPath);
-        // You might find it helpful to uncomment the line below:
-        // List<Node> nodes = this.getNodes();
-        pointToID = new HashMap<>();
-        List<Point> points = new LinkedList<>();
-        List<Node> nodes = this.getNodes();
-
-        trieSet = new MyTrieSet();
-        cleanedNameToNodes = new HashMap<>();
-        List<Node> nodesList;
-
-        for (Node node : nodes) {
-            // If the node has a name, clean it, then add it to the trieSet,
-            // and put the (cleaned name, list of nodes) pair into the cleanedNameToNodes map.
-            if (node.name() != null) {
-                String cleanedName = cleanString(node.name());
-
-                trieSet.add(cleanedName);
-
-                if (!cleanedNameToNodes.containsKey(cleanedName)) {
-                    cleanedNameToNodes.put(cleanedName, new LinkedList<>());
-                }
-                // Replace the old list that mapped to the specific cleanedName with new one.
-                nodesList = cleanedNameToNodes.get(cleanedName);
-                nodesList.add(node);
-                cleanedNameToNodes.put(cleanedName, nodesList);
+        NodeStore nodes = nodeStore();
+
+        // Clean each distinct name once, however many nodes share it.
+        cleanedNameIndex = new HashMap<>();
+        int[] cleanedOf = new int[nodes.numNames()];
+        for (int code = 0; code < cleanedOf.length; code += 1) {
+            String cleanedName = cleanString(nodes.nameOf(code));
+            Integer index = cleanedNameIndex.get(cleanedName);
+            if (index == null) {
+                index = cleanedNameIndex.size();
+                cleanedNameIndex.put(cleanedName, index);
             }
+            cleanedOf[code] = index;
+        }
+        cleanedNames = new String[cleanedNameIndex.size()];
+        for (Map.Entry<String, Integer> entry : cleanedNameIndex.entrySet()) {
+            cleanedNames[entry.getValue()] = entry.getKey();
+        }
 
-            // Only consider the node that has neighbors,
-            // and turn these nodes to Points to service
-            // the KDTree.
-            long id = node.id();
-            if (!this.neighbors(id).isEmpty()) {
-                double x = node.lon();
-                double y = node.lat();
-                Point point = new Point(x, y);
-
-                points.add(point);
-                pointToID.put(point, id);
+        // Group the named vertices by cleaned name, in order of id.
+        locationOffsets = new int[cleanedNames.length + 1];
+        for (int v = 0; v < nodes.size(); v += 1) {
+            if (nodes.nameCode(v) != NodeStore.NO_NAME) {
+                locationOffsets[cleanedOf[nodes.nameCode(v)] + 1] += 1;
+            }
+        }
+        for (int i = 0; i < cleanedNames.length; i += 1) {
+            locationOffsets[i + 1] += locationOffsets[i];
+        }
+        locationVertices = new int[locationOffsets[cleanedNames.length]];
+        int[] next = Arrays.copyOf(locationOffsets, cleanedNames.length);
+        for (int v = 0; v < nodes.size(); v += 1) {
+            if (nodes.nameCode(v) != NodeStore.NO_NAME) {
+                int i = cleanedOf[nodes.nameCode(v)];
+                locationVertices[next[i]] = v;
+                next[i] += 1;
             }
         }
 
-        kdTree = new KDTree(points);
+        int[] popularity = new int[cleanedNames.length];
+        for (int i = 0; i < cleanedNames.length; i += 1) {
+            popularity[i] = locationOffsets[i + 1] - locationOffsets[i];
+        }
+        locationTrie = new StaticRadixTrie(cleanedNames, popularity, AUTOCOMPLETE_RESULTS);
+        locationTokens = new TokenIndex(cleanedNames);
     }
 
 
     /**
      * For Project Part II
-     * Returns the vertex closest to the given longitude and latitude.
+     * Returns the vertex closest to the given longitude and latitude, among
+     * the vertices that have neighbors, by great-circle distance.
      * @param lon The target longitude.
      * @param lat The target latitude.
      * @return The id of the node in the graph closest to the target.
      */
     public long closest(double lon, double lat) {
-        Point closestPoint = kdTree.nearest(lon, lat);
-        return pointToID.get(closestPoint);
+        return compactGraph().id(nearestVertices(lon, lat, 1)[0]);
+    }
+
+    /**
+     * Returns the k vertices closest to the given longitude and latitude,
+     * closest first by great-circle distance, among the vertices that have
+     * neighbors.
+     * @param lon The target longitude.
+     * @param lat The target latitude.
+     * @param k How many vertices to return.
+     * @return The ids of the k closest nodes, or of all nodes if there are fewer.
+     */
+    public List<Long> closest(double lon, double lat, int k) {
+        return toIds(nearestVertices(lon, lat, k));
+    }
+
+    /**
+     * Returns the vertices with neighbors inside the given box, such as the
+     * part of the map currently on screen.
+     * @param ullon The longitude of the upper left corner.
+     * @param ullat The latitude of the upper left corner.
+     * @param lrlon The longitude of the lower right corner.
+     * @param lrlat The latitude of the lower right corner.
+     * @return The ids of the nodes inside the box, in no particular order.
+     */
+    public List<Long> verticesInBox(double ullon, double ullat, double lrlon, double lrlat) {
+        return toIds(spatialIndex().rangeSearchIds(ullon, lrlat, lrlon, ullat));
+    }
+
+    /** Maps vertex indices of the compact graph to node ids. */
+    private List<Long> toIds(int[] indices) {
+        List<Long> ids = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            ids.add(compactGraph().id(index));
+        }
+        return ids;
+    }
+
+
+    /**
+     * Loads the contraction hierarchy saved at chPath, or builds one and saves
+     * it there if it is missing or was built for a different graph. Until this
+     * is called, routing falls back to plain A*.
+     * @param chPath Where the hierarchy is persisted.
+     */
+    public void prepareContractionHierarchy(String chPath) {
+        contractionHierarchy = ContractionHierarchy.loadOrBuild(chPath, compactGraph());
+    }
+
+    /**
+     * Returns the contraction hierarchy of this graph, or null if
+     * prepareContractionHierarchy has not been called.
+     */
+    public ContractionHierarchy contractionHierarchy() {
+        return contractionHierarchy;
+    }
+
+
+    /**
+     * Selects landmarks for the ALT heuristic, which A* routing then uses
+     * whenever no contraction hierarchy has been prepared.
+     * @param count How many landmarks to select.
+     */
+    public void prepareLandmarks(int count) {
+        landmarks = Landmarks.select(compactGraph(), count, Landmarks.Strategy.AVOID);
+    }
+
+    /**
+     * Returns the landmarks of this graph, or null if prepareLandmarks has
+     * not been called.
+     */
+    public Landmarks landmarks() {
+        return landmarks;
     }
 
 
     /**
      * For Project Part III (gold points)
-     * In linear time, collect all the names of OSM locations that prefix-match the query string.
+     * Collect the names of the OSM locations that prefix-match the query string, most
+     * common first. At most AUTOCOMPLETE_RESULTS names are returned, found in time
+     * proportional to the length of the prefix however many locations match it.
      * @param prefix Prefix string to be searched for. Could be any case, with or without
      *               punctuation.
      * @return A <code>List</code> of the full names of locations whose cleaned name matches the
@@ -92,22 +196,41 @@ public class AugmentedStreetMapGraph extends StreetMapGraph {
      */
     public List<String> getLocationsByPrefix(String prefix) {
         String cleanedPrefix = cleanString(prefix);
-        List<String> matchedNames = trieSet.keysWithPrefix(cleanedPrefix);
-        Set<String> locationsSet = new HashSet<>();
+        Set<String> locationsSet = new LinkedHashSet<>();
+
+        // If too few names start with the prefix, follow with names that
+        // have all of its words in another order, and then, in case it is
+        // misspelled, names that start with something close to it.
+        Set<String> names = new LinkedHashSet<>(locationTrie.topKeysWithPrefix(cleanedPrefix));
+        if (names.size() < AUTOCOMPLETE_RESULTS) {
+            names.addAll(searchWords(cleanedPrefix));
+        }
+        int maxEdits = maxEdits(cleanedPrefix);
+        if (names.size() < AUTOCOMPLETE_RESULTS && maxEdits > 0) {
+            names.addAll(locationTrie.fuzzyKeysWithPrefix(cleanedPrefix, maxEdits,
+                    AUTOCOMPLETE_RESULTS, FUZZY_SEARCH_BUDGET_NANOS));
+        }
 
-        for (String name : matchedNames) {
-            for (Node node : cleanedNameToNodes.get(name)) {
-                locationsSet.add(node.name());
+        NodeStore nodes = nodeStore();
+        for (String name : names) {
+            int i = cleanedNameIndex.get(name);
+            for (int j = locationOffsets[i]; j < locationOffsets[i + 1]; j += 1) {
+                if (locationsSet.size() == AUTOCOMPLETE_RESULTS) {
+                    return new ArrayList<>(locationsSet);
+                }
+                locationsSet.add(nodes.name(locationVertices[j]));
             }
         }
 
-        return new LinkedList<>(locationsSet);
+        return new ArrayList<>(locationsSet);
     }
 
     /**
      * For Project Part III (gold points)
      * Collect all locations that match a cleaned <code>locationName</code>, and return
-     * information about each node that matches.
+     * information about each node that matches. If none do, the locations whose names contain
+     * all of its words, in any order, are returned instead, best match first; failing that,
+     * the locations whose names are closest to it, within a couple of typos.
      * @param locationName A full name of a location searched for.
      * @return A list of locations whose cleaned name matches the
      * cleaned <code>locationName</code>, and each location is a map of parameters for the Json
@@ -121,13 +244,25 @@ public class AugmentedStreetMapGraph extends StreetMapGraph {
         List<Map<String, Object>> locations = new LinkedList<>();
         String cleanedLocationName = cleanString(locationName);
 
-        if (cleanedNameToNodes.containsKey(cleanedLocationName)) {
-            for (Node node : cleanedNameToNodes.get(cleanedLocationName)) {
+        List<String> names = Collections.singletonList(cleanedLocationName);
+        if (!cleanedNameIndex.containsKey(cleanedLocationName)) {
+            names = searchWords(cleanedLocationName);
+        }
+        if (names.isEmpty()) {
+            names = locationTrie.fuzzyKeys(cleanedLocationName, maxEdits(cleanedLocationName),
+                    AUTOCOMPLETE_RESULTS, FUZZY_SEARCH_BUDGET_NANOS);
+        }
+
+        NodeStore nodes = nodeStore();
+        for (String name : names) {
+            int i = cleanedNameIndex.get(name);
+            for (int j = locationOffsets[i]; j < locationOffsets[i + 1]; j += 1) {
+                int v = locationVertices[j];
                 Map<String, Object> locationInfo = new HashMap<>();
-                locationInfo.put("id", node.id());
-                locationInfo.put("name", node.name());
-                locationInfo.put("lon", node.lon());
-                locationInfo.put("lat", node.lat());
+                locationInfo.put("id", nodes.id(v));
+                locationInfo.put("name", nodes.name(v));
+                locationInfo.put("lon", nodes.lon(v));
+                locationInfo.put("lat", nodes.lat(v));
                 locations.add(locationInfo);
             }
         }
@@ -136,6 +271,31 @@ public class AugmentedStreetMapGraph extends StreetMapGraph {
     }
 
 
+    /**
+     * Returns the cleaned names that contain every word of the cleaned
+     * string S, best match first.
+     */
+    private List<String> searchWords(String s) {
+        List<String> names = new ArrayList<>();
+        for (int d : locationTokens.search(s, AUTOCOMPLETE_RESULTS)) {
+            names.add(cleanedNames[d]);
+        }
+        return names;
+    }
+
+    /**
+     * Returns how many typos to allow in a search for the cleaned string S:
+     * none in very short strings, where almost everything would match.
+     */
+    private static int maxEdits(String s) {
+        if (s.length() < 3) {
+            return 0;
+        } else if (s.length() < 6) {
+            return 1;
+        }
+        return 2;
+    }
+
     /**
      * Useful for Part III. Do not modify.
      * Helper to process strings into their "cleaned" form, ignoring punctuation and capitalization.
@@ -0,0 +1,245 @@
+package bearmaps.proj2c;
+
+import bearmaps.hw4.BoundedDijkstra;
+import bearmaps.hw4.streetmap.CompactStreetGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The area within a given distance of a start location along the streets,
+ * as polygons. The reachable part of the network, including the reachable
+ * stretch of every street that runs out of budget part way along, is drawn
+ * onto a grid of square cells, widened by a cell so that neighboring streets
+ * merge into one area, and the outline of the marked cells is traced into
+ * rings.
+ *
+ * Rings are lists of [lon, lat] points that end where they start. The
+ * outside of an area runs counterclockwise and the holes in it clockwise,
+ * as in GeoJSON.
+ */
+public class Isochrone {
+    /** Miles per degree of latitude, on the same sphere as StreetMapGraph's distances. */
+    private static final double MILES_PER_DEGREE = 3963 * Math.PI / 180;
+    /* Corner directions, counterclockwise: a left turn from d is (d + 1) % 4. */
+    private static final int EAST = 0, NORTH = 1, WEST = 2, SOUTH = 3;
+    private static final int[] DX = {1, 0, -1, 0};
+    private static final int[] DY = {0, 1, 0, -1};
+
+    private final BoundedDijkstra reach;
+    private final List<List<double[]>> rings = new ArrayList<>();
+
+    /* The grid: cell (x, y) spans lon minLon + [x, x + 1] * cellLon, and the same for lat. */
+    private double minLon;
+    private double minLat;
+    private double cellLon;
+    private double cellLat;
+    private int width;
+    private int height;
+    private boolean[] filled;
+
+    /**
+     * Finds the area within BUDGET miles of vertex SOURCE of G, drawn on cells
+     * CELLMILES wide, or wider if that would take more than MAXCELLS cells
+     * along either side of the grid.
+     */
+    public Isochrone(CompactStreetGraph g, int source, double budget, double cellMiles,
+                     int maxCells) {
+        reach = new BoundedDijkstra(g, source, budget);
+        if (reach.numReached() == 0) {
+            return;
+        }
+        layOutGrid(g, budget, cellMiles, maxCells);
+        markReachable(g, budget);
+        dilate();
+        trace();
+    }
+
+    /** Returns the number of vertices within the budget. */
+    public int numReached() {
+        return reach.numReached();
+    }
+
+    /** Returns the outlines of the area, each a closed list of [lon, lat] points. */
+    public List<List<double[]>> rings() {
+        return rings;
+    }
+
+    /**
+     * Sizes the grid to the box around everything reachable, with a margin
+     * of two cells, so the widened area never touches the edge of the grid.
+     */
+    private void layOutGrid(CompactStreetGraph g, double budget, double cellMiles, int maxCells) {
+        double west = Double.POSITIVE_INFINITY;
+        double east = Double.NEGATIVE_INFINITY;
+        double south = Double.POSITIVE_INFINITY;
+        double north = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < reach.numReached(); i += 1) {
+            int v = reach.vertex(i);
+            double remaining = budget - reach.distance(i);
+            west = Math.min(west, g.lon(v));
+            east = Math.max(east, g.lon(v));
+            south = Math.min(south, g.lat(v));
+            north = Math.max(north, g.lat(v));
+            for (int e = g.firstEdge(v); e < g.endEdge(v); e += 1) {
+                double[] end = reachableEnd(g, v, e, remaining);
+                west = Math.min(west, end[0]);
+                east = Math.max(east, end[0]);
+                south = Math.min(south, end[1]);
+                north = Math.max(north, end[1]);
+            }
+        }
+        double middleLat = (south + north) / 2;
+        cellLat = cellMiles / MILES_PER_DEGREE;
+        cellLon = cellLat / Math.max(Math.cos(Math.toRadians(middleLat)), 1e-6);
+        double cells = Math.max((east - west) / cellLon, (north - south) / cellLat);
+        if (cells > maxCells - 4) {
+            double scale = cells / (maxCells - 4);
+            cellLat *= scale;
+            cellLon *= scale;
+        }
+        minLon = west - 2 * cellLon;
+        minLat = south - 2 * cellLat;
+        width = (int) ((east - west) / cellLon) + 5;
+        height = (int) ((north - south) / cellLat) + 5;
+        filled = new boolean[width * height];
+    }
+
+    /** Returns the point REMAINING miles along edge E from V, or its far end if that is nearer. */
+    private static double[] reachableEnd(CompactStreetGraph g, int v, int e, double remaining) {
+        int w = g.edgeTarget(e);
+        double weight = g.edgeWeight(e);
+        double f = weight <= remaining ? 1 : remaining / weight;
+        return new double[]{g.lon(v) + f * (g.lon(w) - g.lon(v)),
+                g.lat(v) + f * (g.lat(w) - g.lat(v))};
+    }
+
+    /** Marks the cells of every reachable vertex and of points along every reachable street. */
+    private void markReachable(CompactStreetGraph g, double budget) {
+        for (int i = 0; i < reach.numReached(); i += 1) {
+            int v = reach.vertex(i);
+            double remaining = budget - reach.distance(i);
+            mark(g.lon(v), g.lat(v));
+            for (int e = g.firstEdge(v); e < g.endEdge(v); e += 1) {
+                double[] end = reachableEnd(g, v, e, remaining);
+                // Sample every half cell, so no cell the street crosses is skipped.
+                double cellsLong = Math.max(Math.abs(end[0] - g.lon(v)) / cellLon,
+                        Math.abs(end[1] - g.lat(v)) / cellLat);
+                int steps = (int) Math.ceil(cellsLong * 2);
+                for (int s = 1; s <= steps; s += 1) {
+                    double t = (double) s / steps;
+                    mark(g.lon(v) + t * (end[0] - g.lon(v)), g.lat(v) + t * (end[1] - g.lat(v)));
+                }
+            }
+        }
+    }
+
+    private void mark(double lon, double lat) {
+        int x = (int) ((lon - minLon) / cellLon);
+        int y = (int) ((lat - minLat) / cellLat);
+        filled[y * width + x] = true;
+    }
+
+    /** Fills every cell next to a filled one, diagonals included. */
+    private void dilate() {
+        boolean[] grown = filled.clone();
+        for (int y = 1; y < height - 1; y += 1) {
+            for (int x = 1; x < width - 1; x += 1) {
+                if (!filled[y * width + x]) {
+                    continue;
+                }
+                for (int dy = -1; dy <= 1; dy += 1) {
+                    Arrays.fill(grown, (y + dy) * width + x - 1, (y + dy) * width + x + 2, true);
+                }
+            }
+        }
+        filled = grown;
+    }
+
+    private boolean isFilled(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height && filled[y * width + x];
+    }
+
+    /**
+     * Traces the outlines of the filled cells. Every side between a filled
+     * and an empty cell is a boundary edge, directed so the filled cell is on
+     * its left. Each edge is followed by the edge leaving its end corner that
+     * turns furthest left, which is unique even where two filled cells touch
+     * only at a corner, so the edges split into closed rings.
+     */
+    private void trace() {
+        int corners = (width + 1) * (height + 1);
+        // The boundary edge leaving corner c in direction d is edgeAt[c * 4 + d], or -1.
+        int[] edgeAt = new int[corners * 4];
+        Arrays.fill(edgeAt, -1);
+        int[] edgeCorner = new int[16];
+        int[] edgeDirection = new int[16];
+        int numEdges = 0;
+        for (int y = 0; y < height; y += 1) {
+            for (int x = 0; x < width; x += 1) {
+                if (!filled[y * width + x]) {
+                    continue;
+                }
+                // The corner each side starts from, going counterclockwise.
+                int[][] sides = {{x, y, SOUTH, EAST}, {x + 1, y, EAST, NORTH},
+                        {x + 1, y + 1, NORTH, WEST}, {x, y + 1, WEST, SOUTH}};
+                for (int[] side : sides) {
+                    int neighbor = side[2];
+                    if (isFilled(x + DX[neighbor], y + DY[neighbor])) {
+                        continue;
+                    }
+                    if (numEdges == edgeCorner.length) {
+                        edgeCorner = Arrays.copyOf(edgeCorner, numEdges * 2);
+                        edgeDirection = Arrays.copyOf(edgeDirection, numEdges * 2);
+                    }
+                    int c = side[1] * (width + 1) + side[0];
+                    edgeCorner[numEdges] = c;
+                    edgeDirection[numEdges] = side[3];
+                    edgeAt[c * 4 + side[3]] = numEdges;
+                    numEdges += 1;
+                }
+            }
+        }
+
+        boolean[] used = new boolean[numEdges];
+        for (int first = 0; first < numEdges; first += 1) {
+            if (used[first]) {
+                continue;
+            }
+            List<double[]> ring = new ArrayList<>();
+            int e = first;
+            int previousDirection = -1;
+            while (!used[e]) {
+                used[e] = true;
+                int d = edgeDirection[e];
+                // Corners where the outline runs straight on add nothing.
+                if (d != previousDirection) {
+                    ring.add(point(edgeCorner[e]));
+                }
+                previousDirection = d;
+                int end = edgeCorner[e] + DY[d] * (width + 1) + DX[d];
+                e = -1;
+                for (int turn : new int[]{1, 0, 3}) {
+                    int next = edgeAt[end * 4 + (d + turn) % 4];
+                    if (next != -1) {
+                        e = next;
+                        break;
+                    }
+                }
+            }
+            if (edgeDirection[first] == previousDirection) {
+                // The ring's first corner turned out to be on a straight run.
+                ring.remove(0);
+            }
+            ring.add(ring.get(0));
+            rings.add(ring);
+        }
+    }
+
+    private double[] point(int corner) {
+        int x = corner % (width + 1);
+        int y = corner / (width + 1);
+        return new double[]{minLon + x * cellLon, minLat + y * cellLat};
+    }
+}
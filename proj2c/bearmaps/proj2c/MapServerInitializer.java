@@ -1,6 +1,7 @@
 package bearmaps.proj2c;
 
 import bearmaps.proj2c.server.handler.APIRouteHandler;
+import bearmaps.proj2c.server.handler.impl.RasterAPIHandler;
 import bearmaps.proj2c.utils.Constants;
 
 import java.util.HashSet;
@@ -22,6 +23,15 @@ public class MapServerInitializer {
     public static void initializeServer(Map<String, APIRouteHandler> apiHandlers){
 
         Constants.SEMANTIC_STREET_GRAPH = new AugmentedStreetMapGraph(Constants.OSM_DB_PATH);
+        if (Constants.USE_CONTRACTION_HIERARCHY) {
+            Constants.SEMANTIC_STREET_GRAPH.prepareContractionHierarchy(Constants.CH_PATH);
+        } else if (Constants.NUM_LANDMARKS > 0) {
+            Constants.SEMANTIC_STREET_GRAPH.prepareLandmarks(Constants.NUM_LANDMARKS);
+        }
+        RasterAPIHandler.warmTileCache(Constants.WARM_TILE_DEPTH);
+        Constants.METRICS.registerCache("tile", RasterAPIHandler.tileCache());
+        Constants.METRICS.registerCache("raster", RasterAPIHandler.rasterCache());
+        Constants.METRICS.registerCache("route_overlay", RasterAPIHandler.routeOverlay().layerCache());
         staticFileLocation("/page");
         /* Allow for all origin requests (since this is not an authenticated server, we do not
          * care about CSRF).  */
@@ -36,7 +46,8 @@ public class MapServerInitializer {
             if(paths.contains(apiRoute.getKey())){
                 throw new RuntimeException("Duplicate API Path found");
             }
-            get("/"+apiRoute.getKey(), apiRoute.getValue());
+            get("/"+apiRoute.getKey(),
+                    Constants.METRICS.instrument(apiRoute.getKey(), apiRoute.getValue()));
             paths.add(apiRoute.getKey());
         }
 
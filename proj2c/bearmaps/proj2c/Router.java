@@ -1,9 +1,19 @@
 package bearmaps.proj2c;
 
-import bearmaps.hw4.AStarSolver;
-import bearmaps.hw4.WeightedEdge;
+import bearmaps.hw4.DistanceMatrix;
+import bearmaps.hw4.IntAStarGraph;
+import bearmaps.hw4.IntAStarSolver;
+import bearmaps.hw4.IntShortestPathsSolver;
+import bearmaps.hw4.OneToManyDijkstra;
+import bearmaps.hw4.OneToManySolver;
+import bearmaps.hw4.alt.LandmarkGraph;
+import bearmaps.hw4.ch.CHOneToMany;
+import bearmaps.hw4.ch.CHSolver;
+import bearmaps.hw4.ch.ContractionHierarchy;
+import bearmaps.hw4.streetmap.CompactStreetGraph;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -17,6 +27,8 @@ public class Router {
      * Overloaded method for shortestPath that has flexibility to specify a solver
      * and returns a List of longs representing the shortest path from the node
      * closest to a start location and the node closest to the destination location.
+     * Uses the graph's contraction hierarchy if it has been prepared, and A*
+     * otherwise, with the landmark heuristic if landmarks have been prepared.
      * @param g The graph to use.
      * @param stlon The longitude of the start location.
      * @param stlat The latitude of the start location.
@@ -26,9 +38,68 @@ public class Router {
      */
     public static List<Long> shortestPath(AugmentedStreetMapGraph g, double stlon, double stlat,
                                           double destlon, double destlat) {
-        long src = g.closest(stlon, stlat);
-        long dest = g.closest(destlon, destlat);
-        return new AStarSolver<>(g, src, dest, 20).solution();
+        return vertexIds(g.compactGraph(), solve(g, stlon, stlat, destlon, destlat));
+    }
+
+    /**
+     * Finds the shortest path as shortestPath does, but returns the solver,
+     * whose solutionVertices and solutionEdges give the path as indices into
+     * g.compactGraph(). The edges are what routeDirections streams over.
+     */
+    public static IntShortestPathsSolver solve(AugmentedStreetMapGraph g, double stlon, double stlat,
+                                               double destlon, double destlat) {
+        CompactStreetGraph cg = g.compactGraph();
+        int src = cg.indexOf(g.closest(stlon, stlat));
+        int dest = cg.indexOf(g.closest(destlon, destlat));
+        ContractionHierarchy ch = g.contractionHierarchy();
+        if (ch != null) {
+            return new CHSolver(ch, src, dest);
+        } else if (g.landmarks() != null) {
+            IntAStarGraph alt = new LandmarkGraph(cg, g.landmarks());
+            return new IntAStarSolver(alt, src, dest, 20);
+        } else {
+            return new IntAStarSolver(cg, src, dest, 20);
+        }
+    }
+
+    /** Returns the OSM ids of the vertices of SOLVER's solution over CG. */
+    public static List<Long> vertexIds(CompactStreetGraph cg, IntShortestPathsSolver solver) {
+        int[] vertices = solver.solutionVertices();
+        List<Long> route = new ArrayList<>(vertices.length);
+        for (int v : vertices) {
+            route.add(cg.id(v));
+        }
+        return route;
+    }
+
+    /**
+     * Returns the shortest distances, in miles, between many locations at
+     * once: entry [i][j] is the length of the shortest path from the node
+     * closest to SOURCES[i] to the node closest to TARGETS[j], or infinity if
+     * there is none. Each location is a {lon, lat} pair. Uses bucket-based
+     * many-to-many queries on the graph's contraction hierarchy if it has
+     * been prepared, and one-to-many Dijkstra searches otherwise.
+     * @param g The graph to use.
+     * @param matrix Splits the rows of the matrix among its threads.
+     * @param sources The locations the paths start from.
+     * @param targets The locations the paths end at.
+     * @return A sources.length by targets.length matrix of distances.
+     */
+    public static double[][] distanceMatrix(AugmentedStreetMapGraph g, DistanceMatrix matrix,
+                                            double[][] sources, double[][] targets) {
+        CompactStreetGraph cg = g.compactGraph();
+        int[] src = new int[sources.length];
+        for (int i = 0; i < sources.length; i += 1) {
+            src[i] = cg.indexOf(g.closest(sources[i][0], sources[i][1]));
+        }
+        int[] dest = new int[targets.length];
+        for (int j = 0; j < targets.length; j += 1) {
+            dest[j] = cg.indexOf(g.closest(targets[j][0], targets[j][1]));
+        }
+        ContractionHierarchy ch = g.contractionHierarchy();
+        OneToManySolver solver = ch != null
+                ? new CHOneToMany(ch, dest) : new OneToManyDijkstra(cg, dest);
+        return matrix.compute(solver, src);
     }
 
     /**
@@ -41,81 +112,80 @@ public class Router {
      */
     public static List<NavigationDirection> routeDirections(AugmentedStreetMapGraph g, List<Long> route) {
         /* fill in for part IV */
-        double distOnPrevWay = 0;
-        int prevDirToChange = 0; // Set default value to "Start".
-        int currDirToChange;
-        List<NavigationDirection> results = new LinkedList<>();
-        List<WeightedEdge<Long>> ways = getWays(g, route);
-
-        // Edge case, if there are only 2 vertices in route, namely start and destination,
-        // then the result is simple.
-        if (ways.size() == 1) {
-            NavigationDirection naviDir = setNaviDir(prevDirToChange, ways.get(0).getName(), ways.get(0).weight());
-            results.add(naviDir);
+        List<NavigationDirection> results = new ArrayList<>();
+        if (route.size() < 2) {
             return results;
         }
-
-        // Normal case, where there are at least 3 vertices (2 ways) in the route.
-        for (int i = 1; i < ways.size(); i += 1) {
-            WeightedEdge<Long> prevWay = ways.get(i - 1);
-            WeightedEdge<Long> currWay = ways.get(i);
-
-            long prevVertex = prevWay.from();
-            long currVertex = prevWay.to();
-            long nextVertex = currWay.to();
-
-            double[] prevPos = getPos(g, prevVertex);
-            double[] currPos = getPos(g, currVertex);
-            double[] nextPos = getPos(g, nextVertex);
-
-            // If the way has no name, set its name to "unknown road".
-            String prevWayName = prevWay.getName() != null ? prevWay.getName() : "unknown road";
-            String currWayName = currWay.getName() != null ? currWay.getName() : "unknown road";
-
-            // Since the prevWay is passed at this time, add its weight,
-            // i.e. the length of prevWay, to distOnPrevWay.
-            distOnPrevWay += prevWay.weight();
-
-            // If name of the way changes, it means that a NavigationDirection
-            // object needs to be created and be added to results.
-            if (!currWayName.equals(prevWayName)) {
-
-                // Calculate two bearings, prevBearing is the bearing between prevVertex and currVertex,
-                // currBearing is the bearing between currVertex between nextVertex.
-                double prevBearing = NavigationDirection.bearing(prevPos[0], currPos[0], prevPos[1], currPos[1]);
-                double currBearing = NavigationDirection.bearing(currPos[0], nextPos[0], currPos[1], nextPos[1]);
-
-                // Calculate what direction we are going based on the two bearings.
-                currDirToChange = NavigationDirection.getDirection(prevBearing, currBearing);
-
-                // Because a NavigationDirection object of a way needs the total distance travelled on
-                // that way, we cannot create a NavigationDirection object for the way we are travelling,
-                // until we meet a new way with another name. Therefore, every time we find currWayName
-                // is different from prevWayName, we create a NavigationDirection object for the way we
-                // just passed, which has name of prevWayName and direction of prevDirToChange.
-                NavigationDirection naviDir = setNaviDir(prevDirToChange, prevWayName, distOnPrevWay);
-
-                // Set prevDirToChange to currDirToChange, which will be used in next time naviDir creation.
-                prevDirToChange = currDirToChange;
-
-                // Add the NavigationDirection object of the way we just passed to the results.
-                results.add(naviDir);
-
-                // Because we changed to a new way with a different name, so reset the distance we travelled.
-                distOnPrevWay = 0;
+        CompactStreetGraph cg = g.compactGraph();
+        int[] edges = new int[route.size() - 1];
+        int v = cg.indexOf(route.get(0));
+        int start = v;
+        for (int i = 1; i < route.size(); i += 1) {
+            int w = cg.indexOf(route.get(i));
+            edges[i - 1] = v < 0 || w < 0 ? -1 : cg.findEdge(v, w);
+            if (edges[i - 1] < 0) {
+                throw new IllegalArgumentException("No edge from " + route.get(i - 1)
+                        + " to " + route.get(i));
             }
+            v = w;
+        }
+        routeDirections(cg, start, edges, results::add);
+        return results;
+    }
 
-            // Check whether the dest is reached by currWay, i.e. whether currWay is the last
-            // way in ways. If yes, update the distance travelled, and create a NavigationDirection
-            // object for the currWay, because there is no chance to meet a new way, since the whole
-            // loop ends after this loop.
-            if (i == ways.size() - 1) {
-                distOnPrevWay += currWay.weight();
-                NavigationDirection naviDir = setNaviDir(prevDirToChange, currWayName, distOnPrevWay);
-                results.add(naviDir);
+    /**
+     * Emits the directions for the path that leaves vertex START of G along
+     * EDGES, in order, to OUT. This is a single pass over the edges: a
+     * direction is emitted as soon as the path turns onto a way with a
+     * different name, and the last one once the edges run out, so nothing
+     * is buffered along the way.
+     * @param g The graph the edges belong to.
+     * @param start The first vertex of the path.
+     * @param edges The ids of the edges of the path, such as a solver's solutionEdges.
+     * @param out Receives each direction as soon as it is complete.
+     */
+    public static void routeDirections(CompactStreetGraph g, int start, int[] edges,
+                                       Consumer<NavigationDirection> out) {
+        if (edges.length == 0) {
+            return;
+        }
+        // The way being travelled: its name code and name, the direction we
+        // turned onto it with, and how far we have gone along it so far.
+        int way = g.edgeNameCode(edges[0]);
+        String wayName = wayName(g, edges[0]);
+        int direction = NavigationDirection.START;
+        double distance = 0;
+        // The previous edge ran from prev to curr.
+        int prev = -1;
+        int curr = start;
+        for (int e : edges) {
+            int next = g.edgeTarget(e);
+            int code = g.edgeNameCode(e);
+            if (code != way) {
+                String name = wayName(g, e);
+                if (!name.equals(wayName)) {
+                    double prevBearing = NavigationDirection.bearing(g.lon(prev), g.lon(curr),
+                            g.lat(prev), g.lat(curr));
+                    double currBearing = NavigationDirection.bearing(g.lon(curr), g.lon(next),
+                            g.lat(curr), g.lat(next));
+                    out.accept(setNaviDir(direction, wayName, distance));
+                    direction = NavigationDirection.getDirection(prevBearing, currBearing);
+                    wayName = name;
+                    distance = 0;
+                }
+                way = code;
             }
+            distance += g.edgeWeight(e);
+            prev = curr;
+            curr = next;
         }
-        return results;
+        out.accept(setNaviDir(direction, wayName, distance));
+    }
+
+    /** Returns the name of edge E's way in G, naming unnamed ways "unknown road". */
+    private static String wayName(CompactStreetGraph g, int e) {
+        String name = g.edgeName(e);
+        return name != null ? name : NavigationDirection.UNKNOWN_ROAD;
     }
 
     /**
@@ -134,43 +204,6 @@ public class Router {
         return naviDir;
     }
 
-    /**
-     * Return a list of WeightedEdge that connected every two adjacent vertices in route.
-     *
-     * @param g
-     * @param route
-     * @return
-     */
-    private static List<WeightedEdge<Long>> getWays(AugmentedStreetMapGraph g, List<Long> route) {
-        List<WeightedEdge<Long>> ways = new LinkedList<>();
-        long currVertex;
-        long nextVertex;
-        for (int i = 1; i < route.size(); i += 1) {
-            currVertex = route.get(i - 1);
-            nextVertex = route.get(i);
-            for (WeightedEdge<Long> edge : g.neighbors(currVertex)) {
-                if (edge.to().equals(nextVertex)) {
-                    ways.add(edge);
-                }
-            }
-        }
-        return ways;
-    }
-
-    /**
-     * Return coordinates of an vertex in the form of an array [lon, lat].
-     *
-     * @param g
-     * @param vertex
-     * @return
-     */
-    private static double[] getPos(AugmentedStreetMapGraph g, long vertex) {
-        double[] pos = new double[2];
-        pos[0] = g.lon(vertex);
-        pos[1] = g.lat(vertex);
-        return pos;
-    }
-
     /**
      * Class to represent a navigation direction, which consists of 3 attributes:
      * a direction to go, a way, and the distance to travel for. This is only
@@ -0,0 +1,109 @@
+package bearmaps.proj2c.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations in nanoseconds that many threads record into at
+ * once, laid out like HdrHistogram: each power of two is split into
+ * SUB_BUCKETS equal buckets, so every value is counted to within an eighth
+ * of itself with a fixed 488 counters, whatever the range of values.
+ * Recording is a few bit operations and an atomic increment, with no locks
+ * or allocation.
+ *
+ * Readers see each counter as of some moment during the read, not one
+ * snapshot of them all, which is as good as monitoring needs.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    /** Bucket i < SUB_BUCKETS holds exactly i; the rest are SUB_BUCKETS per power of two. */
+    private static final int NUM_BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /** Counts a duration of NANOS nanoseconds. Negative durations count as 0. */
+    public void record(long nanos) {
+        nanos = Math.max(nanos, 0);
+        counts.incrementAndGet(bucketOf(nanos));
+        count.increment();
+        sum.add(nanos);
+        long m = max.get();
+        while (nanos > m && !max.compareAndSet(m, nanos)) {
+            m = max.get();
+        }
+    }
+
+    /** Returns the number of durations recorded. */
+    public long count() {
+        return count.sum();
+    }
+
+    /** Returns the total of the durations recorded, in nanoseconds. */
+    public long sum() {
+        return sum.sum();
+    }
+
+    /** Returns the longest duration recorded, or 0 if there are none. */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Returns a duration that fraction Q of the recorded durations are at
+     * most, rounded up to the end of its bucket, or 0 if there are none.
+     */
+    public long valueAtQuantile(double q) {
+        long total = 0;
+        long[] snapshot = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; i += 1) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i += 1) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i) - 1, max());
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the number of recorded durations at most NANOS, counting only
+     * buckets that lie wholly at or below it, so a duration up to an eighth
+     * below NANOS may be left out.
+     */
+    public long countAtOrBelow(long nanos) {
+        long total = 0;
+        for (int i = 0; i < NUM_BUCKETS && upperBound(i) - 1 <= nanos; i += 1) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    /** Returns the least value beyond bucket I, or Long.MAX_VALUE for the last one. */
+    static long upperBound(int i) {
+        if (i < SUB_BUCKETS) {
+            return i + 1;
+        }
+        int shift = i / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + i % SUB_BUCKETS) << shift;
+        long upper = lower + (1L << shift);
+        return upper < 0 ? Long.MAX_VALUE : upper;
+    }
+}
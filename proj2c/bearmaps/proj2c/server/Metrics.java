@@ -0,0 +1,231 @@
+package bearmaps.proj2c.server;
+
+import bearmaps.proj2c.utils.LruCache;
+import spark.HaltException;
+import spark.Response;
+import spark.Route;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts and times the requests to each route, and reports them along with
+ * the state of the server's caches in the Prometheus text format.
+ *
+ * For every route there are the requests in flight, the requests answered
+ * with each status, a histogram of their latency, a histogram of each
+ * phase its handler marks with RequestTrace, and the counters added to
+ * with RequestTrace.count(). Status 400 and up counts as an error; a
+ * request that throws anything but a halt counts as status 500.
+ */
+public class Metrics {
+    /**
+     * The bounds in seconds of the exported histogram buckets, the usual
+     * ones for request latency. Durations are recorded more finely, so the
+     * bounds can change without touching the recording.
+     */
+    private static final String[] BUCKET_SECONDS = {"0.0005", "0.001", "0.0025", "0.005",
+        "0.01", "0.025", "0.05", "0.1", "0.25", "0.5", "1", "2.5", "5", "10"};
+    private static final long[] BUCKET_NANOS = new long[BUCKET_SECONDS.length];
+    private static final int SERVER_ERROR = 500;
+
+    static {
+        for (int i = 0; i < BUCKET_SECONDS.length; i += 1) {
+            BUCKET_NANOS[i] = Math.round(Double.parseDouble(BUCKET_SECONDS[i]) * 1e9);
+        }
+    }
+
+    private final Map<String, RouteMetrics> routes = new ConcurrentSkipListMap<>();
+    private final Map<String, LruCache<?, ?>> caches = new ConcurrentSkipListMap<>();
+
+    /** Returns a Route that handles requests with HANDLER, traced and counted under ROUTE. */
+    public Route instrument(String route, Route handler) {
+        RouteMetrics metrics = route(route);
+        return (request, response) -> {
+            RequestTrace trace = new RequestTrace(metrics);
+            metrics.inFlight.incrementAndGet();
+            trace.begin();
+            int status = SERVER_ERROR;
+            try {
+                Object body = handler.handle(request, response);
+                status = statusOf(response);
+                return body;
+            } catch (HaltException e) {
+                status = e.getStatusCode();
+                throw e;
+            } finally {
+                metrics.latency.record(trace.end());
+                metrics.inFlight.decrementAndGet();
+                metrics.responses.computeIfAbsent(status, s -> new LongAdder()).increment();
+            }
+        };
+    }
+
+    /** Reports the hits, misses, evictions and size of CACHE under NAME. */
+    public void registerCache(String name, LruCache<?, ?> cache) {
+        caches.put(name, cache);
+    }
+
+    /** Returns the metrics of the route named NAME, creating them if needed. */
+    RouteMetrics route(String name) {
+        return routes.computeIfAbsent(name, n -> new RouteMetrics());
+    }
+
+    /** The status a handler set on RESPONSE, which is 200 unless it set another. */
+    private static int statusOf(Response response) {
+        return response == null || response.raw() == null ? 200 : response.raw().getStatus();
+    }
+
+    /** Returns every metric in the Prometheus text exposition format, version 0.0.4. */
+    public String scrape() {
+        StringBuilder sb = new StringBuilder();
+        header(sb, "bearmaps_requests_in_flight", "gauge", "Requests being handled.");
+        for (Map.Entry<String, RouteMetrics> r : routes.entrySet()) {
+            sample(sb, "bearmaps_requests_in_flight", labels("route", r.getKey()),
+                    r.getValue().inFlight.get());
+        }
+
+        header(sb, "bearmaps_requests_total", "counter", "Requests answered, by status.");
+        for (Map.Entry<String, RouteMetrics> r : routes.entrySet()) {
+            for (Map.Entry<Integer, LongAdder> s : r.getValue().responses.entrySet()) {
+                sample(sb, "bearmaps_requests_total", labels("route", r.getKey(),
+                        "status", String.valueOf(s.getKey())), s.getValue().sum());
+            }
+        }
+
+        header(sb, "bearmaps_request_duration_seconds", "histogram",
+                "Time from receiving a request to returning its body.");
+        for (Map.Entry<String, RouteMetrics> r : routes.entrySet()) {
+            histogram(sb, "bearmaps_request_duration_seconds", labels("route", r.getKey()),
+                    r.getValue().latency);
+        }
+
+        header(sb, "bearmaps_request_duration_max_seconds", "gauge",
+                "The longest request so far.");
+        for (Map.Entry<String, RouteMetrics> r : routes.entrySet()) {
+            sample(sb, "bearmaps_request_duration_max_seconds", labels("route", r.getKey()),
+                    r.getValue().latency.max() / 1e9);
+        }
+
+        header(sb, "bearmaps_request_phase_duration_seconds", "histogram",
+                "Time spent in each phase of handling a request.");
+        for (Map.Entry<String, RouteMetrics> r : routes.entrySet()) {
+            for (Map.Entry<String, LatencyHistogram> p : r.getValue().phases.entrySet()) {
+                histogram(sb, "bearmaps_request_phase_duration_seconds",
+                        labels("route", r.getKey(), "phase", p.getKey()), p.getValue());
+            }
+        }
+
+        header(sb, "bearmaps_request_work_total", "counter",
+                "Work done for requests, such as search states explored.");
+        for (Map.Entry<String, RouteMetrics> r : routes.entrySet()) {
+            for (Map.Entry<String, LongAdder> c : r.getValue().counters.entrySet()) {
+                sample(sb, "bearmaps_request_work_total",
+                        labels("route", r.getKey(), "counter", c.getKey()), c.getValue().sum());
+            }
+        }
+
+        writeCaches(sb);
+        return sb.toString();
+    }
+
+    private void writeCaches(StringBuilder sb) {
+        header(sb, "bearmaps_cache_hits_total", "counter", "Lookups that found a cached value.");
+        for (Map.Entry<String, LruCache<?, ?>> c : caches.entrySet()) {
+            sample(sb, "bearmaps_cache_hits_total", labels("cache", c.getKey()),
+                    c.getValue().hits());
+        }
+        header(sb, "bearmaps_cache_misses_total", "counter", "Lookups that found no cached value.");
+        for (Map.Entry<String, LruCache<?, ?>> c : caches.entrySet()) {
+            sample(sb, "bearmaps_cache_misses_total", labels("cache", c.getKey()),
+                    c.getValue().misses());
+        }
+        header(sb, "bearmaps_cache_hit_ratio", "gauge", "Hits over lookups so far.");
+        for (Map.Entry<String, LruCache<?, ?>> c : caches.entrySet()) {
+            long hits = c.getValue().hits();
+            long lookups = hits + c.getValue().misses();
+            sample(sb, "bearmaps_cache_hit_ratio", labels("cache", c.getKey()),
+                    lookups == 0 ? 0 : (double) hits / lookups);
+        }
+        header(sb, "bearmaps_cache_evictions_total", "counter",
+                "Values removed to make room for others.");
+        for (Map.Entry<String, LruCache<?, ?>> c : caches.entrySet()) {
+            sample(sb, "bearmaps_cache_evictions_total", labels("cache", c.getKey()),
+                    c.getValue().evictions());
+        }
+        header(sb, "bearmaps_cache_entries", "gauge", "Values cached.");
+        for (Map.Entry<String, LruCache<?, ?>> c : caches.entrySet()) {
+            sample(sb, "bearmaps_cache_entries", labels("cache", c.getKey()), c.getValue().size());
+        }
+        header(sb, "bearmaps_cache_weight", "gauge", "Total weight of the values cached.");
+        for (Map.Entry<String, LruCache<?, ?>> c : caches.entrySet()) {
+            sample(sb, "bearmaps_cache_weight", labels("cache", c.getKey()),
+                    c.getValue().weight());
+        }
+        header(sb, "bearmaps_cache_max_weight", "gauge", "Weight the cache evicts beyond.");
+        for (Map.Entry<String, LruCache<?, ?>> c : caches.entrySet()) {
+            sample(sb, "bearmaps_cache_max_weight", labels("cache", c.getKey()),
+                    c.getValue().maxWeight());
+        }
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void histogram(StringBuilder sb, String name, String labels,
+                                  LatencyHistogram h) {
+        // Read the count first, so that no bucket exceeds +Inf if more come in meanwhile.
+        long count = h.count();
+        long sum = h.sum();
+        String prefix = labels.substring(0, labels.length() - 1) + ",le=\"";
+        for (int i = 0; i < BUCKET_SECONDS.length; i += 1) {
+            sample(sb, name + "_bucket", prefix + BUCKET_SECONDS[i] + "\"}",
+                    Math.min(h.countAtOrBelow(BUCKET_NANOS[i]), count));
+        }
+        sample(sb, name + "_bucket", prefix + "+Inf\"}", count);
+        sample(sb, name + "_sum", labels, sum / 1e9);
+        sample(sb, name + "_count", labels, count);
+    }
+
+    private static void sample(StringBuilder sb, String name, String labels, long value) {
+        sb.append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder sb, String name, String labels, double value) {
+        sb.append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+    /** Returns {k1="v1",k2="v2",...} for the alternating keys and values KV. */
+    private static String labels(String... kv) {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < kv.length; i += 2) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(kv[i]).append("=\"").append(kv[i + 1].replace("\\", "\\\\")
+                    .replace("\"", "\\\"").replace("\n", "\\n")).append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    /** What is counted for one route. */
+    static class RouteMetrics {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final Map<Integer, LongAdder> responses = new ConcurrentSkipListMap<>();
+        private final Map<String, LatencyHistogram> phases = new ConcurrentSkipListMap<>();
+        private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+
+        LatencyHistogram phase(String name) {
+            return phases.computeIfAbsent(name, n -> new LatencyHistogram());
+        }
+
+        LongAdder counter(String name) {
+            return counters.computeIfAbsent(name, n -> new LongAdder());
+        }
+    }
+}
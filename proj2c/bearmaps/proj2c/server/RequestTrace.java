@@ -0,0 +1,62 @@
+package bearmaps.proj2c.server;
+
+/**
+ * The timing of one request as it is handled, split into named phases. The
+ * handler calls mark() at the end of each phase, and the time since the
+ * previous mark is recorded under that phase's name for the request's route.
+ * Code anywhere below the handler, such as a solver, adds to per-route
+ * counters with count().
+ *
+ * Spark handles a request on one thread from start to finish, so the trace
+ * of the request being handled is found with current(). Outside a traced
+ * request, current() returns a trace that ignores everything, so handlers
+ * can be called directly, as the tests do.
+ */
+public class RequestTrace {
+    private static final ThreadLocal<RequestTrace> CURRENT = new ThreadLocal<>();
+    private static final RequestTrace NONE = new RequestTrace(null);
+
+    private final Metrics.RouteMetrics route;
+    private final long start;
+    private long lastMark;
+
+    RequestTrace(Metrics.RouteMetrics route) {
+        this.route = route;
+        start = System.nanoTime();
+        lastMark = start;
+    }
+
+    /** Returns the trace of the request being handled by this thread. */
+    public static RequestTrace current() {
+        RequestTrace trace = CURRENT.get();
+        return trace == null ? NONE : trace;
+    }
+
+    /** Records the time since the previous mark, or the start, as phase PHASE. */
+    public void mark(String phase) {
+        if (route == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        route.phase(phase).record(now - lastMark);
+        lastMark = now;
+    }
+
+    /** Adds N to the route's counter named COUNTER. */
+    public void count(String counter, long n) {
+        if (route != null) {
+            route.counter(counter).add(n);
+        }
+    }
+
+    /** Makes this the current trace of the calling thread. */
+    void begin() {
+        CURRENT.set(this);
+    }
+
+    /** Stops being the current trace and returns the nanoseconds since it was made. */
+    long end() {
+        CURRENT.remove();
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,188 @@
+package bearmaps.proj2c.server;
+
+import bearmaps.proj2c.utils.LruCache;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongToDoubleFunction;
+
+/**
+ * Draws routes as transparent layers, one map tile at a time, so that the
+ * cost of drawing a route over a raster depends on the tiles in view rather
+ * than on the length of the route.
+ *
+ * For each route and depth, the route's segments are bucketed once by the
+ * tiles they pass through, which makes a grid index over the segments. A
+ * tile's layer is drawn from its own bucket only, and is cached by tile and
+ * route version, so panning along a route only draws the tiles that newly
+ * come into view. Tiles the route does not touch have no layer at all.
+ */
+public class RouteOverlay {
+    /** The most routes whose coordinates and segment buckets are kept at once. */
+    private static final int ROUTES_INDEXED = 64;
+
+    private final int tileSize;
+    private final double rootUllon;
+    private final double rootUllat;
+    private final double rootWidth;
+    private final double rootHeight;
+    private final Color color;
+    private final float strokeWidth;
+    private final LongToDoubleFunction lon;
+    private final LongToDoubleFunction lat;
+
+    private final LruCache<Long, IndexedRoute> routes = new LruCache<>(ROUTES_INDEXED);
+    private final LruCache<String, BufferedImage> layers;
+
+    /**
+     * Creates an overlay for tiles TILESIZE pixels wide that divide the root
+     * tile with the given corners, whose layers take at most LAYERBYTES of
+     * memory. LON and LAT give the coordinates of a route vertex by id.
+     */
+    public RouteOverlay(int tileSize, double rootUllon, double rootUllat, double rootLrlon,
+                        double rootLrlat, Color color, float strokeWidth,
+                        LongToDoubleFunction lon, LongToDoubleFunction lat, long layerBytes) {
+        this.tileSize = tileSize;
+        this.rootUllon = rootUllon;
+        this.rootUllat = rootUllat;
+        this.rootWidth = rootLrlon - rootUllon;
+        this.rootHeight = rootUllat - rootLrlat;
+        this.color = color;
+        this.strokeWidth = strokeWidth;
+        this.lon = lon;
+        this.lat = lat;
+        long bytesPerLayer = 4L * tileSize * tileSize;
+        this.layers = new LruCache<>(layerBytes, layer -> bytesPerLayer);
+    }
+
+    /**
+     * Returns the layer showing ROUTE over tile (X, Y) of depth DEPTH, which
+     * is transparent except for the route, or null if the route does not
+     * pass over the tile.
+     */
+    public BufferedImage layer(RouteSnapshot route, int depth, int x, int y) {
+        if (route.vertices().size() < 2) {
+            return null;
+        }
+        IndexedRoute indexed = routes.get(route.version(), v -> new IndexedRoute(route));
+        int[] segments = indexed.segments(depth).get(tileKey(x, y));
+        if (segments == null) {
+            return null;
+        }
+        String key = route.version() + ":" + depth + ":" + x + ":" + y;
+        return layers.get(key, k -> draw(indexed, segments, depth, x, y));
+    }
+
+    /** The layer cache, for reporting its statistics. */
+    public LruCache<String, BufferedImage> layerCache() {
+        return layers;
+    }
+
+    private BufferedImage draw(IndexedRoute route, int[] segments, int depth, int x, int y) {
+        BufferedImage layer = new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = layer.createGraphics();
+        try {
+            g2d.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL,
+                    RenderingHints.VALUE_STROKE_PURE);
+            g2d.setColor(color);
+            g2d.setStroke(new BasicStroke(strokeWidth, BasicStroke.CAP_ROUND,
+                    BasicStroke.JOIN_ROUND));
+            // Draw in the pixel coordinates of the whole depth, shifted so
+            // this tile is at the origin; the rest is clipped away.
+            g2d.translate(-(double) x * tileSize, -(double) y * tileSize);
+            double scale = scale(depth);
+            for (int i : segments) {
+                g2d.draw(new Line2D.Double(route.px(i, scale), route.py(i, scale),
+                        route.px(i + 1, scale), route.py(i + 1, scale)));
+            }
+        } finally {
+            g2d.dispose();
+        }
+        return layer;
+    }
+
+    /** The number of pixels across the whole map at DEPTH. */
+    private double scale(int depth) {
+        return (double) tileSize * (1 << depth);
+    }
+
+    private static long tileKey(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    /** A route's coordinates, and its segments bucketed by tile at each depth used so far. */
+    private class IndexedRoute {
+        /* Each vertex's position as a fraction of the root tile's width and height. */
+        private final double[] xs;
+        private final double[] ys;
+        private final Map<Integer, Map<Long, int[]>> segmentsByDepth = new ConcurrentHashMap<>();
+
+        IndexedRoute(RouteSnapshot route) {
+            List<Long> vertices = route.vertices();
+            xs = new double[vertices.size()];
+            ys = new double[vertices.size()];
+            for (int i = 0; i < xs.length; i += 1) {
+                long v = vertices.get(i);
+                xs[i] = (lon.applyAsDouble(v) - rootUllon) / rootWidth;
+                ys[i] = (rootUllat - lat.applyAsDouble(v)) / rootHeight;
+            }
+        }
+
+        double px(int i, double scale) {
+            return xs[i] * scale;
+        }
+
+        double py(int i, double scale) {
+            return ys[i] * scale;
+        }
+
+        /** Maps each tile of DEPTH to the segments that may be drawn over it. */
+        Map<Long, int[]> segments(int depth) {
+            return segmentsByDepth.computeIfAbsent(depth, this::bucket);
+        }
+
+        /**
+         * Buckets segment i, from vertex i to i + 1, under every tile that its
+         * bounding box overlaps once widened by half the stroke.
+         */
+        private Map<Long, int[]> bucket(int depth) {
+            double scale = scale(depth);
+            int maxTile = (1 << depth) - 1;
+            double margin = strokeWidth / 2 + 1;
+            Map<Long, List<Integer>> buckets = new HashMap<>();
+            for (int i = 0; i + 1 < xs.length; i += 1) {
+                double x0 = px(i, scale);
+                double x1 = px(i + 1, scale);
+                double y0 = py(i, scale);
+                double y1 = py(i + 1, scale);
+                int minX = clamp((Math.min(x0, x1) - margin) / tileSize, maxTile);
+                int maxX = clamp((Math.max(x0, x1) + margin) / tileSize, maxTile);
+                int minY = clamp((Math.min(y0, y1) - margin) / tileSize, maxTile);
+                int maxY = clamp((Math.max(y0, y1) + margin) / tileSize, maxTile);
+                for (int tx = minX; tx <= maxX; tx += 1) {
+                    for (int ty = minY; ty <= maxY; ty += 1) {
+                        buckets.computeIfAbsent(tileKey(tx, ty), k -> new ArrayList<>()).add(i);
+                    }
+                }
+            }
+            Map<Long, int[]> segments = new HashMap<>();
+            for (Map.Entry<Long, List<Integer>> e : buckets.entrySet()) {
+                segments.put(e.getKey(), e.getValue().stream().mapToInt(Integer::intValue).toArray());
+            }
+            return segments;
+        }
+
+        private int clamp(double tile, int maxTile) {
+            return (int) Math.max(0, Math.min(maxTile, Math.floor(tile)));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package bearmaps.proj2c.server;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The current route of every session, so that concurrent users do not draw
+ * over each other's routes. A new route replaces the session's snapshot in
+ * a single map write, and readers always see either the old snapshot or the
+ * new one, never a route half way through being built.
+ *
+ * At most a fixed number of sessions are remembered. Once there are more,
+ * the sessions that were first seen earliest are forgotten, which is the
+ * same as clearing their routes.
+ *
+ * Versions start again from 1 in every registry, so each registry also
+ * draws a random epoch that its snapshots carry. Anything that outlives the
+ * registry, such as an ETag held by a browser across a server restart,
+ * must name the epoch as well as the version.
+ */
+public class RouteRegistry {
+    private final int capacity;
+    private final ConcurrentHashMap<String, RouteSnapshot> routes = new ConcurrentHashMap<>();
+    /** Sessions in routes, in the order they were added. */
+    private final Queue<String> order = new ConcurrentLinkedQueue<>();
+    private final AtomicLong versions = new AtomicLong();
+    private final long epoch = ThreadLocalRandom.current().nextLong();
+
+    /** Creates a registry that remembers the routes of up to CAPACITY sessions. */
+    public RouteRegistry(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /** Returns the route of SESSION, which is RouteSnapshot.EMPTY if it has none. */
+    public RouteSnapshot get(String session) {
+        return routes.getOrDefault(session, RouteSnapshot.EMPTY);
+    }
+
+    /** Makes ROUTE the route of SESSION and returns its snapshot. */
+    public RouteSnapshot publish(String session, List<Long> route) {
+        RouteSnapshot snapshot = new RouteSnapshot(epoch, versions.incrementAndGet(),
+                route);
+        if (routes.put(session, snapshot) == null) {
+            order.add(session);
+            evict();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Clears the route of SESSION. This publishes an empty snapshot rather
+     * than removing the session, so that its version still moves forward.
+     */
+    public RouteSnapshot clear(String session) {
+        return publish(session, Collections.emptyList());
+    }
+
+    /** The random number that tells this registry's snapshots from other registries'. */
+    public long epoch() {
+        return epoch;
+    }
+
+    /** The number of sessions currently remembered. */
+    public int size() {
+        return routes.size();
+    }
+
+    private void evict() {
+        while (routes.size() > capacity) {
+            String oldest = order.poll();
+            if (oldest == null) {
+                return;
+            }
+            routes.remove(oldest);
+        }
+    }
+}
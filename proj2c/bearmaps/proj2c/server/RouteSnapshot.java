@@ -0,0 +1,49 @@
+package bearmaps.proj2c.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The route drawn for one session at one point in time. Snapshots are never
+ * modified after they are published, so handlers may read one without any
+ * locking while other requests publish newer ones.
+ */
+public final class RouteSnapshot {
+    /** The route of a session that has none. */
+    public static final RouteSnapshot EMPTY = new RouteSnapshot(0, 0, Collections.emptyList());
+
+    private final long epoch;
+    private final long version;
+    private final List<Long> vertices;
+
+    RouteSnapshot(long epoch, long version, List<Long> vertices) {
+        this.epoch = epoch;
+        this.version = version;
+        this.vertices = Collections.unmodifiableList(new ArrayList<>(vertices));
+    }
+
+    /**
+     * Identifies this snapshot: every snapshot published by a RouteRegistry
+     * gets a larger version than any before it, so anything derived from a
+     * route can be keyed on its version. Versions are only unique within
+     * one registry; see epoch().
+     */
+    public long version() {
+        return version;
+    }
+
+    /** The epoch of the registry that published this snapshot, or 0 for EMPTY. */
+    public long epoch() {
+        return epoch;
+    }
+
+    /** The ids of the vertices along the route, in order. */
+    public List<Long> vertices() {
+        return vertices;
+    }
+
+    public boolean isEmpty() {
+        return vertices.isEmpty();
+    }
+}
@@ -0,0 +1,126 @@
+package bearmaps.proj2c.server;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Draws a grid of tiles into one image. Loading a tile may mean decoding a
+ * PNG, so for larger grids the tiles are loaded and drawn by several threads
+ * at once, each drawing straight into its own part of the shared image.
+ *
+ * The worker threads come from a fixed pool shared by all requests, so the
+ * number of threads compositing at once stays bounded however many requests
+ * arrive. The requesting thread draws tiles too, rather than waiting idle,
+ * and once every tile is taken it waits only for helpers already drawing:
+ * a helper still queued behind other requests is cancelled, so a busy pool
+ * never makes a request wait for work that is already done.
+ */
+public class TileCompositor {
+    /** Grids with fewer tiles than this are drawn on the calling thread alone. */
+    private static final int PARALLEL_THRESHOLD = 4;
+
+    private final int tileSize;
+    private final Function<String, BufferedImage> tiles;
+    private final ExecutorService pool;
+    private final int parallelism;
+
+    /**
+     * Creates a compositor of square tiles TILESIZE pixels wide, loaded by
+     * name from TILES, that draws with up to PARALLELISM threads including
+     * the caller's. TILES must be safe to call from several threads at once
+     * and may return null for a missing tile, which is left black.
+     */
+    public TileCompositor(int tileSize, Function<String, BufferedImage> tiles, int parallelism) {
+        this.tileSize = tileSize;
+        this.tiles = tiles;
+        this.parallelism = Math.max(parallelism, 1);
+        if (this.parallelism == 1) {
+            pool = null;
+        } else {
+            AtomicInteger threads = new AtomicInteger();
+            pool = Executors.newFixedThreadPool(this.parallelism - 1, r -> {
+                Thread t = new Thread(r, "tile-compositor-" + threads.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /** Returns an image of the tiles named in GRID, laid out row by row. */
+    public BufferedImage composite(String[][] grid) {
+        int rows = grid.length;
+        int cols = grid[0].length;
+        BufferedImage img = new BufferedImage(cols * tileSize, rows * tileSize,
+                BufferedImage.TYPE_INT_RGB);
+        int numTiles = rows * cols;
+        // Tiles are handed out one at a time, so a thread that is stuck
+        // decoding does not hold up tiles another thread could draw.
+        AtomicInteger next = new AtomicInteger();
+        Runnable drawer = () -> drawTiles(img, grid, next);
+        if (pool == null || numTiles < PARALLEL_THRESHOLD) {
+            drawer.run();
+            return img;
+        }
+
+        int helpers = Math.min(parallelism, numTiles) - 1;
+        List<Future<?>> futures = new ArrayList<>(helpers);
+        // A helper runs only if it claims its flag before the caller does.
+        List<AtomicBoolean> claimed = new ArrayList<>(helpers);
+        for (int i = 0; i < helpers; i += 1) {
+            AtomicBoolean claim = new AtomicBoolean();
+            claimed.add(claim);
+            futures.add(pool.submit(() -> {
+                if (claim.compareAndSet(false, true)) {
+                    drawer.run();
+                }
+            }));
+        }
+        drawer.run();
+        try {
+            for (int i = 0; i < helpers; i += 1) {
+                if (claimed.get(i).compareAndSet(false, true)) {
+                    futures.get(i).cancel(false);
+                } else {
+                    futures.get(i).get();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while compositing tiles", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not composite tiles", e.getCause());
+        }
+        return img;
+    }
+
+    private void drawTiles(BufferedImage img, String[][] grid, AtomicInteger next) {
+        int cols = grid[0].length;
+        int numTiles = grid.length * cols;
+        Graphics2D graphic = img.createGraphics();
+        try {
+            for (int i = next.getAndIncrement(); i < numTiles; i = next.getAndIncrement()) {
+                int r = i / cols;
+                int c = i % cols;
+                graphic.drawImage(tiles.apply(grid[r][c]), c * tileSize, r * tileSize, null);
+            }
+        } finally {
+            graphic.dispose();
+        }
+    }
+
+    /** Stops the worker threads. The compositor must not be used afterwards. */
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package bearmaps.proj2c.server.handler;
 
+import bearmaps.proj2c.server.RequestTrace;
+import bearmaps.proj2c.utils.Constants;
 import com.google.gson.Gson;
 import spark.Request;
 import spark.Response;
@@ -14,6 +16,8 @@ import static spark.Spark.halt;
  * This is the base class that defines the procedure for handling an API request
  * The process is defined as such that first the request parameters are read, then
  * request is process based on those parameters and finally the response is built.
+ * Each of the three is timed as a phase of the request's RequestTrace; a
+ * handler that marks phases of its own splits the phase they fall in.
  *
  * Created by rahul
  */
@@ -30,9 +34,14 @@ public abstract class APIRouteHandler<Req, Res> implements Route {
 
     @Override
     public Object handle(Request request, Response response) throws Exception {
+        RequestTrace trace = RequestTrace.current();
         Req requestParams = parseRequestParams(request);
+        trace.mark("parse");
         Res result = processRequest(requestParams, response);
-        return buildJsonResponse(result);
+        trace.mark("process");
+        Object body = buildJsonResponse(request, result);
+        trace.mark("build");
+        return body;
     }
 
     /**
@@ -59,6 +68,31 @@ public abstract class APIRouteHandler<Req, Res> implements Route {
         return gson.toJson(result);
     }
 
+    /**
+     * Builds the response for a result that also depends on the request it
+     * answers. By default this ignores the request.
+     * @param request   the request object received
+     * @param result    the result computed after processing request
+     * @return  the response body
+     */
+    protected Object buildJsonResponse(Request request, Res result) {
+        return buildJsonResponse(result);
+    }
+
+    /**
+     * Returns the session a request belongs to, from its "session" query
+     * parameter. Requests without one share Constants.DEFAULT_SESSION.
+     * @param req HTTP Request.
+     * @return the session token
+     */
+    protected String getSession(spark.Request req) {
+        String session = req.queryParams("session");
+        if (session == null || session.isEmpty()) {
+            return Constants.DEFAULT_SESSION;
+        }
+        return session;
+    }
+
     /**
      * Validate & return a parameter map of the required request parameters.
      * Requires that all input parameters are doubles.
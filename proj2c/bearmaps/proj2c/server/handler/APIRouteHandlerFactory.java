@@ -19,9 +19,14 @@ public class APIRouteHandlerFactory {
     static {
         handlerMap = new HashMap<>();
         handlerMap.put("raster", new RasterAPIHandler());
+        handlerMap.put("raster.png", new RasterImageAPIHandler());
+        handlerMap.put("tiles/:tile", new TileAPIHandler());
         handlerMap.put("route", new RoutingAPIHandler());
         handlerMap.put("clear_route", new ClearRouteAPIHandler());
+        handlerMap.put("distance_matrix", new DistanceMatrixAPIHandler());
+        handlerMap.put("isochrone", new IsochroneAPIHandler());
         handlerMap.put("search", new SearchAPIHandler());
+        handlerMap.put("metrics", new MetricsAPIHandler());
         handlerMap.put("", new RedirectAPIHandler());
     }
 
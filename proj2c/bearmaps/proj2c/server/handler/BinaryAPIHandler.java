@@ -0,0 +1,92 @@
+package bearmaps.proj2c.server.handler;
+
+import bearmaps.proj2c.server.RequestTrace;
+import spark.Request;
+import spark.Response;
+
+import static spark.Spark.halt;
+
+/**
+ * Base class for handlers that answer with raw bytes, such as images, instead
+ * of JSON. The bytes are written to the response as they are, with the
+ * handler's content type.
+ *
+ * Each response is tagged with an ETag computed from the request parameters
+ * alone. If the browser already holds a response with that tag, it gets an
+ * empty 304 Not Modified and the bytes are never produced.
+ */
+public abstract class BinaryAPIHandler<Req> extends APIRouteHandler<Req, byte[]> {
+
+    /** HTTP response for a request with nothing to return. */
+    private static final int NOT_FOUND_RESPONSE = 404;
+
+    /** HTTP response when the browser's copy is still current. */
+    private static final int NOT_MODIFIED_RESPONSE = 304;
+
+    @Override
+    public Object handle(Request request, Response response) throws Exception {
+        RequestTrace trace = RequestTrace.current();
+        Req requestParams = parseRequestParams(request);
+        trace.mark("parse");
+        String etag = etag(requestParams);
+        trace.mark("etag");
+        if (etag == null) {
+            halt(NOT_FOUND_RESPONSE, "Not found.");
+        }
+        response.header("ETag", etag);
+        response.header("Cache-Control", cacheControl());
+        if (matches(request.headers("If-None-Match"), etag)) {
+            response.status(NOT_MODIFIED_RESPONSE);
+            return "";
+        }
+
+        byte[] body = processRequest(requestParams, response);
+        trace.mark("process");
+        if (body == null) {
+            halt(NOT_FOUND_RESPONSE, "Not found.");
+        }
+        response.type(contentType());
+        return body;
+    }
+
+    /**
+     * Returns the ETag of the response to a request with the given
+     * parameters, including its quotes, or null if there is no response. This
+     * should be much cheaper than processRequest.
+     * @param requestParams request parameters
+     * @return the ETag, or null
+     */
+    protected abstract String etag(Req requestParams);
+
+    /**
+     * The content type of the bytes returned by processRequest.
+     * @return the MIME type
+     */
+    protected abstract String contentType();
+
+    /**
+     * The Cache-Control header sent with every response. By default browsers
+     * must revalidate before reusing a response.
+     * @return the header value
+     */
+    protected String cacheControl() {
+        return "no-cache";
+    }
+
+    /** Returns whether the If-None-Match header IFNONEMATCH names ETAG. */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
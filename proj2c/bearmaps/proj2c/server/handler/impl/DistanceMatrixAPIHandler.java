@@ -0,0 +1,102 @@
+package bearmaps.proj2c.server.handler.impl;
+
+import bearmaps.hw4.DistanceMatrix;
+import bearmaps.proj2c.Router;
+import bearmaps.proj2c.server.RequestTrace;
+import bearmaps.proj2c.server.handler.APIRouteHandler;
+import bearmaps.proj2c.utils.Tuple;
+import spark.Request;
+import spark.Response;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static bearmaps.proj2c.utils.Constants.MATRIX_THREADS;
+import static bearmaps.proj2c.utils.Constants.MAX_MATRIX_POINTS;
+import static bearmaps.proj2c.utils.Constants.SEMANTIC_STREET_GRAPH;
+import static spark.Spark.halt;
+
+/**
+ * Handles requests for the shortest distances between many locations at
+ * once, such as every pickup point to every drop-off point, answering with
+ * the whole matrix rather than one route at a time.
+ */
+public class DistanceMatrixAPIHandler
+        extends APIRouteHandler<Tuple<double[][], double[][]>, Map<String, Object>> {
+
+    /** HTTP failed response. */
+    private static final int HALT_RESPONSE = 403;
+
+    /** Computes the rows of every matrix, shared by all requests. */
+    private static final DistanceMatrix MATRIX = new DistanceMatrix(MATRIX_THREADS);
+
+    /**
+     * Each distance matrix request to the server will have the following
+     * parameters, each a list of locations written lat,lon and separated by
+     * semicolons, such as 37.87,-122.26;37.86,-122.25.<br>
+     * sources : the locations the paths start from,<br>
+     * targets : the locations the paths end at.
+     */
+    @Override
+    protected Tuple<double[][], double[][]> parseRequestParams(Request request) {
+        return new Tuple<>(parseLocations(request.queryParams("sources")),
+                parseLocations(request.queryParams("targets")));
+    }
+
+    /** Parses a semicolon separated list of lat,lon pairs into {lon, lat} pairs. */
+    private static double[][] parseLocations(String param) {
+        if (param == null || param.isEmpty()) {
+            halt(HALT_RESPONSE, "Request failed - parameters missing.");
+        }
+        String[] pairs = param.split(";");
+        if (pairs.length > MAX_MATRIX_POINTS) {
+            halt(HALT_RESPONSE, "Request failed - at most " + MAX_MATRIX_POINTS
+                    + " sources and " + MAX_MATRIX_POINTS + " targets.");
+        }
+        double[][] locations = new double[pairs.length][];
+        for (int i = 0; i < pairs.length; i += 1) {
+            String[] latLon = pairs[i].split(",");
+            if (latLon.length != 2) {
+                halt(HALT_RESPONSE, "Incorrect parameters - provide lat,lon pairs.");
+            }
+            try {
+                locations[i] = new double[]{Double.parseDouble(latLon[1].trim()),
+                        Double.parseDouble(latLon[0].trim())};
+            } catch (NumberFormatException e) {
+                e.printStackTrace();
+                halt(HALT_RESPONSE, "Incorrect parameters - provide numbers.");
+            }
+        }
+        return locations;
+    }
+
+    /**
+     * Finds the shortest distances from every source to every target, each
+     * snapped to its closest node as routes are.
+     * @return A map of results for the front end as specified: <br>
+     * "distances" : Array of arrays of numbers. Entry [i][j] is the distance in miles
+     *               from source i to target j, or null if target j cannot be reached.
+     */
+    @Override
+    protected Map<String, Object> processRequest(
+            Tuple<double[][], double[][]> requestParams, Response response) {
+        double[][] matrix = Router.distanceMatrix(SEMANTIC_STREET_GRAPH, MATRIX,
+                requestParams.getFirst(), requestParams.getSecond());
+        RequestTrace.current().count("matrix_cells",
+                (long) requestParams.getFirst().length * requestParams.getSecond().length);
+        // JSON has no infinity, so unreachable targets are null instead.
+        List<List<Double>> distances = new ArrayList<>(matrix.length);
+        for (double[] row : matrix) {
+            List<Double> list = new ArrayList<>(row.length);
+            for (double d : row) {
+                list.add(Double.isInfinite(d) ? null : d);
+            }
+            distances.add(list);
+        }
+        Map<String, Object> results = new HashMap<>();
+        results.put("distances", distances);
+        return results;
+    }
+}
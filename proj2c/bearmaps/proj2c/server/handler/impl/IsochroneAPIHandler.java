@@ -0,0 +1,77 @@
+package bearmaps.proj2c.server.handler.impl;
+
+import bearmaps.hw4.streetmap.CompactStreetGraph;
+import bearmaps.proj2c.Isochrone;
+import bearmaps.proj2c.server.RequestTrace;
+import bearmaps.proj2c.server.handler.APIRouteHandler;
+import spark.Request;
+import spark.Response;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static bearmaps.proj2c.utils.Constants.ISOCHRONE_CELL_MILES;
+import static bearmaps.proj2c.utils.Constants.ISOCHRONE_MAX_CELLS;
+import static bearmaps.proj2c.utils.Constants.MAX_ISOCHRONE_MILES;
+import static bearmaps.proj2c.utils.Constants.SEMANTIC_STREET_GRAPH;
+import static spark.Spark.halt;
+
+/**
+ * Handles requests for the area reachable from a location within a distance
+ * or a travel time, answering with its outline as polygon rings.
+ */
+public class IsochroneAPIHandler extends APIRouteHandler<Map<String, Double>, Map<String, Object>> {
+
+    /** HTTP failed response. */
+    private static final int HALT_RESPONSE = 403;
+
+    /**
+     * Each isochrone request to the server will have the following parameters
+     * as keys in the params map.<br>
+     * lat : start point latitude,<br> lon : start point longitude,<br>
+     * and then either<br>
+     * distance : the budget in miles,<br>
+     * or both<br>
+     * minutes : the budget in minutes, <br>mph : the travel speed in miles per hour.
+     **/
+    private static final String[] REQUIRED_ISOCHRONE_REQUEST_PARAMS = {"lat", "lon"};
+
+    @Override
+    protected Map<String, Double> parseRequestParams(Request request) {
+        Map<String, Double> params = getRequestParams(request, REQUIRED_ISOCHRONE_REQUEST_PARAMS);
+        if (request.queryParams("distance") != null) {
+            params.putAll(getRequestParams(request, new String[]{"distance"}));
+        } else {
+            Map<String, Double> time = getRequestParams(request, new String[]{"minutes", "mph"});
+            params.put("distance", time.get("minutes") / 60 * time.get("mph"));
+        }
+        double distance = params.get("distance");
+        if (!(distance >= 0 && distance <= MAX_ISOCHRONE_MILES)) {
+            halt(HALT_RESPONSE, "Incorrect parameters - the distance must be between 0 and "
+                    + MAX_ISOCHRONE_MILES + " miles.");
+        }
+        return params;
+    }
+
+    /**
+     * Finds the area within the budget of the node closest to the start point.
+     * @return A map of results for the front end as specified: <br>
+     * "rings" : Array of rings, each an array of [lon, lat] points that ends where it
+     *           starts. Outer rings run counterclockwise and holes clockwise. <br>
+     * "reached" : Number, how many nodes are within the budget.
+     */
+    @Override
+    protected Map<String, Object> processRequest(Map<String, Double> requestParams,
+                                                 Response response) {
+        CompactStreetGraph g = SEMANTIC_STREET_GRAPH.compactGraph();
+        int source = g.indexOf(SEMANTIC_STREET_GRAPH.closest(
+                requestParams.get("lon"), requestParams.get("lat")));
+        Isochrone isochrone = new Isochrone(g, source, requestParams.get("distance"),
+                ISOCHRONE_CELL_MILES, ISOCHRONE_MAX_CELLS);
+        RequestTrace.current().count("vertices_reached", isochrone.numReached());
+        Map<String, Object> results = new HashMap<>();
+        results.put("rings", isochrone.rings());
+        results.put("reached", isochrone.numReached());
+        return results;
+    }
+}
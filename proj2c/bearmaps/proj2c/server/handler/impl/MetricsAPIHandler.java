@@ -0,0 +1,55 @@
+package bearmaps.proj2c.server.handler.impl;
+
+import bearmaps.proj2c.server.handler.APIRouteHandler;
+import spark.Request;
+import spark.Response;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import static bearmaps.proj2c.utils.Constants.METRICS;
+import static spark.Spark.halt;
+
+/**
+ * Serves the server's metrics in the Prometheus text format, for a scraper
+ * running on the same machine. Requests from anywhere else are refused,
+ * since the metrics say more about the server than its users need to know.
+ */
+public class MetricsAPIHandler extends APIRouteHandler<Void, String> {
+
+    /** HTTP failed response. */
+    private static final int HALT_RESPONSE = 403;
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    @Override
+    protected Void parseRequestParams(Request request) {
+        if (!isLoopback(request.ip())) {
+            halt(HALT_RESPONSE, "Metrics are only served locally.");
+        }
+        return null;
+    }
+
+    @Override
+    protected String processRequest(Void requestParams, Response response) {
+        if (response != null) {
+            response.type(CONTENT_TYPE);
+        }
+        return METRICS.scrape();
+    }
+
+    /** The metrics are already text, so they are returned as they are rather than as JSON. */
+    @Override
+    protected Object buildJsonResponse(String result) {
+        return result;
+    }
+
+    /** Returns whether IP, a literal address, is this machine's. */
+    static boolean isLoopback(String ip) {
+        try {
+            return ip != null && InetAddress.getByName(ip).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+}
@@ -1,21 +1,28 @@
 package bearmaps.proj2c.server.handler.impl;
 
-import bearmaps.proj2c.AugmentedStreetMapGraph;
+import bearmaps.proj2c.server.RequestTrace;
+import bearmaps.proj2c.server.RouteOverlay;
+import bearmaps.proj2c.server.RouteSnapshot;
+import bearmaps.proj2c.server.TileCompositor;
 import bearmaps.proj2c.server.handler.APIRouteHandler;
 import spark.Request;
 import spark.Response;
 import bearmaps.proj2c.utils.Constants;
+import bearmaps.proj2c.utils.LruCache;
 
 import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Base64;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static bearmaps.proj2c.utils.Constants.*;
 
@@ -44,6 +51,74 @@ public class RasterAPIHandler extends APIRouteHandler<Map<String, Double>, Map<S
     private static final String[] REQUIRED_RASTER_RESULT_PARAMS = {"render_grid", "raster_ul_lon",
             "raster_ul_lat", "raster_lr_lon", "raster_lr_lat", "depth", "query_success"};
 
+    /**
+     * Decoded tiles, keyed by file name, so that popular tiles are not read
+     * and decoded from PNG on every request. Bounded by TILE_CACHE_BYTES of
+     * pixel data.
+     */
+    private static final LruCache<String, BufferedImage> TILE_CACHE =
+            new LruCache<>(TILE_CACHE_BYTES, RasterAPIHandler::imageBytes);
+
+    /**
+     * Loads every tile of depth at most MAXDEPTH into the tile cache, so that
+     * the first requests after startup do not have to decode them.
+     */
+    public static void warmTileCache(int maxDepth) {
+        for (int depth = 0; depth <= maxDepth; depth += 1) {
+            int tiles = 1 << depth;
+            for (int x = 0; x < tiles; x += 1) {
+                for (int y = 0; y < tiles; y += 1) {
+                    String tile = "d" + depth + "_x" + x + "_y" + y + ".png";
+                    if (new File(Constants.IMG_ROOT + tile).isFile()) {
+                        getImage(tile);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finished raster PNGs, keyed by the corner tiles of their grid and the
+     * version of the route drawn on them, so that a repeated viewport needs no
+     * image work at all. A new route gets a new version, so images with an
+     * old route are never served again and soon fall out of the cache.
+     * Bounded by RASTER_CACHE_BYTES of PNG data.
+     */
+    private static final LruCache<String, byte[]> RASTER_CACHE =
+            new LruCache<>(RASTER_CACHE_BYTES, png -> png.length);
+
+    /** Draws the tiles of a raster, several at a time for larger grids. */
+    private static final TileCompositor COMPOSITOR = new TileCompositor(TILE_SIZE,
+            RasterAPIHandler::getImage, RASTER_THREADS);
+
+    /** Tile file names, with their depth, x and y as groups. */
+    private static final Pattern TILE_NAME = Pattern.compile("d(\\d+)_x(\\d+)_y(\\d+)\\.png");
+
+    /**
+     * Routes, drawn a tile at a time and cached by tile, so that drawing a
+     * route over a raster costs about the same however long the route is.
+     */
+    private static final RouteOverlay ROUTE_OVERLAY = new RouteOverlay(TILE_SIZE,
+            ROOT_ULLON, ROOT_ULLAT, ROOT_LRLON, ROOT_LRLAT,
+            ROUTE_STROKE_COLOR, ROUTE_STROKE_WIDTH_PX,
+            v -> SEMANTIC_STREET_GRAPH.lon(v), v -> SEMANTIC_STREET_GRAPH.lat(v),
+            ROUTE_OVERLAY_BYTES);
+
+    /** The tile cache, for reporting its statistics. */
+    public static LruCache<String, BufferedImage> tileCache() {
+        return TILE_CACHE;
+    }
+
+    /** The route overlay, for reporting its statistics. */
+    public static RouteOverlay routeOverlay() {
+        return ROUTE_OVERLAY;
+    }
+
+    /** The raster cache, for reporting its statistics. */
+    public static LruCache<String, byte[]> rasterCache() {
+        return RASTER_CACHE;
+    }
+
 
     @Override
     protected Map<String, Double> parseRequestParams(Request request) {
@@ -236,19 +311,80 @@ public class RasterAPIHandler extends APIRouteHandler<Map<String, Double>, Map<S
         return rasteredParam;
     }
 
+    /**
+     * Draws the route of the session named by REQUEST, if it has one, over
+     * the rastered image. If REQUEST has b64=false, the image itself is left
+     * out, for clients that fetch it from RasterImageAPIHandler instead.
+     */
+    @Override
+    protected Object buildJsonResponse(Request request, Map<String, Object> result) {
+        if ("false".equals(request.queryParams("b64"))) {
+            if (validateRasteredImgParams(result)) {
+                putRasterSize(result);
+            }
+            return super.buildJsonResponse(result);
+        }
+        return buildJsonResponse(result, ROUTES.get(getSession(request)));
+    }
+
     @Override
     protected Object buildJsonResponse(Map<String, Object> result) {
+        return buildJsonResponse(result, ROUTES.get(DEFAULT_SESSION));
+    }
+
+    private Object buildJsonResponse(Map<String, Object> result, RouteSnapshot route) {
         boolean rasterSuccess = validateRasteredImgParams(result);
 
         if (rasterSuccess) {
-            ByteArrayOutputStream os = new ByteArrayOutputStream();
-            writeImagesToOutputStream(result, os);
-            String encodedImage = Base64.getEncoder().encodeToString(os.toByteArray());
+            byte[] png = renderRaster(result, route);
+            RequestTrace trace = RequestTrace.current();
+            trace.mark("raster_cache");
+            String encodedImage = Base64.getEncoder().encodeToString(png);
+            trace.mark("base64");
             result.put("b64_encoded_image_data", encodedImage);
         }
         return super.buildJsonResponse(result);
     }
 
+    /**
+     * Returns the PNG of the rastered image for the given raster result with
+     * ROUTE drawn over it, and records its size in the result. The PNG comes
+     * from the raster cache if the same grid and route were rendered before.
+     * Rendering marks the phases composite, overlay and png. If the image
+     * cannot be encoded, an UncheckedIOException is thrown and nothing is
+     * cached, so the request fails rather than serving a broken PNG.
+     */
+    byte[] renderRaster(Map<String, Object> rasteredImageParams, RouteSnapshot route) {
+        putRasterSize(rasteredImageParams);
+        return RASTER_CACHE.get(rasterKey(rasteredImageParams, route), k -> {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            writeImagesToOutputStream(rasteredImageParams, route, os);
+            return os.toByteArray();
+        });
+    }
+
+    /**
+     * Returns a string that identifies the image rastered for the given
+     * result with ROUTE drawn over it.
+     */
+    static String rasterKey(Map<String, Object> rasteredImageParams, RouteSnapshot route) {
+        String[][] renderGrid = (String[][]) rasteredImageParams.get("render_grid");
+        // The corner tiles fix the whole grid. Every empty route draws the
+        // same image, so they share version 0. Other versions are only unique
+        // within one registry, and the key outlives it as an ETag, so they
+        // are qualified by the registry's epoch.
+        String version = route.isEmpty() ? "0"
+                : Long.toHexString(route.epoch()) + "." + route.version();
+        return renderGrid[0][0] + ":" + renderGrid[renderGrid.length - 1][renderGrid[0].length - 1]
+                + ":" + version;
+    }
+
+    private static void putRasterSize(Map<String, Object> rasteredImageParams) {
+        String[][] renderGrid = (String[][]) rasteredImageParams.get("render_grid");
+        rasteredImageParams.put("raster_width", renderGrid[0].length * Constants.TILE_SIZE);
+        rasteredImageParams.put("raster_height", renderGrid.length * Constants.TILE_SIZE);
+    }
+
     private Map<String, Object> queryFail() {
         Map<String, Object> results = new HashMap<>();
         results.put("render_grid", null);
@@ -265,7 +401,7 @@ public class RasterAPIHandler extends APIRouteHandler<Map<String, Double>, Map<S
      * Validates that Rasterer has returned a result that can be rendered.
      * @param rip : Parameters provided by the rasterer
      */
-    private boolean validateRasteredImgParams(Map<String, Object> rip) {
+    boolean validateRasteredImgParams(Map<String, Object> rip) {
         for (String p : REQUIRED_RASTER_RESULT_PARAMS) {
             if (!rip.containsKey(p)) {
                 System.out.println("Your rastering result is missing the " + p + " field.");
@@ -288,73 +424,74 @@ public class RasterAPIHandler extends APIRouteHandler<Map<String, Double>, Map<S
      * we made this into provided code since it was just a bit too low level.
      */
     private  void writeImagesToOutputStream(Map<String, Object> rasteredImageParams,
-                                                  ByteArrayOutputStream os) {
+                                            RouteSnapshot snapshot, ByteArrayOutputStream os) {
         String[][] renderGrid = (String[][]) rasteredImageParams.get("render_grid");
-        int numVertTiles = renderGrid.length;
-        int numHorizTiles = renderGrid[0].length;
-
-        BufferedImage img = new BufferedImage(numHorizTiles * Constants.TILE_SIZE,
-                numVertTiles * Constants.TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+        RequestTrace trace = RequestTrace.current();
+        BufferedImage img = COMPOSITOR.composite(renderGrid);
+        trace.mark("composite");
         Graphics graphic = img.getGraphics();
-        int x = 0, y = 0;
-
-        for (int r = 0; r < numVertTiles; r += 1) {
-            for (int c = 0; c < numHorizTiles; c += 1) {
-                graphic.drawImage(getImage(Constants.IMG_ROOT + renderGrid[r][c]), x, y, null);
-                x += Constants.TILE_SIZE;
-                if (x >= img.getWidth()) {
-                    x = 0;
-                    y += Constants.TILE_SIZE;
+
+        /* If there is a route, draw the layer of it over each tile it crosses. */
+        if (!snapshot.isEmpty()) {
+            Matcher ul = TILE_NAME.matcher(renderGrid[0][0]);
+            ul.matches();
+            int depth = Integer.parseInt(ul.group(1));
+            int ulx = Integer.parseInt(ul.group(2));
+            int uly = Integer.parseInt(ul.group(3));
+            for (int r = 0; r < renderGrid.length; r += 1) {
+                for (int c = 0; c < renderGrid[0].length; c += 1) {
+                    BufferedImage layer = ROUTE_OVERLAY.layer(snapshot, depth, ulx + c, uly + r);
+                    if (layer != null) {
+                        graphic.drawImage(layer, c * Constants.TILE_SIZE, r * Constants.TILE_SIZE,
+                                null);
+                    }
                 }
             }
-        }
-
-        /* If there is a route, draw it. */
-        double ullon = (double) rasteredImageParams.get("raster_ul_lon"); //tiles.get(0).ulp;
-        double ullat = (double) rasteredImageParams.get("raster_ul_lat"); //tiles.get(0).ulp;
-        double lrlon = (double) rasteredImageParams.get("raster_lr_lon"); //tiles.get(0).ulp;
-        double lrlat = (double) rasteredImageParams.get("raster_lr_lat"); //tiles.get(0).ulp;
-
-        final double wdpp = (lrlon - ullon) / img.getWidth();
-        final double hdpp = (ullat - lrlat) / img.getHeight();
-        AugmentedStreetMapGraph graph = SEMANTIC_STREET_GRAPH;
-        List<Long> route = ROUTE_LIST;
-
-        if (route != null && !route.isEmpty()) {
-            Graphics2D g2d = (Graphics2D) graphic;
-            g2d.setColor(Constants.ROUTE_STROKE_COLOR);
-            g2d.setStroke(new BasicStroke(Constants.ROUTE_STROKE_WIDTH_PX,
-                    BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-            route.stream().reduce((v, w) -> {
-                g2d.drawLine((int) ((graph.lon(v) - ullon) * (1 / wdpp)),
-                        (int) ((ullat - graph.lat(v)) * (1 / hdpp)),
-                        (int) ((graph.lon(w) - ullon) * (1 / wdpp)),
-                        (int) ((ullat - graph.lat(w)) * (1 / hdpp)));
-                return w;
-            });
+            trace.mark("overlay");
         }
 
         rasteredImageParams.put("raster_width", img.getWidth());
         rasteredImageParams.put("raster_height", img.getHeight());
 
         try {
-            ImageIO.write(img, "png", os);
+            if (!ImageIO.write(img, "png", os)) {
+                throw new IOException("No PNG writer is available");
+            }
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException("Could not encode the rastered image", e);
         }
+        trace.mark("png");
 
     }
 
-    private BufferedImage getImage(String imgPath) {
+    /** Returns the tile image in the file TILE under IMG_ROOT, or null if it is unreadable. */
+    private static BufferedImage getImage(String tile) {
+        return TILE_CACHE.get(tile, RasterAPIHandler::readImage);
+    }
+
+    /**
+     * Returns whether TILE names a tile image, so that it is safe to look up
+     * under IMG_ROOT.
+     */
+    static boolean isTileName(String tile) {
+        return tile != null && TILE_NAME.matcher(tile).matches();
+    }
+
+    private static BufferedImage readImage(String tile) {
         BufferedImage tileImg = null;
-        if (tileImg == null) {
-            try {
-                File in = new File(imgPath);
-                tileImg = ImageIO.read(in);
-            } catch (IOException | NullPointerException e) {
-                e.printStackTrace();
-            }
+        try {
+            File in = new File(Constants.IMG_ROOT + tile);
+            tileImg = ImageIO.read(in);
+        } catch (IOException | NullPointerException e) {
+            e.printStackTrace();
         }
         return tileImg;
     }
+
+    /** The size in bytes of IMG's pixel data. */
+    private static long imageBytes(BufferedImage img) {
+        DataBuffer data = img.getRaster().getDataBuffer();
+        return (long) data.getSize() * data.getNumBanks()
+                * DataBuffer.getDataTypeSize(data.getDataType()) / 8;
+    }
 }
@@ -0,0 +1,55 @@
+package bearmaps.proj2c.server.handler.impl;
+
+import bearmaps.proj2c.server.RouteSnapshot;
+import bearmaps.proj2c.server.handler.BinaryAPIHandler;
+import bearmaps.proj2c.utils.Tuple;
+import spark.Request;
+import spark.Response;
+
+import java.util.Map;
+
+import static bearmaps.proj2c.utils.Constants.ROUTES;
+
+/**
+ * Serves the rastered image for a viewport as a plain PNG. It takes the same
+ * parameters as RasterAPIHandler, whose JSON (requested with b64=false) gives
+ * the bounds of the image without the image itself.
+ *
+ * The ETag names the tile grid and route version, so a browser revisiting a
+ * viewport whose route has not changed gets a 304 without any image work.
+ * The version includes the route registry's epoch, so a tag from before a
+ * restart never matches a different route with the same version number.
+ */
+public class RasterImageAPIHandler
+        extends BinaryAPIHandler<Tuple<Map<String, Object>, RouteSnapshot>> {
+
+    private final RasterAPIHandler rasterer = new RasterAPIHandler();
+
+    /** Rasters the viewport and looks up the session's route. */
+    @Override
+    protected Tuple<Map<String, Object>, RouteSnapshot> parseRequestParams(Request request) {
+        Map<String, Object> result = rasterer.processRequest(
+                rasterer.parseRequestParams(request), null);
+        return new Tuple<>(result, ROUTES.get(getSession(request)));
+    }
+
+    @Override
+    protected String etag(Tuple<Map<String, Object>, RouteSnapshot> requestParams) {
+        if (!rasterer.validateRasteredImgParams(requestParams.getFirst())) {
+            return null;
+        }
+        return "\"" + RasterAPIHandler.rasterKey(requestParams.getFirst(),
+                requestParams.getSecond()) + "\"";
+    }
+
+    @Override
+    protected byte[] processRequest(Tuple<Map<String, Object>, RouteSnapshot> requestParams,
+                                    Response response) {
+        return rasterer.renderRaster(requestParams.getFirst(), requestParams.getSecond());
+    }
+
+    @Override
+    protected String contentType() {
+        return "image/png";
+    }
+}
@@ -1,7 +1,10 @@
 package bearmaps.proj2c.server.handler.impl;
 
+import bearmaps.hw4.IntShortestPathsSolver;
 import bearmaps.proj2c.Router;
+import bearmaps.proj2c.server.RequestTrace;
 import bearmaps.proj2c.server.handler.APIRouteHandler;
+import bearmaps.proj2c.utils.Tuple;
 import spark.Request;
 import spark.Response;
 
@@ -9,28 +12,31 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import static bearmaps.proj2c.utils.Constants.ROUTES;
 import static bearmaps.proj2c.utils.Constants.SEMANTIC_STREET_GRAPH;
-import static bearmaps.proj2c.utils.Constants.ROUTE_LIST;
 
 /**
  * Handles requests from the web browser for routes between locations. The
  * route will be returned as image data, as well as (optionally) driving directions. *
  * Created by rahul
  */
-public class RoutingAPIHandler extends APIRouteHandler<Map<String, Double>, Map<String, Object>> {
+public class RoutingAPIHandler
+        extends APIRouteHandler<Tuple<String, Map<String, Double>>, Map<String, Object>> {
 
     /**
      * Each route request to the server will have the following parameters
      * as keys in the params map.<br>
      * start_lat : start point latitude,<br> start_lon : start point longitude,<br>
-     * end_lat : end point latitude, <br>end_lon : end point longitude.
+     * end_lat : end point latitude, <br>end_lon : end point longitude.<br>
+     * An optional session parameter names the session the route is drawn for.
      **/
     private static final String[] REQUIRED_ROUTE_REQUEST_PARAMS = {"start_lat", "start_lon",
             "end_lat", "end_lon"};
 
     @Override
-    protected Map<String, Double> parseRequestParams(Request request) {
-        return getRequestParams(request, REQUIRED_ROUTE_REQUEST_PARAMS);
+    protected Tuple<String, Map<String, Double>> parseRequestParams(Request request) {
+        return new Tuple<>(getSession(request),
+                getRequestParams(request, REQUIRED_ROUTE_REQUEST_PARAMS));
     }
 
     /**
@@ -38,15 +44,15 @@ public class RoutingAPIHandler extends APIRouteHandler<Map<String, Double>, Map<
      * street directions between the given points. THis method has been
      * completed for you.
      *
-     * The route to draw on the map should be added to the end of
-     * bearmaps.proj2c.utils.Constants.ROUTE_LIST. This is a LinkedList of longs,
-     * where each long corresponds to one point on the map.
+     * The route to draw on the map replaces the session's route in
+     * bearmaps.proj2c.utils.Constants.ROUTES, as a list of longs where each
+     * long corresponds to one point on the map.
      *
      * Street directions can also be provided in the form of text as a return
      * value to this function.
      *
-     * @param requestParams Map of the HTTP GET request's query parameters - the starting lat/long
-     *                      and the destination lat/lon.
+     * @param requestParams The session, and a map of the HTTP GET request's query parameters -
+     *                      the starting lat/long and the destination lat/lon.
      *
      * @param response : Not used by this function. You may ignore.
      * @return A map of results for the front end as specified: <br>
@@ -57,13 +63,21 @@ public class RoutingAPIHandler extends APIRouteHandler<Map<String, Double>, Map<
      * "directions"      : String. The text directions you want to display, in HTML format.
      */
     @Override
-    protected Map<String, Object> processRequest(Map<String, Double> requestParams, Response response) {
-        List<Long> route = Router.shortestPath(
+    protected Map<String, Object> processRequest(
+            Tuple<String, Map<String, Double>> requestParams, Response response) {
+        Map<String, Double> params = requestParams.getSecond();
+        IntShortestPathsSolver solver = Router.solve(
                 SEMANTIC_STREET_GRAPH,
-                requestParams.get("start_lon"), requestParams.get("start_lat"),
-                requestParams.get("end_lon"), requestParams.get("end_lat"));
-        ROUTE_LIST.addAll(route);
-        String directions = getDirectionsText();
+                params.get("start_lon"), params.get("start_lat"),
+                params.get("end_lon"), params.get("end_lat"));
+        RequestTrace trace = RequestTrace.current();
+        trace.mark("solve");
+        trace.count("states_explored", solver.numStatesExplored());
+        List<Long> route = Router.vertexIds(SEMANTIC_STREET_GRAPH.compactGraph(), solver);
+        ROUTES.publish(requestParams.getFirst(), route);
+        trace.mark("publish");
+        String directions = getDirectionsText(solver);
+        trace.mark("directions");
 
         Map<String, Object> routeParams = new HashMap<>();
         routeParams.put("routing_success", !route.isEmpty());
@@ -73,21 +87,22 @@ public class RoutingAPIHandler extends APIRouteHandler<Map<String, Double>, Map<
     }
 
     /**
-     * Takes the route of this MapServer and converts it into an HTML friendly
-     * String to be passed to the frontend.
+     * Takes the solver that found a route and converts its directions into an
+     * HTML friendly String to be passed to the frontend, straight from the
+     * edges it traversed.
      */
-    private String getDirectionsText() {
-
-        List<Router.NavigationDirection> directions = Router.routeDirections(SEMANTIC_STREET_GRAPH, ROUTE_LIST);
-        if (directions == null || directions.isEmpty()) {
+    private String getDirectionsText(IntShortestPathsSolver solver) {
+        int[] vertices = solver.solutionVertices();
+        if (vertices.length == 0) {
             return "";
         }
         StringBuilder sb = new StringBuilder();
-        int step = 1;
-        for (Router.NavigationDirection d: directions) {
-            sb.append(String.format("%d. %s <br>", step, d));
-            step += 1;
-        }
+        int[] step = {1};
+        Router.routeDirections(SEMANTIC_STREET_GRAPH.compactGraph(), vertices[0],
+                solver.solutionEdges(), d -> {
+                    sb.append(String.format("%d. %s <br>", step[0], d));
+                    step[0] += 1;
+                });
         return sb.toString();
     }
 }
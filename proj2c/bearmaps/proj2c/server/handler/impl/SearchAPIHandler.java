@@ -38,7 +38,7 @@ public class SearchAPIHandler extends APIRouteHandler<Tuple<Set<String>, String>
     }
 
     /**
-     * In linear time, collect all the names of OSM locations that prefix-match the query string.
+     * Collect the names of OSM locations that prefix-match the query string, most common first.
      * @param prefix Prefix string to be searched for. Could be any case, with our without
      *               punctuation.
      * @return A <code>List</code> of the full names of locations whose cleaned name matches the
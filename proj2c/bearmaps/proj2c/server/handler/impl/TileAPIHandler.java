@@ -0,0 +1,60 @@
+package bearmaps.proj2c.server.handler.impl;
+
+import bearmaps.proj2c.server.handler.BinaryAPIHandler;
+import bearmaps.proj2c.utils.Constants;
+import spark.Request;
+import spark.Response;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Serves a single tile image, e.g. /tiles/d3_x2_y5.png, exactly as it is
+ * stored under IMG_ROOT, so that clients can fetch and cache tiles one at a
+ * time instead of as part of a rastered image.
+ */
+public class TileAPIHandler extends BinaryAPIHandler<File> {
+
+    /** Tiles never change while the server is up, so browsers may keep them for a day. */
+    private static final String CACHE_CONTROL = "public, max-age=86400";
+
+    /** Returns the tile file named by the request, or null if the name is not a tile's. */
+    @Override
+    protected File parseRequestParams(Request request) {
+        String tile = request.params(":tile");
+        if (!RasterAPIHandler.isTileName(tile)) {
+            return null;
+        }
+        return new File(Constants.IMG_ROOT + tile);
+    }
+
+    @Override
+    protected String etag(File tile) {
+        if (tile == null || !tile.isFile()) {
+            return null;
+        }
+        return "\"" + Long.toHexString(tile.length()) + "-"
+                + Long.toHexString(tile.lastModified()) + "\"";
+    }
+
+    @Override
+    protected byte[] processRequest(File tile, Response response) {
+        try {
+            return Files.readAllBytes(tile.toPath());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    protected String contentType() {
+        return "image/png";
+    }
+
+    @Override
+    protected String cacheControl() {
+        return CACHE_CONTROL;
+    }
+}
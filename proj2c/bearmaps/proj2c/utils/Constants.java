@@ -1,10 +1,10 @@
 package bearmaps.proj2c.utils;
 
 import bearmaps.proj2c.AugmentedStreetMapGraph;
+import bearmaps.proj2c.server.Metrics;
+import bearmaps.proj2c.server.RouteRegistry;
 
 import java.awt.*;
-import java.util.LinkedList;
-import java.util.List;
 
 /**
  * A class holding all the constant values used throughout the project
@@ -27,6 +27,26 @@ public class Constants {
      **/
     public static final String OSM_DB_PATH = "../library-sp19/data/proj2c_xml/berkeley-2019.osm.xml";
 
+    /**
+     * Where the contraction hierarchy for the OSM file is persisted. It is
+     * rebuilt automatically if it does not match the graph read from the file.
+     */
+    public static final String CH_PATH = OSM_DB_PATH + ".ch";
+
+    /**
+     * Whether the server routes with the contraction hierarchy. If not, it
+     * routes with A*, guided by NUM_LANDMARKS landmarks.
+     */
+    public static final boolean USE_CONTRACTION_HIERARCHY = true;
+
+    /**
+     * How many landmarks the server selects at startup for the ALT
+     * heuristic, when it does not use the contraction hierarchy. With 0, A*
+     * uses the great-circle heuristic alone. LandmarkComparison compares
+     * counts by the states A* explores with them.
+     */
+    public static final int NUM_LANDMARKS = 16;
+
     /** The tile images are in the IMG_ROOT folder. */
     public static final String IMG_ROOT = "../library-sp19/data/proj2c_imgs/";
 
@@ -39,11 +59,47 @@ public class Constants {
     /** Each tile is 256x256 pixels. */
     public static final int TILE_SIZE = 256;
 
+    /** The most decoded tile pixel data, in bytes, kept in memory at once. */
+    public static final long TILE_CACHE_BYTES = 256L << 20;
+
+    /** The most rendered raster PNG data, in bytes, kept in memory at once. */
+    public static final long RASTER_CACHE_BYTES = 64L << 20;
+
+    /** The most memory, in bytes, taken by cached route overlay tiles. */
+    public static final long ROUTE_OVERLAY_BYTES = 64L << 20;
+
+    /** The most threads that load and draw the tiles of one raster at once. */
+    public static final int RASTER_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /** The most threads that compute the rows of one distance matrix at once. */
+    public static final int MATRIX_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /** The most sources, and the most targets, in one distance matrix request. */
+    public static final int MAX_MATRIX_POINTS = 500;
+
+    /** Isochrones are drawn on square cells this many miles wide. */
+    public static final double ISOCHRONE_CELL_MILES = 0.03;
+
+    /** The most cells along either side of an isochrone's grid; larger areas get wider cells. */
+    public static final int ISOCHRONE_MAX_CELLS = 512;
+
+    /** The largest distance, in miles, an isochrone may reach out to. */
+    public static final double MAX_ISOCHRONE_MILES = 20;
+
+    /** Tiles of this depth or less are decoded into the tile cache at startup. */
+    public static final int WARM_TILE_DEPTH = 3;
+
     public static AugmentedStreetMapGraph SEMANTIC_STREET_GRAPH;
 
-    /**
-     * This is used to maintain a single List of route so that the same instance(object) is accessed
-     * from everywhere in the code. Enum is a cleaner way to achieve such a singleton pattern.
-     */
-    public static final List<Long> ROUTE_LIST = new LinkedList<>();
+    /** The session of requests that do not name one. */
+    public static final String DEFAULT_SESSION = "default";
+
+    /** The most sessions whose routes are remembered at once. */
+    public static final int MAX_ROUTE_SESSIONS = 1024;
+
+    /** The current route of each session, shared by the routing and raster handlers. */
+    public static final RouteRegistry ROUTES = new RouteRegistry(MAX_ROUTE_SESSIONS);
+
+    /** Request and cache metrics, served by MetricsAPIHandler. */
+    public static final Metrics METRICS = new Metrics();
 }
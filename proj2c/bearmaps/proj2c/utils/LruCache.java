@@ -0,0 +1,148 @@
+package bearmaps.proj2c.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A thread-safe cache that holds values up to a total weight, evicting the
+ * least recently used entries when it is over. Each value's weight comes from
+ * a weigher given at construction, e.g. its size in bytes.
+ *
+ * The map itself is guarded by the cache's lock, but values are loaded
+ * outside of it, so a slow load does not hold up other threads. Two threads
+ * that miss on the same key at once may therefore both load it; the value
+ * loaded last is the one kept.
+ */
+public class LruCache<K, V> {
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    /** In access order, so the first entry is the least recently used. */
+    private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a cache holding values of total weight at most MAXWEIGHT, as
+     * measured by WEIGHER. A single value heavier than that is never kept.
+     */
+    public LruCache(long maxWeight, ToLongFunction<V> weigher) {
+        if (maxWeight < 0) {
+            throw new IllegalArgumentException("Weight must not be negative: " + maxWeight);
+        }
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    /** Creates a cache holding at most MAXENTRIES values. */
+    public LruCache(int maxEntries) {
+        this(maxEntries, v -> 1);
+    }
+
+    /** Returns the value cached for KEY, or null if there is none. */
+    public V getIfPresent(K key) {
+        V value;
+        synchronized (this) {
+            value = entries.get(key);
+        }
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Returns the value cached for KEY, calling LOADER to compute and cache it
+     * if there is none. A null from LOADER is returned but not cached.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = getIfPresent(key);
+        if (value == null) {
+            value = loader.apply(key);
+            if (value != null) {
+                put(key, value);
+            }
+        }
+        return value;
+    }
+
+    /** Caches VALUE for KEY, evicting older entries if needed to make room. */
+    public void put(K key, V value) {
+        long w = weigher.applyAsLong(value);
+        synchronized (this) {
+            V old = entries.remove(key);
+            if (old != null) {
+                weight -= weigher.applyAsLong(old);
+            }
+            if (w > maxWeight) {
+                return;
+            }
+            entries.put(key, value);
+            weight += w;
+            Iterator<Map.Entry<K, V>> eldest = entries.entrySet().iterator();
+            while (weight > maxWeight) {
+                Map.Entry<K, V> e = eldest.next();
+                weight -= weigher.applyAsLong(e.getValue());
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /** Removes the value cached for KEY, if any. */
+    public synchronized void invalidate(K key) {
+        V old = entries.remove(key);
+        if (old != null) {
+            weight -= weigher.applyAsLong(old);
+        }
+    }
+
+    /** Removes every cached value. */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /** The number of cached values. */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** The total weight of the cached values. */
+    public synchronized long weight() {
+        return weight;
+    }
+
+    public long maxWeight() {
+        return maxWeight;
+    }
+
+    /** The number of lookups that found a cached value. */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /** The number of lookups that found no cached value. */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /** The number of values removed to make room for others. */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d entries, weight %d/%d, %d hits, %d misses, %d evictions",
+                size(), weight(), maxWeight, hits(), misses(), evictions());
+    }
+}
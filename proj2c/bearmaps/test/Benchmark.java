@@ -0,0 +1,122 @@
+package bearmaps.test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Measures one operation the way a benchmark harness would: it is run
+ * untimed until the JIT has had WARMUP seconds to compile it, then timed
+ * call by call for MEASURE seconds, and at least MINOPS times either way.
+ * Each call gets the next input index, wrapping around after NUMINPUTS, so
+ * a run works through a whole query mix rather than repeating one query.
+ *
+ * A run reports throughput, the mean, median (p50), 99th percentile and
+ * worst latency, and the bytes allocated per call. Allocation is counted on
+ * the calling thread only, so work handed to a pool is missed. Results are
+ * kept in a sink so the JIT cannot drop calls whose results go unused.
+ */
+public class Benchmark {
+    /** The most latencies recorded per run; calls past this still count toward throughput. */
+    private static final int MAX_SAMPLES = 1 << 20;
+
+    private final String name;
+    private final IntFunction<Object> operation;
+    private final int numInputs;
+    private double warmupSeconds = 2;
+    private double measureSeconds = 5;
+    private int minOps = 5;
+    private long sink;
+
+    /** Creates a benchmark named NAME that calls OPERATION on input indices 0 to NUMINPUTS - 1. */
+    public Benchmark(String name, IntFunction<Object> operation, int numInputs) {
+        if (numInputs <= 0) {
+            throw new IllegalArgumentException(name + " needs at least one input");
+        }
+        this.name = name;
+        this.operation = operation;
+        this.numInputs = numInputs;
+    }
+
+    /** Sets how long to warm up and measure for, and the fewest calls each phase makes. */
+    public Benchmark duration(double warmup, double measure, int minCalls) {
+        warmupSeconds = warmup;
+        measureSeconds = measure;
+        minOps = Math.max(minCalls, 1);
+        return this;
+    }
+
+    /** Prints the header that lines up with the rows run() prints. */
+    public static void printHeader() {
+        System.out.println(String.format("%-32s %10s %12s %12s %12s %12s %12s", "benchmark",
+                "ops/s", "mean us", "p50 us", "p99 us", "max us", "bytes/op"));
+    }
+
+    /** Warms up, measures and prints one row of results. */
+    public void run() {
+        int input = 0;
+        long deadline = System.nanoTime() + (long) (warmupSeconds * 1e9);
+        for (int i = 0; i < minOps || System.nanoTime() < deadline; i += 1) {
+            consume(operation.apply(input));
+            input = (input + 1) % numInputs;
+        }
+
+        long[] latencies = new long[MAX_SAMPLES];
+        int samples = 0;
+        long ops = 0;
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        deadline = start + (long) (measureSeconds * 1e9);
+        long now = start;
+        while (ops < minOps || now < deadline) {
+            long t0 = System.nanoTime();
+            consume(operation.apply(input));
+            now = System.nanoTime();
+            if (samples < MAX_SAMPLES) {
+                latencies[samples] = now - t0;
+                samples += 1;
+            }
+            ops += 1;
+            input = (input + 1) % numInputs;
+        }
+        long allocated = allocatedBefore < 0 ? -1 : allocatedBytes() - allocatedBefore;
+        double seconds = (now - start) / 1e9;
+
+        Arrays.sort(latencies, 0, samples);
+        System.out.println(String.format("%-32s %10.1f %12.1f %12.1f %12.1f %12.1f %12s",
+                name, ops / seconds, seconds * 1e6 / ops,
+                percentile(latencies, samples, 0.50) / 1e3,
+                percentile(latencies, samples, 0.99) / 1e3,
+                latencies[samples - 1] / 1e3,
+                allocated < 0 ? "n/a" : String.valueOf(allocated / ops)));
+    }
+
+    /** Returns the value below which fraction P of the first N sorted values fall. */
+    static long percentile(long[] sorted, int n, double p) {
+        int index = (int) Math.ceil(p * n) - 1;
+        return sorted[Math.max(0, Math.min(index, n - 1))];
+    }
+
+    private void consume(Object result) {
+        sink += result == null ? 1 : System.identityHashCode(result);
+    }
+
+    /** Returns the bytes allocated so far by the calling thread, or -1 if the JVM cannot tell. */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean counting = (com.sun.management.ThreadMXBean) threads;
+            if (counting.isThreadAllocatedMemorySupported()
+                    && counting.isThreadAllocatedMemoryEnabled()) {
+                return counting.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /** Returns a value that depends on every result seen, so that none can be optimized away. */
+    public long sink() {
+        return sink;
+    }
+}
@@ -0,0 +1,233 @@
+package bearmaps.test;
+
+import bearmaps.hw4.streetmap.NodeStore;
+import bearmaps.hw4.streetmap.OsmReader;
+import bearmaps.proj2c.AugmentedStreetMapGraph;
+import bearmaps.proj2c.Router;
+import bearmaps.proj2c.server.handler.impl.RasterAPIHandler;
+import bearmaps.proj2c.utils.Constants;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Benchmarks each stage of serving BearMaps on the Berkeley map: parsing
+ * the OSM XML, loading the graph, snapping points to the nearest vertex,
+ * routing, turn-by-turn directions, autocomplete and rastering. The queries
+ * are the ones in proj2c_test_inputs followed by random ones drawn over
+ * the map, so each stage sees a spread of short and long routes, deep and
+ * shallow rasters, and short, long and misspelled prefixes.
+ *
+ * Routing is measured twice: with plain A*, and with the contraction
+ * hierarchy the server prepares at startup. Rastering goes through
+ * RasterAPIHandler itself, from the rastered grid to the JSON response
+ * with its Base64 PNG and no route drawn, with the raster cache cleared
+ * before each call so that every call composites; the tile cache stays
+ * warm, as it does in a running server.
+ *
+ * Stages whose data is missing are skipped. Run with -Xmx2g or more, from
+ * the proj2c directory, like the server.
+ */
+public class BenchmarkRoutingStack {
+    private static final String INPUTS = "../library-sp19/data/proj2c_test_inputs/";
+    private static final int NUM_RANDOM_QUERIES = 256;
+    private static final int MAX_DEPTH = 7;
+    /* The viewport size in pixels of the random raster queries. */
+    private static final double VIEWPORT_WIDTH = 1000;
+    private static final double VIEWPORT_HEIGHT = 600;
+
+    public static void main(String[] args) throws IOException {
+        Random r = new Random(43);
+        List<Benchmark> benchmarks = new ArrayList<>();
+        Benchmark.printHeader();
+
+        if (!new File(Constants.OSM_DB_PATH).isFile()) {
+            System.out.println("Skipping the graph benchmarks: no OSM XML at "
+                    + Constants.OSM_DB_PATH);
+        } else {
+            int processors = Runtime.getRuntime().availableProcessors();
+            run(benchmarks, new Benchmark("parse OSM XML", i -> parse(processors), 1)
+                    .duration(0, 0, 3));
+            // The first load writes the snapshot if it is stale, which is not timed.
+            run(benchmarks, new Benchmark("load graph",
+                    i -> new AugmentedStreetMapGraph(Constants.OSM_DB_PATH), 1).duration(0, 0, 3));
+            AugmentedStreetMapGraph graph = new AugmentedStreetMapGraph(Constants.OSM_DB_PATH);
+
+            double[] points = randomPoints(r, 2 * NUM_RANDOM_QUERIES);
+            run(benchmarks, new Benchmark("closest",
+                    i -> graph.closest(points[2 * i], points[2 * i + 1]), NUM_RANDOM_QUERIES));
+
+            List<double[]> trips = readParams(INPUTS + "path_params.txt", 4);
+            for (int i = 0; i < NUM_RANDOM_QUERIES; i += 1) {
+                trips.add(randomPoints(r, 2));
+            }
+            run(benchmarks, new Benchmark("shortestPath (A*)", i -> {
+                double[] t = trips.get(i);
+                return Router.shortestPath(graph, t[0], t[1], t[2], t[3]);
+            }, trips.size()));
+
+            // As MapServerInitializer does; the first call builds and saves
+            // the hierarchy if it is missing, which is not timed.
+            run(benchmarks, new Benchmark("load contraction hierarchy", i -> {
+                graph.prepareContractionHierarchy(Constants.CH_PATH);
+                return graph.contractionHierarchy();
+            }, 1).duration(0, 0, 3));
+            run(benchmarks, new Benchmark("shortestPath (CH)", i -> {
+                double[] t = trips.get(i);
+                return Router.shortestPath(graph, t[0], t[1], t[2], t[3]);
+            }, trips.size()));
+
+            List<List<Long>> routes = new ArrayList<>();
+            for (double[] t : trips) {
+                List<Long> route = Router.shortestPath(graph, t[0], t[1], t[2], t[3]);
+                if (route.size() > 1) {
+                    routes.add(route);
+                }
+            }
+            run(benchmarks, new Benchmark("routeDirections",
+                    i -> Router.routeDirections(graph, routes.get(i)), routes.size()));
+
+            List<String> prefixes = randomPrefixes(r, graph.nodeStore());
+            run(benchmarks, new Benchmark("getLocationsByPrefix",
+                    i -> graph.getLocationsByPrefix(prefixes.get(i)), prefixes.size()));
+        }
+
+        if (!new File(Constants.IMG_ROOT).isDirectory()) {
+            System.out.println("Skipping the raster benchmark: no tiles in " + Constants.IMG_ROOT);
+        } else {
+            Rasterer rasterer = new Rasterer();
+            List<Map<String, Double>> viewports = rasterQueries(r);
+            run(benchmarks, new Benchmark("raster (uncached response)", i -> {
+                RasterAPIHandler.rasterCache().clear();
+                return rasterer.respond(viewports.get(i));
+            }, viewports.size()));
+        }
+
+        long sink = 0;
+        for (Benchmark b : benchmarks) {
+            sink += b.sink();
+        }
+        System.out.println("(sink " + sink + ")");
+    }
+
+    private static void run(List<Benchmark> benchmarks, Benchmark benchmark) {
+        benchmarks.add(benchmark);
+        benchmark.run();
+    }
+
+    /** Parses the OSM XML as StreetMapGraph does, without its snapshot. */
+    private static Object parse(int parallelism) {
+        OsmReader reader = new OsmReader(parallelism, 1 << 16);
+        try (InputStream in = new FileInputStream(Constants.OSM_DB_PATH)) {
+            reader.read(in);
+        } catch (XMLStreamException | IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return reader.freeze();
+    }
+
+    /** Returns N random points over the map, as alternating longitudes and latitudes. */
+    private static double[] randomPoints(Random r, int n) {
+        double[] points = new double[2 * n];
+        for (int i = 0; i < n; i += 1) {
+            points[2 * i] = Constants.ROOT_ULLON
+                    + r.nextDouble() * (Constants.ROOT_LRLON - Constants.ROOT_ULLON);
+            points[2 * i + 1] = Constants.ROOT_LRLAT
+                    + r.nextDouble() * (Constants.ROOT_ULLAT - Constants.ROOT_LRLAT);
+        }
+        return points;
+    }
+
+    /**
+     * Returns the prefixes a user typing the names of random locations would
+     * send, one per keystroke up to six, with adjacent letters swapped in a
+     * quarter of the names.
+     */
+    private static List<String> randomPrefixes(Random r, NodeStore nodes) {
+        List<String> prefixes = new ArrayList<>();
+        for (int i = 0; i < NUM_RANDOM_QUERIES && nodes.numNames() > 0; i += 1) {
+            char[] name = nodes.nameOf(r.nextInt(nodes.numNames())).toCharArray();
+            if (name.length > 2 && r.nextInt(4) == 0) {
+                int at = 1 + r.nextInt(name.length - 2);
+                char c = name[at];
+                name[at] = name[at + 1];
+                name[at + 1] = c;
+            }
+            for (int length = 1; length <= Math.min(name.length, 6); length += 1) {
+                prefixes.add(new String(name, 0, length));
+            }
+        }
+        return prefixes;
+    }
+
+    /** Returns the raster queries in proj2c_test_inputs and random viewports at every depth. */
+    private static List<Map<String, Double>> rasterQueries(Random r) throws IOException {
+        List<Map<String, Double>> queries = new ArrayList<>();
+        for (double[] p : readParams(INPUTS + "raster_params.txt", 6)) {
+            queries.add(viewport(p[0], p[1], p[2], p[3], p[4], p[5]));
+        }
+        for (int i = 0; i < NUM_RANDOM_QUERIES; i += 1) {
+            double width = (Constants.ROOT_LRLON - Constants.ROOT_ULLON)
+                    / (1 << r.nextInt(MAX_DEPTH + 1));
+            double height = width * VIEWPORT_HEIGHT / VIEWPORT_WIDTH;
+            double[] center = randomPoints(r, 1);
+            queries.add(viewport(center[0] - width / 2, center[1] + height / 2,
+                    center[0] + width / 2, center[1] - height / 2,
+                    VIEWPORT_WIDTH, VIEWPORT_HEIGHT));
+        }
+        return queries;
+    }
+
+    private static Map<String, Double> viewport(double ullon, double ullat, double lrlon,
+                                                double lrlat, double w, double h) {
+        Map<String, Double> params = new HashMap<>();
+        params.put("ullon", ullon);
+        params.put("ullat", ullat);
+        params.put("lrlon", lrlon);
+        params.put("lrlat", lrlat);
+        params.put("w", w);
+        params.put("h", h);
+        return params;
+    }
+
+    /** Answers raster requests as the server does, short of HTTP. */
+    private static class Rasterer extends RasterAPIHandler {
+        /** Returns the JSON body the server would send for VIEWPORT. */
+        Object respond(Map<String, Double> viewport) {
+            return buildJsonResponse(processRequest(viewport, null));
+        }
+    }
+
+    /**
+     * Reads a file of test parameters, skipping comment lines, as groups of
+     * GROUPSIZE numbers.
+     */
+    private static List<double[]> readParams(String path, int groupSize) throws IOException {
+        List<Double> numbers = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(path), Charset.defaultCharset())) {
+            if (!line.startsWith("#") && !line.trim().isEmpty()) {
+                numbers.add(Double.parseDouble(line.trim()));
+            }
+        }
+        List<double[]> groups = new ArrayList<>();
+        for (int i = 0; i + groupSize <= numbers.size(); i += groupSize) {
+            double[] group = new double[groupSize];
+            for (int j = 0; j < groupSize; j += 1) {
+                group[j] = numbers.get(i + j);
+            }
+            groups.add(group);
+        }
+        return groups;
+    }
+}
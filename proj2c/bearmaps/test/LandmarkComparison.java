@@ -0,0 +1,77 @@
+package bearmaps.test;
+
+import bearmaps.hw4.AStarGraph;
+import bearmaps.hw4.AStarSolver;
+import bearmaps.hw4.alt.LandmarkAStarGraph;
+import bearmaps.hw4.alt.Landmarks;
+import bearmaps.hw4.streetmap.CompactStreetGraph;
+import bearmaps.proj2c.AugmentedStreetMapGraph;
+import bearmaps.proj2c.utils.Constants;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Reports how many states AStarSolver explores on the proj2c_test_inputs path
+ * queries with the great-circle heuristic alone, and with the ALT landmark
+ * heuristic for a few landmark counts and both selection strategies. The
+ * server selects Constants.NUM_LANDMARKS landmarks with the AVOID strategy
+ * when it routes without a contraction hierarchy.
+ */
+public class LandmarkComparison {
+    private static final String PARAMS_FILE =
+            "../library-sp19/data/proj2c_test_inputs/path_params.txt";
+    private static final int[] LANDMARK_COUNTS = {4, 8, 16};
+
+    public static void main(String[] args) throws IOException {
+        AugmentedStreetMapGraph g = new AugmentedStreetMapGraph(Constants.OSM_DB_PATH);
+        CompactStreetGraph cg = g.compactGraph();
+        List<String> lines = Files.readAllLines(Paths.get(PARAMS_FILE), Charset.defaultCharset());
+        // Skip the two comment lines; each query is four lines after that.
+        int numQueries = (lines.size() - 2) / 4;
+        long[] starts = new long[numQueries];
+        long[] ends = new long[numQueries];
+        for (int i = 0; i < numQueries; i += 1) {
+            int lineIdx = 2 + 4 * i;
+            starts[i] = g.closest(Double.parseDouble(lines.get(lineIdx)),
+                    Double.parseDouble(lines.get(lineIdx + 1)));
+            ends[i] = g.closest(Double.parseDouble(lines.get(lineIdx + 2)),
+                    Double.parseDouble(lines.get(lineIdx + 3)));
+        }
+
+        int baseline = report("great-circle", g, starts, ends, 0);
+        for (Landmarks.Strategy strategy : Landmarks.Strategy.values()) {
+            for (int count : LANDMARK_COUNTS) {
+                Landmarks landmarks = Landmarks.select(cg, count, strategy);
+                AStarGraph<Long> alt = new LandmarkAStarGraph<>(g, landmarks, cg::indexOf);
+                report(strategy + " x" + count, alt, starts, ends, baseline);
+            }
+        }
+    }
+
+    /**
+     * Solves every query on G, printing the states explored per query and in
+     * total, and the reduction against BASELINE if it is nonzero. Returns the
+     * total.
+     */
+    private static int report(String label, AStarGraph<Long> g, long[] starts, long[] ends,
+                              int baseline) {
+        StringBuilder perQuery = new StringBuilder();
+        int total = 0;
+        for (int i = 0; i < starts.length; i += 1) {
+            AStarSolver<Long> solver = new AStarSolver<>(g, starts[i], ends[i], 20);
+            perQuery.append(' ').append(solver.numStatesExplored());
+            total += solver.numStatesExplored();
+        }
+        if (baseline == 0) {
+            System.out.println(String.format("%-14s total %7d |%s", label, total, perQuery));
+        } else {
+            System.out.println(String.format("%-14s total %7d (%4.1f%% fewer) |%s", label, total,
+                    100.0 * (baseline - total) / baseline, perQuery));
+        }
+        return total;
+    }
+}
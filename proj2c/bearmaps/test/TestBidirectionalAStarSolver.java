@@ -0,0 +1,92 @@
+package bearmaps.test;
+
+import bearmaps.hw4.AStarGraph;
+import bearmaps.hw4.AStarSolver;
+import bearmaps.hw4.BidirectionalAStarSolver;
+import bearmaps.hw4.SolverOutcome;
+import bearmaps.hw4.streetmap.CompactStreetGraph;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Checks BidirectionalAStarSolver against AStarSolver on random grids. */
+public class TestBidirectionalAStarSolver {
+
+    /** Asserts that PATH runs from START to END in G and weighs WEIGHT. */
+    private static void assertPath(CompactStreetGraph g, List<Integer> path, int start, int end,
+                                   double weight) {
+        assertEquals(start, (int) path.get(0));
+        assertEquals(end, (int) path.get(path.size() - 1));
+        double total = 0;
+        for (int i = 0; i + 1 < path.size(); i += 1) {
+            int e = g.findEdge(path.get(i), path.get(i + 1));
+            assertTrue(e >= 0);
+            total += g.edgeWeight(e);
+        }
+        assertEquals(weight, total, 1e-9);
+    }
+
+    @Test
+    public void testMatchesAStarSolver() {
+        Random r = new Random(81);
+        for (int trial = 0; trial < 3; trial += 1) {
+            CompactStreetGraph g = TestIntAStarSolver.randomGrid(r);
+            AStarGraph<Integer> boxed = TestIntAStarSolver.boxed(g);
+            for (int query = 0; query < 100; query += 1) {
+                int start = r.nextInt(g.numVertices());
+                int end = r.nextInt(g.numVertices());
+                AStarSolver<Integer> expected = new AStarSolver<>(boxed, start, end, 10);
+                BidirectionalAStarSolver<Integer> actual =
+                        new BidirectionalAStarSolver<>(boxed, start, end, 10);
+                assertEquals(expected.outcome(), actual.outcome());
+                assertEquals(expected.solutionWeight(), actual.solutionWeight(), 1e-9);
+                if (actual.outcome() == SolverOutcome.SOLVED) {
+                    assertPath(g, actual.solution(), start, end, actual.solutionWeight());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testOneWayStreets() {
+        Random r = new Random(82);
+        CompactStreetGraph twoWay = TestIntAStarSolver.randomGrid(r);
+        // Keep each street in only one direction, chosen at random, and build
+        // the reversed graph alongside.
+        CompactStreetGraph.Builder forward = new CompactStreetGraph.Builder();
+        CompactStreetGraph.Builder backward = new CompactStreetGraph.Builder();
+        for (int v = 0; v < twoWay.numVertices(); v += 1) {
+            forward.addNode(v, twoWay.lat(v), twoWay.lon(v));
+            backward.addNode(v, twoWay.lat(v), twoWay.lon(v));
+        }
+        for (int v = 0; v < twoWay.numVertices(); v += 1) {
+            for (int e = twoWay.firstEdge(v); e < twoWay.endEdge(v); e += 1) {
+                int w = twoWay.edgeTarget(e);
+                if (v < w && r.nextInt(4) != 0 || v > w && r.nextInt(4) == 0) {
+                    forward.addEdge(v, w, twoWay.edgeWeight(e), null);
+                    backward.addEdge(w, v, twoWay.edgeWeight(e), null);
+                }
+            }
+        }
+        CompactStreetGraph g = forward.build();
+        AStarGraph<Integer> boxed = TestIntAStarSolver.boxed(g);
+        AStarGraph<Integer> reversed = TestIntAStarSolver.boxed(backward.build());
+
+        for (int query = 0; query < 200; query += 1) {
+            int start = r.nextInt(g.numVertices());
+            int end = r.nextInt(g.numVertices());
+            AStarSolver<Integer> expected = new AStarSolver<>(boxed, start, end, 10);
+            BidirectionalAStarSolver<Integer> actual =
+                    new BidirectionalAStarSolver<>(boxed, reversed, start, end, 10);
+            assertEquals(expected.outcome(), actual.outcome());
+            assertEquals(expected.solutionWeight(), actual.solutionWeight(), 1e-9);
+            if (actual.outcome() == SolverOutcome.SOLVED) {
+                assertPath(g, actual.solution(), start, end, actual.solutionWeight());
+            }
+        }
+    }
+}
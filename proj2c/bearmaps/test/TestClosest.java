@@ -0,0 +1,87 @@
+package bearmaps.test;
+
+import bearmaps.proj2ab.Point;
+import bearmaps.proj2c.AugmentedStreetMapGraph;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/** Checks AugmentedStreetMapGraph.closest against a great-circle brute force. */
+public class TestClosest {
+    private static final int NUM_NODES = 2000;
+    /* Far enough north that a degree of longitude is half a degree of latitude. */
+    private static final double LAT = 60;
+    private static final double SPAN = 0.05;
+
+    private File xml;
+    private double[] lons = new double[NUM_NODES];
+    private double[] lats = new double[NUM_NODES];
+
+    @Before
+    public void setUp() throws IOException {
+        Random r = new Random(17);
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<osm>\n");
+        for (int i = 0; i < NUM_NODES; i += 1) {
+            lons[i] = 10 + r.nextDouble() * SPAN;
+            lats[i] = LAT + r.nextDouble() * SPAN;
+            sb.append("<node id=\"").append(i + 1).append("\" lat=\"").append(lats[i])
+                    .append("\" lon=\"").append(lons[i]).append("\"/>\n");
+        }
+        // Join the nodes in pairs, so that every one has a neighbor.
+        for (int i = 0; i + 1 < NUM_NODES; i += 2) {
+            sb.append("<way id=\"").append(i + 1).append("\"><nd ref=\"").append(i + 1)
+                    .append("\"/><nd ref=\"").append(i + 2)
+                    .append("\"/><tag k=\"highway\" v=\"residential\"/></way>\n");
+        }
+        sb.append("</osm>\n");
+        xml = File.createTempFile("closest-test", ".osm.xml");
+        Files.write(xml.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void tearDown() {
+        xml.delete();
+        new File(xml.getPath() + ".snapshot").delete();
+    }
+
+    /** Returns the index of the node nearest (LON, LAT) by great-circle distance. */
+    private int bruteForce(double lon, double lat) {
+        Point target = new Point(lon, lat);
+        int best = 0;
+        for (int i = 1; i < NUM_NODES; i += 1) {
+            if (Point.distance(target, new Point(lons[i], lats[i]))
+                    < Point.distance(target, new Point(lons[best], lats[best]))) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    @Test
+    public void testClosestIsNearestByGreatCircleDistance() {
+        Random r = new Random(18);
+        // Load twice: once parsing the XML, once from the snapshot it wrote.
+        for (int load = 0; load < 2; load += 1) {
+            AugmentedStreetMapGraph graph = new AugmentedStreetMapGraph(xml.getPath());
+            for (int i = 0; i < 2000; i += 1) {
+                double lon = 10 - SPAN / 4 + r.nextDouble() * SPAN * 1.5;
+                double lat = LAT - SPAN / 4 + r.nextDouble() * SPAN * 1.5;
+                int expected = bruteForce(lon, lat);
+                assertEquals(expected + 1, graph.closest(lon, lat));
+
+                List<Long> three = graph.closest(lon, lat, 3);
+                assertEquals(3, three.size());
+                assertEquals(expected + 1, (long) three.get(0));
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package bearmaps.test;
+
+import bearmaps.hw4.streetmap.CompactStreetGraph;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/** Tests of the CSR street graph. */
+public class TestCompactStreetGraph {
+
+    private static CompactStreetGraph buildTinyGraph() {
+        return new CompactStreetGraph.Builder()
+                .addNode(66, 38.6, 0.6)
+                .addNode(11, 38.1, 0.1)
+                .addNode(22, 38.2, 0.2)
+                .addNode(46, 38.6, 0.4)
+                .addEdge(22, 11, 0.5, "Bancroft Way")
+                .addEdge(11, 22, 0.5, "Bancroft Way")
+                .addEdge(22, 46, 1.0, null)
+                .addEdge(46, 66, 0.25, "Telegraph Avenue")
+                .addEdge(22, 66, 3.0, "Telegraph Avenue")
+                .build();
+    }
+
+    @Test
+    public void testVerticesAreSortedById() {
+        CompactStreetGraph g = buildTinyGraph();
+        assertEquals(4, g.numVertices());
+        assertEquals(5, g.numEdges());
+        assertEquals(11, g.id(0));
+        assertEquals(66, g.id(3));
+        assertEquals(2, g.indexOf(46));
+        assertEquals(-1, g.indexOf(33));
+        assertEquals(0.4, g.lon(g.indexOf(46)), 0.0);
+        assertEquals(38.6, g.lat(g.indexOf(46)), 0.0);
+    }
+
+    @Test
+    public void testEdgesKeepInsertionOrder() {
+        CompactStreetGraph g = buildTinyGraph();
+        int v = g.indexOf(22);
+        assertEquals(3, g.degree(v));
+
+        int e = g.firstEdge(v);
+        assertEquals(11, g.id(g.edgeTarget(e)));
+        assertEquals("Bancroft Way", g.edgeName(e));
+        assertEquals(46, g.id(g.edgeTarget(e + 1)));
+        assertNull(g.edgeName(e + 1));
+        assertEquals(66, g.id(g.edgeTarget(e + 2)));
+        assertEquals(3.0, g.edgeWeight(e + 2), 0.0);
+        assertEquals(g.endEdge(v), e + 3);
+
+        assertEquals(0, g.degree(g.indexOf(66)));
+        assertEquals(e + 1, g.findEdge(v, g.indexOf(46)));
+        assertEquals(-1, g.findEdge(g.indexOf(66), v));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEdgeToUnknownVertex() {
+        new CompactStreetGraph.Builder().addNode(1, 0, 0).addEdge(1, 2, 1.0, null).build();
+    }
+}
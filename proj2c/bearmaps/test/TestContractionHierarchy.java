@@ -0,0 +1,120 @@
+package bearmaps.test;
+
+import bearmaps.hw4.IntAStarSolver;
+import bearmaps.hw4.SolverOutcome;
+import bearmaps.hw4.ch.CHSolver;
+import bearmaps.hw4.ch.ContractionHierarchy;
+import bearmaps.hw4.streetmap.CompactStreetGraph;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/** Checks contraction hierarchy queries against A* on random road-like grids. */
+public class TestContractionHierarchy {
+    private static final double EPSILON = 1e-9;
+
+    private static void checkAgainstAStar(CompactStreetGraph g, ContractionHierarchy ch,
+                                          Random r) {
+        for (int query = 0; query < 200; query += 1) {
+            int start = r.nextInt(g.numVertices());
+            int end = r.nextInt(g.numVertices());
+            IntAStarSolver expected = new IntAStarSolver(g, start, end, 10);
+            CHSolver actual = new CHSolver(ch, start, end);
+            assertEquals(expected.outcome(), actual.outcome());
+            assertEquals(expected.solutionWeight(), actual.solutionWeight(), EPSILON);
+            if (actual.outcome() != SolverOutcome.SOLVED) {
+                continue;
+            }
+
+            // The unpacked path must be a real path in g with the reported
+            // weight: each edge leaves one vertex and enters the next.
+            int[] vertices = actual.solutionVertices();
+            int[] edges = actual.solutionEdges();
+            assertEquals(start, vertices[0]);
+            assertEquals(end, vertices[vertices.length - 1]);
+            assertEquals(vertices.length - 1, edges.length);
+            double weight = 0;
+            for (int i = 0; i < edges.length; i += 1) {
+                assertTrue(edges[i] >= g.firstEdge(vertices[i]));
+                assertTrue(edges[i] < g.endEdge(vertices[i]));
+                assertEquals(vertices[i + 1], g.edgeTarget(edges[i]));
+                weight += g.edgeWeight(edges[i]);
+            }
+            assertEquals(actual.solutionWeight(), weight, EPSILON);
+        }
+    }
+
+    @Test
+    public void testMatchesAStar() {
+        Random r = new Random(1998);
+        for (int trial = 0; trial < 3; trial += 1) {
+            CompactStreetGraph g = TestIntAStarSolver.randomGrid(r);
+            checkAgainstAStar(g, ContractionHierarchy.build(g), r);
+        }
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        Random r = new Random(2019);
+        CompactStreetGraph g = TestIntAStarSolver.randomGrid(r);
+        File file = File.createTempFile("bearmaps", ".ch");
+        file.delete();
+        file.deleteOnExit();
+        assertNull(ContractionHierarchy.load(file.getPath(), g));
+
+        ContractionHierarchy built = ContractionHierarchy.loadOrBuild(file.getPath(), g);
+        ContractionHierarchy loaded = ContractionHierarchy.load(file.getPath(), g);
+        assertNotNull(loaded);
+        assertEquals(built.numEdges(), loaded.numEdges());
+        checkAgainstAStar(g, loaded, r);
+
+        // A hierarchy saved for one graph must not be used for another.
+        assertNull(ContractionHierarchy.load(file.getPath(), TestIntAStarSolver.randomGrid(r)));
+    }
+
+    /** Overwrites the int at byte OFFSET of FILE, counting from the end if negative. */
+    private static void writeIntAt(File file, long offset, int value) throws Exception {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(offset < 0 ? raf.length() + offset : offset);
+            raf.writeInt(value);
+        }
+    }
+
+    @Test
+    public void testCorruptFilesAreRebuilt() throws Exception {
+        Random r = new Random(2020);
+        CompactStreetGraph g = TestIntAStarSolver.randomGrid(r);
+        File file = File.createTempFile("bearmaps", ".ch");
+        file.delete();
+        file.deleteOnExit();
+        ContractionHierarchy.loadOrBuild(file.getPath(), g);
+        byte[] good = Files.readAllBytes(file.toPath());
+
+        // The rank array's length follows the magic, version and fingerprint.
+        int rankLength = 16;
+        for (int length : new int[]{-1, Integer.MAX_VALUE, g.numVertices() + 1}) {
+            Files.write(file.toPath(), good);
+            writeIntAt(file, rankLength, length);
+            assertNull(ContractionHierarchy.load(file.getPath(), g));
+        }
+        // The last int is the last downward edge id.
+        Files.write(file.toPath(), good);
+        writeIntAt(file, -4, Integer.MAX_VALUE);
+        assertNull(ContractionHierarchy.load(file.getPath(), g));
+        Files.write(file.toPath(), Arrays.copyOf(good, good.length / 2));
+        assertNull(ContractionHierarchy.load(file.getPath(), g));
+
+        ContractionHierarchy rebuilt = ContractionHierarchy.loadOrBuild(file.getPath(), g);
+        checkAgainstAStar(g, rebuilt, r);
+        assertNotNull(ContractionHierarchy.load(file.getPath(), g));
+    }
+}
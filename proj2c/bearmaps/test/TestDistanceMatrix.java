@@ -0,0 +1,63 @@
+package bearmaps.test;
+
+import bearmaps.hw4.DistanceMatrix;
+import bearmaps.hw4.IntAStarSolver;
+import bearmaps.hw4.OneToManyDijkstra;
+import bearmaps.hw4.SolverOutcome;
+import bearmaps.hw4.ch.CHOneToMany;
+import bearmaps.hw4.ch.ContractionHierarchy;
+import bearmaps.hw4.streetmap.CompactStreetGraph;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/** Checks distance matrices against one A* query per entry. */
+public class TestDistanceMatrix {
+    private static final double EPSILON = 1e-9;
+
+    private static int[] randomVertices(Random r, CompactStreetGraph g, int count) {
+        int[] vertices = new int[count];
+        for (int i = 0; i < count; i += 1) {
+            vertices[i] = r.nextInt(g.numVertices());
+        }
+        // A repeated target must get the same distances as the first.
+        vertices[count - 1] = vertices[0];
+        return vertices;
+    }
+
+    private static void checkAgainstAStar(CompactStreetGraph g, int[] sources, int[] targets,
+                                          double[][] matrix) {
+        assertEquals(sources.length, matrix.length);
+        for (int i = 0; i < sources.length; i += 1) {
+            assertEquals(targets.length, matrix[i].length);
+            for (int j = 0; j < targets.length; j += 1) {
+                IntAStarSolver expected = new IntAStarSolver(g, sources[i], targets[j], 10);
+                double weight = expected.outcome() == SolverOutcome.SOLVED
+                        ? expected.solutionWeight() : Double.POSITIVE_INFINITY;
+                assertEquals(weight, matrix[i][j], EPSILON);
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesAStar() {
+        Random r = new Random(19);
+        DistanceMatrix matrix = new DistanceMatrix(3);
+        try {
+            for (int trial = 0; trial < 2; trial += 1) {
+                CompactStreetGraph g = TestIntAStarSolver.randomGrid(r);
+                ContractionHierarchy ch = ContractionHierarchy.build(g);
+                int[] sources = randomVertices(r, g, 15);
+                int[] targets = randomVertices(r, g, 20);
+                checkAgainstAStar(g, sources, targets,
+                        matrix.compute(new OneToManyDijkstra(g, targets), sources));
+                checkAgainstAStar(g, sources, targets,
+                        matrix.compute(new CHOneToMany(ch, targets), sources));
+            }
+        } finally {
+            matrix.shutdown();
+        }
+    }
+}
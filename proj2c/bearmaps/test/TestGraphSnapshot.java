@@ -0,0 +1,146 @@
+package bearmaps.test;
+
+import bearmaps.hw4.WeightedEdge;
+import bearmaps.hw4.streetmap.CompactStreetGraph;
+import bearmaps.hw4.streetmap.StreetMapGraph;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/** Checks that StreetMapGraph snapshots round-trip and are regenerated when stale. */
+public class TestGraphSnapshot {
+    private static final String NODES =
+            "<node id=\"1\" lat=\"37.870\" lon=\"-122.260\"/>\n"
+            + "<node id=\"2\" lat=\"37.871\" lon=\"-122.260\"/>\n"
+            + "<node id=\"3\" lat=\"37.871\" lon=\"-122.261\">"
+            + "<tag k=\"name\" v=\"Caf\u00e9 Strada\"/></node>\n"
+            + "<node id=\"4\" lat=\"37.872\" lon=\"-122.262\"/>\n"
+            + "<node id=\"5\" lat=\"37.875\" lon=\"-122.265\">"
+            + "<tag k=\"name\" v=\"Lonely Bench\"/></node>\n";
+    private static final String WAY_A = "<way id=\"10\"><nd ref=\"1\"/><nd ref=\"2\"/>"
+            + "<nd ref=\"3\"/><tag k=\"highway\" v=\"residential\"/>"
+            + "<tag k=\"name\" v=\"Bancroft Way\"/></way>\n";
+    private static final String WAY_B = "<way id=\"11\"><nd ref=\"3\"/><nd ref=\"4\"/>"
+            + "<tag k=\"highway\" v=\"primary\"/></way>\n";
+
+    private File xml;
+    private File snapshot;
+
+    @Before
+    public void setUp() throws IOException {
+        xml = File.createTempFile("snapshot-test", ".osm.xml");
+        snapshot = new File(xml.getPath() + ".snapshot");
+        writeXml(WAY_A + WAY_B);
+    }
+
+    @After
+    public void tearDown() {
+        xml.delete();
+        snapshot.delete();
+    }
+
+    private void writeXml(String ways) throws IOException {
+        String content = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<osm>\n" + NODES + ways
+                + "</osm>\n";
+        Files.write(xml.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void assertSameGraph(StreetMapGraph expected, StreetMapGraph actual) {
+        CompactStreetGraph e = expected.compactGraph();
+        CompactStreetGraph a = actual.compactGraph();
+        assertEquals(e.numVertices(), a.numVertices());
+        assertEquals(e.numEdges(), a.numEdges());
+        for (int v = 0; v < e.numVertices(); v += 1) {
+            assertEquals(e.id(v), a.id(v));
+            assertEquals(e.lat(v), a.lat(v), 0.0);
+            assertEquals(e.lon(v), a.lon(v), 0.0);
+            assertEquals(expected.name(e.id(v)), actual.name(a.id(v)));
+            // Parsing does not fix the order of a vertex's edges, so match
+            // them up by target.
+            assertEquals(e.degree(v), a.degree(v));
+            for (int i = e.firstEdge(v); i < e.endEdge(v); i += 1) {
+                int j = a.findEdge(v, e.edgeTarget(i));
+                assertTrue(j >= 0);
+                assertEquals(e.edgeWeight(i), a.edgeWeight(j), 0.0);
+                assertEquals(e.edgeName(i), a.edgeName(j));
+            }
+        }
+        assertEquals(e.id(expected.spatialIndex().nearestId(-122.2615, 37.8712)),
+                a.id(actual.spatialIndex().nearestId(-122.2615, 37.8712)));
+        assertEquals(expected.spatialIndex().size(), actual.spatialIndex().size());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        StreetMapGraph parsed = new StreetMapGraph(xml.getPath());
+        assertTrue(snapshot.isFile());
+        assertEquals(5, parsed.compactGraph().numVertices());
+        assertEquals("Caf\u00e9 Strada", parsed.name(3));
+        assertEquals("Lonely Bench", parsed.name(5));
+        assertNull(parsed.name(1));
+
+        // Swap the XML for one of the same length and timestamp. If the graph
+        // still matches the original, it came from the snapshot.
+        long modified = xml.lastModified();
+        byte[] content = Files.readAllBytes(xml.toPath());
+        String swapped = new String(content, StandardCharsets.UTF_8)
+                .replace("Bancroft Way", "Channing Way");
+        Files.write(xml.toPath(), swapped.getBytes(StandardCharsets.UTF_8));
+        xml.setLastModified(modified);
+
+        StreetMapGraph loaded = new StreetMapGraph(xml.getPath());
+        assertSameGraph(parsed, loaded);
+        List<WeightedEdge<Long>> edges = loaded.neighbors(1L);
+        assertEquals(1, edges.size());
+        assertEquals("Bancroft Way", edges.get(0).getName());
+    }
+
+    @Test
+    public void testRegeneratesWhenXmlChanges() throws IOException {
+        StreetMapGraph before = new StreetMapGraph(xml.getPath());
+        assertEquals(6, before.compactGraph().numEdges());
+        writeXml(WAY_A);
+
+        StreetMapGraph after = new StreetMapGraph(xml.getPath());
+        assertEquals(4, after.compactGraph().numEdges());
+        assertEquals(-1, after.compactGraph().indexOf(4));
+        assertSameGraph(after, new StreetMapGraph(xml.getPath()));
+    }
+
+    @Test
+    public void testCorruptSnapshotFallsBackToXml() throws IOException {
+        StreetMapGraph parsed = new StreetMapGraph(xml.getPath());
+        try (RandomAccessFile file = new RandomAccessFile(snapshot, "rw")) {
+            file.setLength(file.length() / 2);
+        }
+        assertSameGraph(parsed, new StreetMapGraph(xml.getPath()));
+    }
+
+    @Test
+    public void testUnreadableXmlIsNotSnapshotted() throws IOException {
+        // Cut the file off part way through the second way.
+        String content = new String(Files.readAllBytes(xml.toPath()), StandardCharsets.UTF_8);
+        Files.write(xml.toPath(), content.substring(0, content.indexOf("<way id=\"11\"") + 20)
+                .getBytes(StandardCharsets.UTF_8));
+        try {
+            new StreetMapGraph(xml.getPath());
+            fail("A truncated file must not give a graph");
+        } catch (IllegalStateException e) {
+            assertFalse(snapshot.exists());
+        }
+    }
+}
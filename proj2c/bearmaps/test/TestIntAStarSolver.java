@@ -0,0 +1,112 @@
+package bearmaps.test;
+
+import bearmaps.hw4.AStarGraph;
+import bearmaps.hw4.AStarSolver;
+import bearmaps.hw4.IntAStarSolver;
+import bearmaps.hw4.SolverOutcome;
+import bearmaps.hw4.WeightedEdge;
+import bearmaps.hw4.streetmap.CompactStreetGraph;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/** Checks that IntAStarSolver reproduces AStarSolver exactly on random road-like grids. */
+public class TestIntAStarSolver {
+    private static final int SIDE = 40;
+
+    /** Builds a SIDE x SIDE grid of two-way streets with jittered coordinates. */
+    static CompactStreetGraph randomGrid(Random r) {
+        CompactStreetGraph.Builder builder = new CompactStreetGraph.Builder();
+        double[] lat = new double[SIDE * SIDE];
+        double[] lon = new double[SIDE * SIDE];
+        for (int i = 0; i < SIDE * SIDE; i += 1) {
+            lat[i] = 37.85 + (i / SIDE) * 0.001 + r.nextDouble() * 0.0004;
+            lon[i] = -122.27 + (i % SIDE) * 0.001 + r.nextDouble() * 0.0004;
+            builder.addNode(1000 + i, lat[i], lon[i]);
+        }
+        for (int i = 0; i < SIDE * SIDE; i += 1) {
+            int[] next = {i % SIDE + 1 < SIDE ? i + 1 : -1, i + SIDE < SIDE * SIDE ? i + SIDE : -1};
+            for (int j : next) {
+                if (j < 0 || r.nextInt(10) == 0) {
+                    continue;
+                }
+                // Streets are a little longer than the crow flies, so great-circle
+                // distance stays an admissible heuristic.
+                double weight = crowFlies(lat, lon, i, j) * (1.0 + r.nextDouble());
+                String name = "Street " + (j == i + 1 ? i / SIDE : i % SIDE);
+                builder.addEdge(1000 + i, 1000 + j, weight, name);
+                builder.addEdge(1000 + j, 1000 + i, weight, name);
+            }
+        }
+        return builder.build();
+    }
+
+    private static double crowFlies(double[] lat, double[] lon, int i, int j) {
+        double phi1 = Math.toRadians(lat[i]);
+        double phi2 = Math.toRadians(lat[j]);
+        double dphi = Math.toRadians(lat[j] - lat[i]);
+        double dlambda = Math.toRadians(lon[j] - lon[i]);
+        double a = Math.sin(dphi / 2.0) * Math.sin(dphi / 2.0);
+        a += Math.cos(phi1) * Math.cos(phi2) * Math.sin(dlambda / 2.0) * Math.sin(dlambda / 2.0);
+        return 3963 * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    /** Wraps a CompactStreetGraph in the boxed AStarGraph interface. */
+    static AStarGraph<Integer> boxed(CompactStreetGraph g) {
+        return new AStarGraph<Integer>() {
+            @Override
+            public List<WeightedEdge<Integer>> neighbors(Integer v) {
+                List<WeightedEdge<Integer>> edges = new ArrayList<>();
+                for (int e = g.firstEdge(v); e < g.endEdge(v); e += 1) {
+                    edges.add(new WeightedEdge<>(v, g.edgeTarget(e), g.edgeWeight(e)));
+                }
+                return edges;
+            }
+
+            @Override
+            public double estimatedDistanceToGoal(Integer s, Integer goal) {
+                return g.estimatedDistanceToGoal(s, goal);
+            }
+        };
+    }
+
+    @Test
+    public void testMatchesAStarSolver() {
+        Random r = new Random(61);
+        for (int trial = 0; trial < 3; trial += 1) {
+            CompactStreetGraph g = randomGrid(r);
+            AStarGraph<Integer> boxed = boxed(g);
+            for (int query = 0; query < 50; query += 1) {
+                int start = r.nextInt(g.numVertices());
+                int end = r.nextInt(g.numVertices());
+                AStarSolver<Integer> expected = new AStarSolver<>(boxed, start, end, 10);
+                IntAStarSolver actual = new IntAStarSolver(g, start, end, 10);
+                assertEquals(expected.outcome(), actual.outcome());
+                assertEquals(expected.solution(), actual.solution());
+                assertEquals(expected.solutionWeight(), actual.solutionWeight(), 0.0);
+                assertEquals(expected.numStatesExplored(), actual.numStatesExplored());
+            }
+        }
+    }
+
+    @Test
+    public void testSolutionEdgesFollowPath() {
+        CompactStreetGraph g = randomGrid(new Random(62));
+        IntAStarSolver solver = new IntAStarSolver(g, 0, g.numVertices() - 1, 10);
+        assertEquals(SolverOutcome.SOLVED, solver.outcome());
+        int[] vertices = solver.solutionVertices();
+        int[] edges = solver.solutionEdges();
+        assertEquals(vertices.length - 1, edges.length);
+        double weight = 0;
+        for (int i = 0; i < edges.length; i += 1) {
+            assertEquals(vertices[i + 1], g.edgeTarget(edges[i]));
+            assertEquals(edges[i], g.findEdge(vertices[i], vertices[i + 1]));
+            weight += g.edgeWeight(edges[i]);
+        }
+        assertEquals(solver.solutionWeight(), weight, 0.0);
+    }
+}
@@ -0,0 +1,136 @@
+package bearmaps.test;
+
+import bearmaps.proj2ab.IntArrayHeapMinPQ;
+import bearmaps.proj2ab.IntExtrinsicMinPQ;
+import bearmaps.proj2ab.IntQuaternaryHeapMinPQ;
+import bearmaps.proj2ab.IntRadixHeapMinPQ;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/** Checks each IntExtrinsicMinPQ against a brute force scan on Dijkstra-like workloads. */
+public class TestIntMinPQs {
+    private static final int CAPACITY = 300;
+
+    @Test
+    public void testBinaryHeap() {
+        checkMonotoneWorkload(new IntArrayHeapMinPQ(CAPACITY));
+    }
+
+    @Test
+    public void testQuaternaryHeap() {
+        checkMonotoneWorkload(new IntQuaternaryHeapMinPQ(CAPACITY));
+        checkArbitraryWorkload(new IntQuaternaryHeapMinPQ(CAPACITY));
+    }
+
+    @Test
+    public void testRadixHeap() {
+        checkMonotoneWorkload(new IntRadixHeapMinPQ(CAPACITY));
+    }
+
+    @Test
+    public void testRadixHeapRejectsKeysBelowTheLastRemoved() {
+        IntRadixHeapMinPQ pq = new IntRadixHeapMinPQ(4);
+        pq.add(0, 2.5);
+        pq.add(1, 0.0);
+        assertEquals(1, pq.removeSmallest());
+        pq.add(1, 0.0);
+        assertEquals(1, pq.removeSmallest());
+        assertEquals(0, pq.removeSmallest());
+        try {
+            pq.add(2, 1.0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertFalse(pq.contains(2));
+        }
+        pq.clear();
+        pq.add(2, 1.0);
+        assertEquals(1.0, pq.smallestPriority(), 0);
+    }
+
+    /**
+     * Removes the minimum, checks it against a scan of the expected priorities,
+     * then adds or lowers the priorities of a few items by non-negative steps
+     * from it, as Dijkstra's algorithm does, until everything is settled.
+     */
+    private static void checkMonotoneWorkload(IntExtrinsicMinPQ pq) {
+        Random r = new Random(23);
+        for (int round = 0; round < 20; round += 1) {
+            pq.clear();
+            double[] expected = new double[CAPACITY];
+            boolean[] queued = new boolean[CAPACITY];
+            boolean[] settled = new boolean[CAPACITY];
+            pq.add(0, 0);
+            queued[0] = true;
+            double previous = 0;
+            while (pq.size() > 0) {
+                double min = scanMin(expected, queued);
+                assertEquals(min, pq.smallestPriority(), 0);
+                int v = pq.removeSmallest();
+                assertEquals(min, expected[v], 0);
+                assertTrue(min >= previous);
+                previous = min;
+                queued[v] = false;
+                settled[v] = true;
+                for (int i = 0; i < 4; i += 1) {
+                    int w = r.nextInt(CAPACITY);
+                    // Small integer steps make plenty of ties.
+                    double d = min + r.nextInt(5) * 0.25;
+                    if (settled[w]) {
+                        continue;
+                    }
+                    if (!pq.contains(w)) {
+                        pq.add(w, d);
+                        queued[w] = true;
+                        expected[w] = d;
+                    } else if (d < expected[w]) {
+                        pq.changePriority(w, d);
+                        expected[w] = d;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Adds, raises, lowers and removes at random, as a non-monotone PQ must allow. */
+    private static void checkArbitraryWorkload(IntExtrinsicMinPQ pq) {
+        Random r = new Random(29);
+        double[] expected = new double[CAPACITY];
+        boolean[] present = new boolean[CAPACITY];
+        for (int step = 0; step < 20000; step += 1) {
+            int item = r.nextInt(CAPACITY);
+            double priority = r.nextInt(100);
+            int op = r.nextInt(3);
+            if (op == 0 && !present[item]) {
+                pq.add(item, priority);
+                present[item] = true;
+                expected[item] = priority;
+            } else if (op == 1 && present[item]) {
+                pq.changePriority(item, priority);
+                expected[item] = priority;
+            } else if (op == 2 && pq.size() > 0) {
+                double min = scanMin(expected, present);
+                int removed = pq.removeSmallest();
+                assertEquals(min, expected[removed], 0);
+                present[removed] = false;
+            }
+            assertEquals(present[item], pq.contains(item));
+        }
+    }
+
+    /** Returns the least of PRIORITIES[v] over the items v that are QUEUED. */
+    private static double scanMin(double[] priorities, boolean[] queued) {
+        double min = Double.POSITIVE_INFINITY;
+        for (int v = 0; v < priorities.length; v += 1) {
+            if (queued[v] && priorities[v] < min) {
+                min = priorities[v];
+            }
+        }
+        return min;
+    }
+}
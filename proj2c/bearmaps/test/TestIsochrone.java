@@ -0,0 +1,106 @@
+package bearmaps.test;
+
+import bearmaps.hw4.BoundedDijkstra;
+import bearmaps.hw4.IntAStarSolver;
+import bearmaps.hw4.SolverOutcome;
+import bearmaps.hw4.streetmap.CompactStreetGraph;
+import bearmaps.proj2c.Isochrone;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Checks bounded searches and the outlines traced around them. */
+public class TestIsochrone {
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    public void testBoundedSearchFindsExactlyTheBall() {
+        Random r = new Random(20);
+        CompactStreetGraph g = TestIntAStarSolver.randomGrid(r);
+        for (int query = 0; query < 20; query += 1) {
+            int source = r.nextInt(g.numVertices());
+            double budget = r.nextDouble() * 0.3;
+            BoundedDijkstra reach = new BoundedDijkstra(g, source, budget);
+            Set<Integer> reached = new HashSet<>();
+            for (int i = 0; i < reach.numReached(); i += 1) {
+                reached.add(reach.vertex(i));
+                assertTrue(i == 0 || reach.distance(i - 1) <= reach.distance(i));
+            }
+            for (int v = 0; v < g.numVertices(); v += 1) {
+                IntAStarSolver solver = new IntAStarSolver(g, source, v, 10);
+                boolean within = solver.outcome() == SolverOutcome.SOLVED
+                        && solver.solutionWeight() <= budget + EPSILON;
+                assertEquals(within, reached.contains(v));
+            }
+        }
+    }
+
+    /** Twice the signed area of RING, positive if it runs counterclockwise. */
+    private static double signedArea(List<double[]> ring) {
+        double area = 0;
+        for (int i = 0; i + 1 < ring.size(); i += 1) {
+            area += ring.get(i)[0] * ring.get(i + 1)[1] - ring.get(i + 1)[0] * ring.get(i)[1];
+        }
+        return area;
+    }
+
+    /** Returns true if (LON, LAT) is inside RINGS, by the even-odd rule. */
+    private static boolean inside(List<List<double[]>> rings, double lon, double lat) {
+        boolean in = false;
+        for (List<double[]> ring : rings) {
+            for (int i = 0; i + 1 < ring.size(); i += 1) {
+                double[] a = ring.get(i);
+                double[] b = ring.get(i + 1);
+                if ((a[1] > lat) != (b[1] > lat)
+                        && lon < a[0] + (lat - a[1]) / (b[1] - a[1]) * (b[0] - a[0])) {
+                    in = !in;
+                }
+            }
+        }
+        return in;
+    }
+
+    @Test
+    public void testOutlineCoversReachedVertices() {
+        Random r = new Random(2020);
+        CompactStreetGraph g = TestIntAStarSolver.randomGrid(r);
+        for (int query = 0; query < 20; query += 1) {
+            int source = r.nextInt(g.numVertices());
+            double budget = r.nextDouble() * 0.4;
+            Isochrone isochrone = new Isochrone(g, source, budget, 0.02, 64);
+            BoundedDijkstra reach = new BoundedDijkstra(g, source, budget);
+            assertEquals(reach.numReached(), isochrone.numReached());
+
+            List<List<double[]>> rings = isochrone.rings();
+            double area = 0;
+            for (List<double[]> ring : rings) {
+                assertArrayEquals(ring.get(0), ring.get(ring.size() - 1), 0);
+                area += signedArea(ring);
+            }
+            // Holes run clockwise, so the total is the area covered.
+            assertTrue(area > 0);
+            Set<Integer> reached = new HashSet<>();
+            for (int i = 0; i < reach.numReached(); i += 1) {
+                int v = reach.vertex(i);
+                reached.add(v);
+                assertTrue(inside(rings, g.lon(v), g.lat(v)));
+            }
+            // Vertices well beyond the budget as the crow flies are outside.
+            for (int v = 0; v < g.numVertices(); v += 1) {
+                double dLat = (g.lat(v) - g.lat(source)) * 69.17;
+                double dLon = (g.lon(v) - g.lon(source)) * 69.17
+                        * Math.cos(Math.toRadians(g.lat(source)));
+                if (Math.hypot(dLat, dLon) > budget + 0.1) {
+                    assertTrue(!inside(rings, g.lon(v), g.lat(v)));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package bearmaps.test;
+
+import bearmaps.hw4.AStarGraph;
+import bearmaps.hw4.AStarSolver;
+import bearmaps.hw4.IntAStarSolver;
+import bearmaps.hw4.alt.LandmarkAStarGraph;
+import bearmaps.hw4.alt.LandmarkGraph;
+import bearmaps.hw4.alt.Landmarks;
+import bearmaps.hw4.streetmap.CompactStreetGraph;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Checks that the ALT heuristic stays admissible and cuts down A*'s search. */
+public class TestLandmarks {
+
+    @Test
+    public void testLowerBoundIsAdmissible() {
+        Random r = new Random(71);
+        CompactStreetGraph g = TestIntAStarSolver.randomGrid(r);
+        for (Landmarks.Strategy strategy : Landmarks.Strategy.values()) {
+            Landmarks landmarks = Landmarks.select(g, 6, strategy);
+            assertEquals(6, landmarks.numLandmarks());
+            for (int query = 0; query < 100; query += 1) {
+                int start = r.nextInt(g.numVertices());
+                int end = r.nextInt(g.numVertices());
+                IntAStarSolver exact = new IntAStarSolver(g, start, end, 10);
+                assertTrue(landmarks.lowerBound(start, end) <= exact.solutionWeight() + 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testSameWeightsWithFewerStates() {
+        Random r = new Random(72);
+        CompactStreetGraph g = TestIntAStarSolver.randomGrid(r);
+        Landmarks landmarks = Landmarks.select(g, 8, Landmarks.Strategy.AVOID);
+        LandmarkGraph alt = new LandmarkGraph(g, landmarks);
+        AStarGraph<Integer> boxedAlt = new LandmarkAStarGraph<>(
+                TestIntAStarSolver.boxed(g), landmarks, v -> v);
+        int plainStates = 0;
+        int altStates = 0;
+        for (int query = 0; query < 100; query += 1) {
+            int start = r.nextInt(g.numVertices());
+            int end = r.nextInt(g.numVertices());
+            IntAStarSolver plain = new IntAStarSolver(g, start, end, 10);
+            IntAStarSolver withLandmarks = new IntAStarSolver(alt, start, end, 10);
+            AStarSolver<Integer> boxed = new AStarSolver<>(boxedAlt, start, end, 10);
+            assertEquals(plain.outcome(), withLandmarks.outcome());
+            assertEquals(plain.solutionWeight(), withLandmarks.solutionWeight(), 1e-9);
+            assertEquals(withLandmarks.solution(), boxed.solution());
+            assertEquals(withLandmarks.numStatesExplored(), boxed.numStatesExplored());
+            plainStates += plain.numStatesExplored();
+            altStates += withLandmarks.numStatesExplored();
+        }
+        assertTrue(altStates < plainStates);
+    }
+}
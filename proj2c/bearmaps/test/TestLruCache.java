@@ -0,0 +1,65 @@
+package bearmaps.test;
+
+import bearmaps.proj2c.utils.LruCache;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/** Checks LruCache's eviction order, weight bound and statistics. */
+public class TestLruCache {
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        LruCache<String, Integer> cache = new LruCache<>(3);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        assertEquals(1, (int) cache.getIfPresent("a"));
+        cache.put("d", 4);
+        assertNull(cache.getIfPresent("b"));
+        assertEquals(1, (int) cache.getIfPresent("a"));
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.evictions());
+        assertEquals(2, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void testWeightBound() {
+        LruCache<String, String> cache = new LruCache<>(10, String::length);
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbb");
+        cache.put("b", "bb");
+        assertEquals(6, cache.weight());
+        cache.put("c", "cccccc");
+        assertNull(cache.getIfPresent("a"));
+        assertEquals(8, cache.weight());
+        // Too heavy to ever be kept, and replaces what was there.
+        cache.put("b", "bbbbbbbbbbbb");
+        assertNull(cache.getIfPresent("b"));
+        assertEquals(6, cache.weight());
+        cache.invalidate("c");
+        assertEquals(0, cache.weight());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLoaderCalledOnlyOnMiss() {
+        LruCache<Integer, String> cache = new LruCache<>(100);
+        AtomicInteger loads = new AtomicInteger();
+        for (int i = 0; i < 10; i += 1) {
+            assertEquals("7", cache.get(7, k -> {
+                loads.incrementAndGet();
+                return Integer.toString(k);
+            }));
+        }
+        assertEquals(1, loads.get());
+        assertNull(cache.get(8, k -> null));
+        assertEquals(1, cache.size());
+        assertEquals(9, cache.hits());
+        assertEquals(2, cache.misses());
+    }
+}
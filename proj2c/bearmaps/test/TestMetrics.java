@@ -0,0 +1,97 @@
+package bearmaps.test;
+
+import bearmaps.proj2c.server.LatencyHistogram;
+import bearmaps.proj2c.server.Metrics;
+import bearmaps.proj2c.server.RequestTrace;
+import bearmaps.proj2c.utils.LruCache;
+import org.junit.Test;
+import spark.HaltException;
+import spark.Route;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static spark.Spark.halt;
+
+/** Checks LatencyHistogram's precision and what Metrics reports. */
+public class TestMetrics {
+
+    @Test
+    public void testHistogramQuantilesWithinAnEighth() {
+        Random r = new Random(47);
+        LatencyHistogram h = new LatencyHistogram();
+        long[] values = new long[100000];
+        for (int i = 0; i < values.length; i += 1) {
+            // Log-uniform from 1 ns to about 10 s, like request latencies.
+            values[i] = (long) Math.exp(r.nextDouble() * 23);
+            h.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (double q : new double[]{0.01, 0.5, 0.9, 0.99, 0.999, 1}) {
+            long exact = values[(int) Math.ceil(q * values.length) - 1];
+            long estimate = h.valueAtQuantile(q);
+            assertTrue(q + ": " + estimate + " vs " + exact,
+                    estimate >= exact && estimate <= exact + exact / 8 + 1);
+        }
+        assertEquals(values.length, h.count());
+        assertEquals(values[values.length - 1], h.max());
+        assertEquals(values.length, h.countAtOrBelow(Long.MAX_VALUE));
+        assertEquals(0, h.countAtOrBelow(-1));
+        long[] sum = {0};
+        Arrays.stream(values).forEach(v -> sum[0] += v);
+        assertEquals(sum[0], h.sum());
+    }
+
+    @Test
+    public void testScrape() throws Exception {
+        Metrics metrics = new Metrics();
+        Route ok = metrics.instrument("route", (request, response) -> {
+            RequestTrace.current().mark("solve");
+            RequestTrace.current().count("states_explored", 5);
+            return "ok";
+        });
+        Route refused = metrics.instrument("route", (request, response) -> {
+            halt(403, "no");
+            return null;
+        });
+        assertEquals("ok", ok.handle(null, null));
+        assertEquals("ok", ok.handle(null, null));
+        try {
+            refused.handle(null, null);
+            fail();
+        } catch (HaltException e) {
+            assertEquals(403, e.getStatusCode());
+        }
+        // Outside a traced request, marks and counts go nowhere.
+        RequestTrace.current().mark("solve");
+        RequestTrace.current().count("states_explored", 100);
+
+        LruCache<String, String> cache = new LruCache<>(4);
+        cache.get("a", k -> "A");
+        cache.get("a", k -> "A");
+        metrics.registerCache("names", cache);
+
+        String text = metrics.scrape();
+        assertContains(text, "bearmaps_requests_in_flight{route=\"route\"} 0\n");
+        assertContains(text, "bearmaps_requests_total{route=\"route\",status=\"200\"} 2\n");
+        assertContains(text, "bearmaps_requests_total{route=\"route\",status=\"403\"} 1\n");
+        assertContains(text, "bearmaps_request_duration_seconds_count{route=\"route\"} 3\n");
+        assertContains(text,
+                "bearmaps_request_duration_seconds_bucket{route=\"route\",le=\"+Inf\"} 3\n");
+        assertContains(text, "bearmaps_request_phase_duration_seconds_count"
+                + "{route=\"route\",phase=\"solve\"} 2\n");
+        assertContains(text, "bearmaps_request_work_total"
+                + "{route=\"route\",counter=\"states_explored\"} 10\n");
+        assertContains(text, "bearmaps_cache_hits_total{cache=\"names\"} 1\n");
+        assertContains(text, "bearmaps_cache_misses_total{cache=\"names\"} 1\n");
+        assertContains(text, "bearmaps_cache_hit_ratio{cache=\"names\"} 0.5\n");
+        assertContains(text, "# TYPE bearmaps_request_duration_seconds histogram\n");
+    }
+
+    private static void assertContains(String text, String line) {
+        assertTrue("missing " + line, text.contains(line));
+    }
+}
@@ -0,0 +1,176 @@
+package bearmaps.test;
+
+import bearmaps.hw4.streetmap.CompactStreetGraph;
+import bearmaps.hw4.streetmap.NodeStore;
+import bearmaps.hw4.streetmap.OsmReader;
+import org.junit.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/** Checks the graph OsmReader builds, however the ways are split into batches. */
+public class TestOsmReader {
+
+    private static OsmReader read(String xml, int parallelism, int batchRefs) throws Exception {
+        OsmReader reader = new OsmReader(parallelism, batchRefs);
+        reader.read(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        return reader;
+    }
+
+    private static String node(long id, double lat, double lon, String name) {
+        return "<node id=\"" + id + "\" lat=\"" + lat + "\" lon=\"" + lon + "\">"
+                + (name == null ? "" : "<tag k=\"name\" v=\"" + name + "\"/>") + "</node>\n";
+    }
+
+    private static String way(String highway, String name, long... refs) {
+        StringBuilder sb = new StringBuilder("<way id=\"1\">");
+        for (long ref : refs) {
+            sb.append("<nd ref=\"").append(ref).append("\"/>");
+        }
+        sb.append("<tag k=\"highway\" v=\"").append(highway).append("\"/>");
+        if (name != null) {
+            sb.append("<tag k=\"name\" v=\"").append(name).append("\"/>");
+        }
+        return sb.append("</way>\n").toString();
+    }
+
+    @Test
+    public void testStreetRules() throws Exception {
+        String xml = "<osm>\n"
+                + node(5, 37.0, -122.0, null)
+                + node(3, 37.1, -122.0, "Top Dog")
+                + node(4, 37.2, -122.0, null)
+                + node(3, 38.0, -121.0, "Duplicate")
+                + node(7, 37.3, -122.0, null)
+                + node(8, 37.4, -122.0, null)
+                + node(9, 37.5, -122.0, "Lonely Bench")
+                + node(10, 37.6, -122.0, null)
+                + way("residential", "Durant Avenue", 5, 3, 4)
+                // A reference to a node that does not exist breaks the way.
+                + way("primary", null, 4, 6, 7)
+                + way("footway", "Sproul Plaza", 7, 8)
+                + "<relation id=\"2\"><tag k=\"name\" v=\"Ignored\"/></relation>\n"
+                + "</osm>\n";
+        OsmReader reader = read(xml, 2, 1024);
+        CompactStreetGraph g = reader.freeze();
+        assertEquals(4, g.numVertices());
+        assertEquals(3, g.id(0));
+        assertEquals(37.1, g.lat(0), 0.0);
+        NodeStore nodes = reader.nodes();
+        assertEquals(2, nodes.numNames());
+        String[] names = new String[nodes.size()];
+        for (int v = 0; v < names.length; v += 1) {
+            names[v] = nodes.name(v);
+        }
+        assertArrayEquals(new String[]{"Top Dog", null, null, "Lonely Bench"}, names);
+        assertEquals(-1, g.indexOf(7));
+        assertEquals(-1, g.indexOf(8));
+        assertEquals(-1, g.indexOf(10));
+        assertEquals(4, g.numEdges());
+
+        int v = g.indexOf(3);
+        assertEquals(2, g.degree(v));
+        int e = g.findEdge(v, g.indexOf(5));
+        assertEquals("Durant Avenue", g.edgeName(e));
+        assertEquals(e, g.firstEdge(v));
+        assertEquals(0.1 * 3963 * Math.PI / 180, g.edgeWeight(e), 1e-9);
+        assertEquals(0, g.degree(g.indexOf(9)));
+    }
+
+    @Test
+    public void testBatchesMatchOneBatch() throws Exception {
+        Random r = new Random(21);
+        StringBuilder xml = new StringBuilder("<osm>\n");
+        for (int id = 0; id < 300; id += 1) {
+            xml.append(node(id, 37 + r.nextDouble(), -122 + r.nextDouble(),
+                    r.nextInt(10) == 0 ? "Place " + id : null));
+        }
+        for (int w = 0; w < 100; w += 1) {
+            long[] refs = new long[1 + r.nextInt(12)];
+            for (int i = 0; i < refs.length; i += 1) {
+                refs[i] = r.nextInt(320);
+            }
+            xml.append(way(r.nextInt(5) == 0 ? "service" : "tertiary",
+                    r.nextBoolean() ? "Street " + r.nextInt(20) : null, refs));
+        }
+        xml.append("</osm>\n");
+
+        CompactStreetGraph expected = read(xml.toString(), 1, 1 << 20).freeze();
+        assertTrue(expected.numEdges() > 0);
+        for (int batchRefs : new int[]{2, 5, 17}) {
+            CompactStreetGraph actual = read(xml.toString(), 3, batchRefs).freeze();
+            assertEquals(expected.numVertices(), actual.numVertices());
+            assertEquals(expected.numEdges(), actual.numEdges());
+            for (int v = 0; v < expected.numVertices(); v += 1) {
+                assertEquals(expected.id(v), actual.id(v));
+                assertEquals(expected.firstEdge(v), actual.firstEdge(v));
+            }
+            for (int e = 0; e < expected.numEdges(); e += 1) {
+                assertEquals(expected.edgeTarget(e), actual.edgeTarget(e));
+                assertEquals(expected.edgeWeight(e), actual.edgeWeight(e), 0.0);
+                assertEquals(expected.edgeName(e), actual.edgeName(e));
+            }
+        }
+    }
+
+    @Test
+    public void testWaysOnlyJoinNodesReadBeforeThem() throws Exception {
+        String xml = "<osm>\n"
+                + node(1, 37.0, -122.0, null)
+                + node(2, 37.1, -122.0, null)
+                + way("residential", "Early Street", 1, 2, 3)
+                + node(3, 37.2, -122.0, null)
+                + way("residential", "Late Street", 2, 3)
+                + "</osm>\n";
+        // Whether the first way is weighed before or after node 3 is read,
+        // it must not reach node 3.
+        for (int batchRefs : new int[]{1 << 20, 2}) {
+            CompactStreetGraph g = read(xml, 2, batchRefs).freeze();
+            assertEquals(3, g.numVertices());
+            assertEquals(4, g.numEdges());
+            int v = g.indexOf(2);
+            assertEquals("Early Street", g.edgeName(g.findEdge(v, g.indexOf(1))));
+            assertEquals("Late Street", g.edgeName(g.findEdge(v, g.indexOf(3))));
+        }
+    }
+
+    /** Reads XML, which must fail part way through, and checks that freeze() fails too. */
+    private static void assertReadFails(String xml, int batchRefs) {
+        OsmReader reader = new OsmReader(2, batchRefs);
+        try {
+            reader.read(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+            fail("Reading should have failed");
+        } catch (XMLStreamException | RuntimeException e) {
+            // Expected; what matters is that no graph is built from the rest.
+        }
+        try {
+            reader.freeze();
+            fail("freeze() should fail after a failed read");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getCause() != null);
+        }
+    }
+
+    @Test
+    public void testFailedReadsGiveNoGraph() {
+        String start = "<osm>\n"
+                + node(1, 37.0, -122.0, null)
+                + node(2, 37.1, -122.0, null)
+                + way("residential", "First Street", 1, 2);
+        for (int batchRefs : new int[]{1 << 20, 2}) {
+            // Cut off in the middle of an element.
+            assertReadFails(start + "<node id=\"3\" lat=", batchRefs);
+            // Well-formed XML with a coordinate that is not a number.
+            assertReadFails(start + node(3, 37.2, -122.0, null).replace("37.2", "north")
+                    + way("residential", "Second Street", 2, 3) + "</osm>\n", batchRefs);
+        }
+    }
+}
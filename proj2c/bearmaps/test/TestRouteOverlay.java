@@ -0,0 +1,96 @@
+package bearmaps.test;
+
+import bearmaps.proj2c.server.RouteOverlay;
+import bearmaps.proj2c.server.RouteRegistry;
+import bearmaps.proj2c.server.RouteSnapshot;
+import org.junit.Test;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/** Checks that per-tile route layers piece together into the whole route. */
+public class TestRouteOverlay {
+    private static final int TILE = 64;
+    private static final Color COLOR = new Color(108, 181, 230, 200);
+    private static final float WIDTH = 5.0f;
+    /* Vertex v is at (LONS[v], LATS[v]) on a root tile spanning [0, 1] x [0, 1]. */
+    private static final double[] LONS = {0.05, 0.30, 0.30, 0.60, 0.62};
+    private static final double[] LATS = {0.95, 0.70, 0.45, 0.40, 0.05};
+
+    private static RouteOverlay overlay() {
+        return new RouteOverlay(TILE, 0, 1, 1, 0, COLOR, WIDTH,
+                v -> LONS[(int) v], v -> LATS[(int) v], 1 << 20);
+    }
+
+    @Test
+    public void testLayersMatchWholeRoute() {
+        RouteSnapshot route = new RouteRegistry(1).publish("s", Arrays.asList(0L, 1L, 2L, 3L, 4L));
+        RouteOverlay overlay = overlay();
+        int depth = 2;
+        int tiles = 1 << depth;
+
+        BufferedImage expected = new BufferedImage(tiles * TILE, tiles * TILE,
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = expected.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        g2d.setColor(COLOR);
+        g2d.setStroke(new BasicStroke(WIDTH, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+        double scale = tiles * TILE;
+        for (int i = 0; i + 1 < LONS.length; i += 1) {
+            g2d.draw(new Line2D.Double(LONS[i] * scale, (1 - LATS[i]) * scale,
+                    LONS[i + 1] * scale, (1 - LATS[i + 1]) * scale));
+        }
+        g2d.dispose();
+
+        BufferedImage actual = new BufferedImage(tiles * TILE, tiles * TILE,
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D assembled = actual.createGraphics();
+        int layers = 0;
+        for (int x = 0; x < tiles; x += 1) {
+            for (int y = 0; y < tiles; y += 1) {
+                BufferedImage layer = overlay.layer(route, depth, x, y);
+                if (layer != null) {
+                    assembled.drawImage(layer, x * TILE, y * TILE, null);
+                    layers += 1;
+                }
+            }
+        }
+        assembled.dispose();
+
+        for (int y = 0; y < actual.getHeight(); y += 1) {
+            for (int x = 0; x < actual.getWidth(); x += 1) {
+                assertEquals("pixel " + x + ", " + y, expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+        // The route runs down the left half, so the right column is skipped.
+        assertNull(overlay.layer(route, depth, 3, 0));
+        assertEquals(layers, overlay.layerCache().size());
+        assertEquals(7, layers);
+    }
+
+    @Test
+    public void testLayersAreCachedPerRouteVersion() {
+        RouteRegistry routes = new RouteRegistry(1);
+        RouteOverlay overlay = overlay();
+        RouteSnapshot first = routes.publish("s", Arrays.asList(0L, 1L));
+        BufferedImage layer = overlay.layer(first, 1, 0, 0);
+        assertNotNull(layer);
+        assertSame(layer, overlay.layer(first, 1, 0, 0));
+
+        RouteSnapshot second = routes.publish("s", Arrays.asList(0L, 1L));
+        BufferedImage redrawn = overlay.layer(second, 1, 0, 0);
+        assertNotNull(redrawn);
+        assertEquals(2, overlay.layerCache().size());
+        assertNull(overlay.layer(routes.clear("s"), 1, 0, 0));
+    }
+}
@@ -0,0 +1,123 @@
+package bearmaps.test;
+
+import bearmaps.proj2c.server.RouteRegistry;
+import bearmaps.proj2c.server.RouteSnapshot;
+import bearmaps.proj2c.server.handler.impl.RasterAPIHandler;
+import bearmaps.proj2c.server.handler.impl.RasterImageAPIHandler;
+import bearmaps.proj2c.utils.Constants;
+import bearmaps.proj2c.utils.Tuple;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Checks that sessions keep separate routes and that old sessions are evicted. */
+public class TestRouteRegistry {
+
+    @Test
+    public void testSessionsAreIndependent() {
+        RouteRegistry routes = new RouteRegistry(4);
+        assertSame(RouteSnapshot.EMPTY, routes.get("a"));
+
+        List<Long> route = new ArrayList<>(Arrays.asList(1L, 2L, 3L));
+        RouteSnapshot a = routes.publish("a", route);
+        RouteSnapshot b = routes.publish("b", Arrays.asList(4L, 5L));
+        route.add(4L);
+        assertEquals(Arrays.asList(1L, 2L, 3L), routes.get("a").vertices());
+        assertEquals(Arrays.asList(4L, 5L), routes.get("b").vertices());
+        assertTrue(b.version() > a.version());
+
+        RouteSnapshot cleared = routes.clear("a");
+        assertTrue(routes.get("a").isEmpty());
+        assertTrue(cleared.version() > b.version());
+        assertEquals(Arrays.asList(4L, 5L), routes.get("b").vertices());
+    }
+
+    @Test
+    public void testEvictsOldestSessions() {
+        RouteRegistry routes = new RouteRegistry(3);
+        for (long i = 0; i < 5; i += 1) {
+            routes.publish("s" + i, Arrays.asList(i));
+        }
+        // Republishing does not move a session to the back of the line.
+        routes.publish("s2", Arrays.asList(20L));
+        assertEquals(3, routes.size());
+        assertSame(RouteSnapshot.EMPTY, routes.get("s0"));
+        assertSame(RouteSnapshot.EMPTY, routes.get("s1"));
+        assertEquals(Arrays.asList(20L), routes.get("s2").vertices());
+        assertEquals(Arrays.asList(4L), routes.get("s4").vertices());
+    }
+
+    @Test
+    public void testConcurrentPublishers() throws Exception {
+        RouteRegistry routes = new RouteRegistry(64);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int t = 0; t < 8; t += 1) {
+            String session = "t" + t;
+            long base = t * 1000L;
+            tasks.add(pool.submit(() -> {
+                for (long i = 0; i < 1000; i += 1) {
+                    routes.publish(session, Arrays.asList(base, base + i));
+                    List<Long> seen = routes.get(session).vertices();
+                    assertEquals(2, seen.size());
+                    assertEquals(base, (long) seen.get(0));
+                }
+            }));
+        }
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+        pool.shutdown();
+        assertEquals(8, routes.size());
+        for (int t = 0; t < 8; t += 1) {
+            assertEquals(Arrays.asList(t * 1000L, t * 1000L + 999), routes.get("t" + t).vertices());
+        }
+    }
+
+    /** Exposes the ETags RasterImageAPIHandler sends. */
+    private static class EtagProbe extends RasterImageAPIHandler {
+        String etagOf(Map<String, Object> raster, RouteSnapshot route) {
+            return etag(new Tuple<>(raster, route));
+        }
+    }
+
+    @Test
+    public void testEtagsDifferAcrossRegistries() {
+        Map<String, Double> viewport = new HashMap<>();
+        viewport.put("ullon", Constants.ROOT_ULLON);
+        viewport.put("ullat", Constants.ROOT_ULLAT);
+        viewport.put("lrlon", Constants.ROOT_LRLON);
+        viewport.put("lrlat", Constants.ROOT_LRLAT);
+        viewport.put("w", 512.0);
+        viewport.put("h", 512.0);
+        Map<String, Object> raster = new RasterAPIHandler().processRequest(viewport, null);
+        EtagProbe probe = new EtagProbe();
+
+        // A restarted server numbers its routes from 1 again.
+        RouteRegistry before = new RouteRegistry(4);
+        RouteRegistry after = new RouteRegistry(4);
+        RouteSnapshot old = before.publish("a", Arrays.asList(1L, 2L));
+        RouteSnapshot fresh = after.publish("a", Arrays.asList(3L, 4L));
+        assertEquals(old.version(), fresh.version());
+        assertNotEquals(before.epoch(), after.epoch());
+        assertNotEquals(probe.etagOf(raster, old), probe.etagOf(raster, fresh));
+        assertEquals(probe.etagOf(raster, fresh),
+                probe.etagOf(raster, after.get("a")));
+
+        // Without a route the image is the same in every run.
+        assertEquals(probe.etagOf(raster, before.clear("a")),
+                probe.etagOf(raster, RouteSnapshot.EMPTY));
+    }
+}
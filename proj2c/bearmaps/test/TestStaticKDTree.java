@@ -0,0 +1,169 @@
+package bearmaps.test;
+
+import bearmaps.proj2ab.NaivePointSet;
+import bearmaps.proj2ab.Point;
+import bearmaps.proj2ab.StaticKDTree;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/** Checks StaticKDTree against NaivePointSet. */
+public class TestStaticKDTree {
+
+    private static double squaredDistance(Point p, double x, double y) {
+        return (p.getX() - x) * (p.getX() - x) + (p.getY() - y) * (p.getY() - y);
+    }
+
+    /** Returns N random points, with plenty of repeated coordinates. */
+    private static List<Point> randomPoints(Random r, int n) {
+        List<Point> points = new ArrayList<>();
+        for (int i = 0; i < n; i += 1) {
+            points.add(new Point(r.nextInt(1000) / 10.0, r.nextInt(1000) / 10.0));
+        }
+        return points;
+    }
+
+    @Test
+    public void testMatchesNaivePointSet() {
+        Random r = new Random(91);
+        List<Point> points = randomPoints(r, 5000);
+        NaivePointSet naive = new NaivePointSet(points);
+        StaticKDTree tree = new StaticKDTree(points);
+        for (int i = 0; i < 2000; i += 1) {
+            double x = r.nextDouble() * 120 - 10;
+            double y = r.nextDouble() * 120 - 10;
+            // Ties may be broken differently, so compare distances.
+            assertEquals(squaredDistance(naive.nearest(x, y), x, y),
+                    squaredDistance(tree.nearest(x, y), x, y), 0.0);
+            Point byId = points.get(tree.nearestId(x, y));
+            assertEquals(squaredDistance(naive.nearest(x, y), x, y),
+                    squaredDistance(byId, x, y), 0.0);
+        }
+    }
+
+    @Test
+    public void testParallelBuildAndTreeOrder() {
+        Random r = new Random(92);
+        int n = 100000;
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            xs[i] = r.nextDouble();
+            ys[i] = r.nextDouble();
+            ids[i] = 7 * i;
+        }
+        StaticKDTree serial = new StaticKDTree(xs, ys, ids, false);
+        StaticKDTree parallel = new StaticKDTree(xs, ys, ids, true);
+
+        double[] treeXs = new double[n];
+        double[] treeYs = new double[n];
+        int[] treeIds = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            treeXs[i] = parallel.x(i);
+            treeYs[i] = parallel.y(i);
+            treeIds[i] = parallel.id(i);
+        }
+        StaticKDTree copy = StaticKDTree.fromTreeOrder(treeXs, treeYs, treeIds);
+
+        for (int i = 0; i < 1000; i += 1) {
+            double x = r.nextDouble();
+            double y = r.nextDouble();
+            int expected = serial.nearestId(x, y);
+            assertEquals(expected, parallel.nearestId(x, y));
+            assertEquals(expected, copy.nearestId(x, y));
+            assertEquals(xs[expected / 7], serial.nearest(x, y).getX(), 0.0);
+        }
+    }
+
+    /** Sorts a copy of POINTS by x, then y, so results in any order can be compared. */
+    private static List<Point> sorted(List<Point> points) {
+        List<Point> copy = new ArrayList<>(points);
+        copy.sort(Comparator.comparingDouble(Point::getX).thenComparingDouble(Point::getY));
+        return copy;
+    }
+
+    @Test
+    public void testRegionQueriesMatchNaivePointSet() {
+        Random r = new Random(93);
+        List<Point> points = randomPoints(r, 5000);
+        NaivePointSet naive = new NaivePointSet(points);
+        StaticKDTree tree = new StaticKDTree(points);
+        for (int i = 0; i < 300; i += 1) {
+            double x = r.nextDouble() * 100;
+            double y = r.nextDouble() * 100;
+            double w = r.nextDouble() * 20;
+            double h = r.nextDouble() * 20;
+            assertEquals(sorted(naive.rangeSearch(x, y, x + w, y + h)),
+                    sorted(tree.rangeSearch(x, y, x + w, y + h)));
+            assertEquals(sorted(naive.withinRadius(x, y, w)),
+                    sorted(tree.withinRadius(x, y, w)));
+
+            int k = 1 + r.nextInt(40);
+            List<Point> expected = naive.kNearest(x, y, k);
+            List<Point> actual = tree.kNearest(x, y, k);
+            int[] ids = tree.kNearestIds(x, y, k);
+            assertEquals(k, actual.size());
+            for (int j = 0; j < k; j += 1) {
+                // Nearest first; ties may come in any order.
+                assertEquals(squaredDistance(expected.get(j), x, y),
+                        squaredDistance(actual.get(j), x, y), 0.0);
+                assertEquals(actual.get(j), points.get(ids[j]));
+            }
+        }
+        assertEquals(points.size(), tree.kNearest(0, 0, points.size() + 10).size());
+        assertTrue(tree.rangeSearch(200, 200, 300, 300).isEmpty());
+    }
+
+    @Test
+    public void testXScaleMatchesScaledCoordinates() {
+        Random r = new Random(94);
+        int n = 20000;
+        double scale = 0.3;
+        double[] xs = new double[n];
+        double[] scaledXs = new double[n];
+        double[] ys = new double[n];
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            xs[i] = r.nextDouble() * 10;
+            scaledXs[i] = xs[i] * scale;
+            ys[i] = r.nextDouble() * 3;
+            ids[i] = i;
+        }
+        StaticKDTree tree = new StaticKDTree(xs, ys, ids, true, scale);
+        StaticKDTree expected = new StaticKDTree(scaledXs, ys, ids, false);
+        for (int i = 0; i < 1000; i += 1) {
+            double x = r.nextDouble() * 10;
+            double y = r.nextDouble() * 3;
+            int id = tree.nearestId(x, y);
+            int expectedId = expected.nearestId(x * scale, y);
+            assertEquals(squaredDistance(new Point(scaledXs[expectedId], ys[expectedId]),
+                    x * scale, y), squaredDistance(new Point(scaledXs[id], ys[id]),
+                    x * scale, y), 1e-12);
+
+            int[] within = tree.withinRadiusIds(x, y, 0.1);
+            int[] expectedWithin = expected.withinRadiusIds(x * scale, y, 0.1);
+            Arrays.sort(within);
+            Arrays.sort(expectedWithin);
+            assertTrue(Arrays.equals(expectedWithin, within));
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        StaticKDTree tree = new StaticKDTree(new ArrayList<>());
+        assertNull(tree.nearest(1, 2));
+        assertEquals(-1, tree.nearestId(1, 2));
+        assertTrue(tree.kNearest(1, 2, 3).isEmpty());
+        assertTrue(tree.rangeSearch(0, 0, 5, 5).isEmpty());
+        assertTrue(tree.withinRadius(1, 2, 5).isEmpty());
+    }
+}
@@ -0,0 +1,189 @@
+package bearmaps.test;
+
+import bearmaps.lab9.StaticRadixTrie;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Checks StaticRadixTrie's prefix and top-k queries against brute force. */
+public class TestStaticRadixTrie {
+
+    /** Returns a random word over a small alphabet, so that words share prefixes. */
+    private static String randomWord(Random r) {
+        StringBuilder sb = new StringBuilder();
+        int length = r.nextInt(7);
+        for (int i = 0; i < length; i += 1) {
+            sb.append("abc d".charAt(r.nextInt(5)));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testSmall() {
+        String[] keys = {"sather gate", "safeway", "sather tower", "soda hall", "s"};
+        int[] weights = {2, 5, 2, 1, 1};
+        StaticRadixTrie trie = new StaticRadixTrie(keys, weights, 3);
+        assertEquals(Arrays.asList("safeway", "sather gate", "sather tower"),
+                trie.topKeysWithPrefix("s"));
+        assertEquals(Arrays.asList("sather gate", "sather tower"),
+                trie.topKeysWithPrefix("sath"));
+        assertEquals(Arrays.asList("s", "safeway", "sather gate", "sather tower", "soda hall"),
+                trie.keysWithPrefix("s"));
+        assertEquals(Collections.emptyList(), trie.topKeysWithPrefix("sx"));
+        assertEquals(Collections.emptyList(), trie.keysWithPrefix("sather gates"));
+        assertTrue(trie.contains("s"));
+        assertTrue(trie.contains("soda hall"));
+        assertFalse(trie.contains("sa"));
+        assertFalse(trie.contains("soda"));
+        assertEquals(5, trie.weight("safeway"));
+        assertEquals(0, trie.weight("safe"));
+    }
+
+    @Test
+    public void testRandomAgainstBruteForce() {
+        Random r = new Random(15);
+        for (int round = 0; round < 20; round += 1) {
+            Set<String> unique = new HashSet<>();
+            int n = r.nextInt(300);
+            for (int i = 0; i < n; i += 1) {
+                unique.add(randomWord(r));
+            }
+            String[] keys = unique.toArray(new String[0]);
+            int[] weights = new int[keys.length];
+            for (int i = 0; i < keys.length; i += 1) {
+                weights[i] = r.nextInt(5);
+            }
+            int k = r.nextInt(6);
+            StaticRadixTrie trie = new StaticRadixTrie(keys, weights, k);
+            assertEquals(keys.length, trie.size());
+
+            for (int query = 0; query < 200; query += 1) {
+                String prefix = randomWord(r);
+                List<Integer> matches = new ArrayList<>();
+                for (int i = 0; i < keys.length; i += 1) {
+                    if (keys[i].startsWith(prefix)) {
+                        matches.add(i);
+                    }
+                }
+                List<String> expected = new ArrayList<>();
+                for (int i : matches) {
+                    expected.add(keys[i]);
+                }
+                Collections.sort(expected);
+                assertEquals(expected, trie.keysWithPrefix(prefix));
+
+                matches.sort((a, b) -> weights[a] != weights[b]
+                        ? Integer.compare(weights[b], weights[a]) : keys[a].compareTo(keys[b]));
+                List<String> expectedTop = new ArrayList<>();
+                for (int i = 0; i < Math.min(k, matches.size()); i += 1) {
+                    expectedTop.add(keys[matches.get(i)]);
+                }
+                assertEquals(expectedTop, trie.topKeysWithPrefix(prefix));
+                assertEquals(unique.contains(prefix), trie.contains(prefix));
+            }
+        }
+    }
+
+    /**
+     * The edit distance between A and B, counting insertions, deletions,
+     * substitutions and swaps of adjacent characters.
+     */
+    private static int distance(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i += 1) {
+            for (int j = 0; j <= b.length(); j += 1) {
+                if (i == 0 || j == 0) {
+                    d[i][j] = i + j;
+                    continue;
+                }
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1),
+                        d[i - 1][j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2)
+                        && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+                }
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    private static int prefixDistance(String query, String key) {
+        int best = Integer.MAX_VALUE;
+        for (int i = 0; i <= key.length(); i += 1) {
+            best = Math.min(best, distance(key.substring(0, i), query));
+        }
+        return best;
+    }
+
+    @Test
+    public void testFuzzySmall() {
+        String[] keys = {"sather gate", "safeway", "sather tower", "soda hall", "top dog"};
+        int[] weights = {2, 5, 2, 1, 3};
+        StaticRadixTrie trie = new StaticRadixTrie(keys, weights, 5);
+        long budget = 1000000000L;
+        assertEquals(Arrays.asList("sather gate", "sather tower"),
+                trie.fuzzyKeysWithPrefix("sahter", 1, 5, budget));
+        assertEquals(Arrays.asList("safeway", "sather gate", "sather tower"),
+                trie.fuzzyKeysWithPrefix("saf", 1, 5, budget));
+        assertEquals(Arrays.asList("top dog"), trie.fuzzyKeys("top dgo", 1, 5, budget));
+        assertEquals(Collections.emptyList(), trie.fuzzyKeys("top", 2, 5, budget));
+        assertEquals(Arrays.asList("soda hall"), trie.fuzzyKeys("sodahal", 2, 5, budget));
+    }
+
+    @Test
+    public void testFuzzyAgainstBruteForce() {
+        Random r = new Random(16);
+        for (int round = 0; round < 20; round += 1) {
+            Set<String> unique = new HashSet<>();
+            int n = r.nextInt(200);
+            for (int i = 0; i < n; i += 1) {
+                unique.add(randomWord(r));
+            }
+            String[] keys = unique.toArray(new String[0]);
+            int[] weights = new int[keys.length];
+            for (int i = 0; i < keys.length; i += 1) {
+                weights[i] = r.nextInt(5);
+            }
+            int k = 1 + r.nextInt(6);
+            StaticRadixTrie trie = new StaticRadixTrie(keys, weights, k);
+
+            for (int query = 0; query < 100; query += 1) {
+                String q = randomWord(r);
+                int maxDistance = r.nextInt(3);
+                for (boolean prefix : new boolean[]{true, false}) {
+                    List<Integer> matches = new ArrayList<>();
+                    int[] distances = new int[keys.length];
+                    for (int i = 0; i < keys.length; i += 1) {
+                        distances[i] = prefix ? prefixDistance(q, keys[i]) : distance(q, keys[i]);
+                        if (distances[i] <= maxDistance) {
+                            matches.add(i);
+                        }
+                    }
+                    matches.sort((a, b) -> distances[a] != distances[b]
+                            ? Integer.compare(distances[a], distances[b])
+                            : weights[a] != weights[b] ? Integer.compare(weights[b], weights[a])
+                            : keys[a].compareTo(keys[b]));
+                    List<String> expected = new ArrayList<>();
+                    for (int i = 0; i < Math.min(k, matches.size()); i += 1) {
+                        expected.add(keys[matches.get(i)]);
+                    }
+                    List<String> actual = prefix
+                            ? trie.fuzzyKeysWithPrefix(q, maxDistance, k, Long.MAX_VALUE / 2)
+                            : trie.fuzzyKeys(q, maxDistance, k, Long.MAX_VALUE / 2);
+                    assertEquals(q + " within " + maxDistance, expected, actual);
+                }
+            }
+        }
+    }
+}
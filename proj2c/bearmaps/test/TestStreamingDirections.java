@@ -0,0 +1,53 @@
+package bearmaps.test;
+
+import bearmaps.hw4.streetmap.CompactStreetGraph;
+import bearmaps.proj2c.Router;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/** Checks directions streamed from a path's edges. */
+public class TestStreamingDirections {
+
+    /* North twice along First Street, east along Second Street, then south. */
+    private static CompactStreetGraph buildGraph() {
+        return new CompactStreetGraph.Builder()
+                .addNode(1, 37.00, -122.00)
+                .addNode(2, 37.01, -122.00)
+                .addNode(3, 37.02, -122.00)
+                .addNode(4, 37.02, -121.99)
+                .addNode(5, 37.01, -121.99)
+                .addEdge(1, 2, 0.75, "First Street")
+                .addEdge(2, 3, 0.5, "First Street")
+                .addEdge(3, 4, 0.5, "Second Street")
+                .addEdge(4, 5, 0.25, null)
+                .build();
+    }
+
+    private static List<String> directions(CompactStreetGraph g, long... ids) {
+        int[] edges = new int[ids.length - 1];
+        for (int i = 1; i < ids.length; i += 1) {
+            edges[i - 1] = g.findEdge(g.indexOf(ids[i - 1]), g.indexOf(ids[i]));
+        }
+        List<String> result = new ArrayList<>();
+        Router.routeDirections(g, g.indexOf(ids[0]), edges, d -> result.add(d.toString()));
+        return result;
+    }
+
+    @Test
+    public void testTurnsAndWays() {
+        CompactStreetGraph g = buildGraph();
+        assertEquals(Arrays.asList(
+                "Start on First Street and continue for 1.250 miles.",
+                "Turn right on Second Street and continue for 0.500 miles.",
+                "Turn right on unknown road and continue for 0.250 miles."),
+                directions(g, 1, 2, 3, 4, 5));
+        assertEquals(Arrays.asList("Start on First Street and continue for 0.500 miles."),
+                directions(g, 2, 3));
+        assertEquals(new ArrayList<String>(), directions(g, 3));
+    }
+}
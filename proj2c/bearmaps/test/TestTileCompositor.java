@@ -0,0 +1,96 @@
+package bearmaps.test;
+
+import bearmaps.proj2c.server.TileCompositor;
+import org.junit.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/** Checks that TileCompositor draws every tile and does not wait on a busy pool. */
+public class TestTileCompositor {
+    private static final int TILE_SIZE = 4;
+
+    private static BufferedImage solid(Color color) {
+        BufferedImage tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = tile.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+        g.dispose();
+        return tile;
+    }
+
+    /** Returns a grid of ROWS by COLS tiles named PREFIX followed by their row and column. */
+    private static String[][] grid(String prefix, int rows, int cols) {
+        String[][] grid = new String[rows][cols];
+        for (int r = 0; r < rows; r += 1) {
+            for (int c = 0; c < cols; c += 1) {
+                grid[r][c] = prefix + r + c;
+            }
+        }
+        return grid;
+    }
+
+    private static void assertAllDrawn(BufferedImage img, Color color) {
+        for (int y = 0; y < img.getHeight(); y += TILE_SIZE) {
+            for (int x = 0; x < img.getWidth(); x += TILE_SIZE) {
+                assertEquals(color.getRGB(), img.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testDrawsEveryTile() {
+        BufferedImage red = solid(Color.RED);
+        TileCompositor compositor = new TileCompositor(TILE_SIZE, name -> red, 4);
+        assertAllDrawn(compositor.composite(grid("t", 7, 5)), Color.RED);
+        assertAllDrawn(compositor.composite(grid("t", 1, 2)), Color.RED);
+        compositor.shutdown();
+    }
+
+    @Test(timeout = 10000)
+    public void testDoesNotWaitForQueuedHelpers() throws Exception {
+        BufferedImage blue = solid(Color.BLUE);
+        CountDownLatch helperDrawing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // Tiles of grid "a" hold the compositor's only helper thread until
+        // released, once the helper has started on one of them.
+        Function<String, BufferedImage> tiles = name -> {
+            try {
+                if (name.startsWith("a")) {
+                    if (Thread.currentThread().getName().startsWith("tile-compositor-")) {
+                        helperDrawing.countDown();
+                        release.await();
+                    } else {
+                        helperDrawing.await();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return blue;
+        };
+        TileCompositor compositor = new TileCompositor(TILE_SIZE, tiles, 2);
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        Future<BufferedImage> blocked = other.submit(() -> compositor.composite(grid("a", 2, 2)));
+        helperDrawing.await();
+
+        // The helper for this grid is queued behind the held thread, so the
+        // caller draws it alone.
+        assertAllDrawn(compositor.composite(grid("b", 3, 3)), Color.BLUE);
+        assertFalse(blocked.isDone());
+
+        release.countDown();
+        assertAllDrawn(blocked.get(), Color.BLUE);
+        other.shutdown();
+        compositor.shutdown();
+    }
+}
@@ -0,0 +1,74 @@
+package bearmaps.test;
+
+import bearmaps.lab9.TokenIndex;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/** Checks TokenIndex's matching and ranking. */
+public class TestTokenIndex {
+
+    @Test
+    public void testWordsInAnyOrder() {
+        TokenIndex index = new TokenIndex(new String[]{
+            "cafe on telegraph", "telegraph avenue", "cafe strada", "the cafe cafe", "  "});
+        assertArrayEquals(new int[]{0}, index.search("telegraph cafe", 10));
+        assertArrayEquals(new int[]{0}, index.search(" cafe  telegraph cafe", 10));
+        assertArrayEquals(new int[]{0, 1}, index.postings("telegraph"));
+        assertArrayEquals(new int[0], index.search("telegraph pizza", 10));
+        assertArrayEquals(new int[0], index.search("", 10));
+        // Two cafes beat one, and shorter names beat longer ones.
+        assertArrayEquals(new int[]{3, 2, 0}, index.search("cafe", 10));
+        assertArrayEquals(new int[]{3, 2}, index.search("cafe", 2));
+    }
+
+    @Test
+    public void testIntersectionAgainstBruteForce() {
+        Random r = new Random(17);
+        String[] words = {"a", "b", "c", "d", "e", "f", "g", "h"};
+        String[] docs = new String[2000];
+        List<Set<String>> docWords = new ArrayList<>();
+        for (int d = 0; d < docs.length; d += 1) {
+            StringBuilder sb = new StringBuilder();
+            Set<String> seen = new HashSet<>();
+            int length = 1 + r.nextInt(5);
+            for (int i = 0; i < length; i += 1) {
+                // Skewed, so posting lists differ a lot in length.
+                String w = words[Math.min(r.nextInt(8), r.nextInt(8))];
+                sb.append(w).append(' ');
+                seen.add(w);
+            }
+            docs[d] = sb.toString();
+            docWords.add(seen);
+        }
+        TokenIndex index = new TokenIndex(docs);
+        for (int query = 0; query < 200; query += 1) {
+            Set<String> q = new HashSet<>();
+            int length = 1 + r.nextInt(3);
+            for (int i = 0; i < length; i += 1) {
+                q.add(words[r.nextInt(8)]);
+            }
+            Set<Integer> expected = new HashSet<>();
+            for (int d = 0; d < docs.length; d += 1) {
+                if (docWords.get(d).containsAll(q)) {
+                    expected.add(d);
+                }
+            }
+            int[] found = index.search(String.join(" ", q), docs.length);
+            Set<Integer> actual = new HashSet<>();
+            for (int d : found) {
+                actual.add(d);
+            }
+            assertEquals(expected.size(), found.length);
+            assertEquals(expected, actual);
+        }
+        assertEquals(docs.length, index.size());
+    }
+}
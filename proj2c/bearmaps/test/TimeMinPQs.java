@@ -0,0 +1,216 @@
+package bearmaps.test;
+
+import bearmaps.proj2ab.ArrayHeapMinPQ;
+import bearmaps.proj2ab.DoubleMapPQ;
+import bearmaps.proj2ab.ExtrinsicMinPQ;
+import bearmaps.proj2ab.IntArrayHeapMinPQ;
+import bearmaps.proj2ab.IntExtrinsicMinPQ;
+import bearmaps.proj2ab.IntQuaternaryHeapMinPQ;
+import bearmaps.proj2ab.IntRadixHeapMinPQ;
+import edu.princeton.cs.algs4.Stopwatch;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Times each priority queue running Dijkstra's algorithm over a random
+ * grid of roads, which exercises add, contains, changePriority,
+ * smallestPriority and removeSmallest in the mix a route search does, and
+ * heap sorting random priorities, which is not monotone and so leaves out
+ * IntRadixHeapMinPQ.
+ * Each run is repeated a few times first so the JIT has compiled it.
+ * Every queue must settle the same distances, so the checksums must agree.
+ */
+public class TimeMinPQs {
+    private static final int SIDE = 400;
+    private static final int NUM_SORTED = 500000;
+    private static final int WARMUP_ROUNDS = 3;
+
+    /* The grid as adjacency arrays: the edges of v are firstEdge[v] up to firstEdge[v + 1]. */
+    private static int[] firstEdge;
+    private static int[] targets;
+    private static double[] weights;
+
+    public static void main(String[] args) {
+        buildGrid(new Random(37));
+        int n = SIDE * SIDE;
+        System.out.println(String.format("Dijkstra over %d vertices and %d edges",
+                n, firstEdge[n]));
+        timeDijkstra("DoubleMapPQ", new Boxed(DoubleMapPQ::new));
+        timeDijkstra("ArrayHeapMinPQ", new Boxed(ArrayHeapMinPQ::new));
+        timeDijkstra("IntArrayHeapMinPQ", new IntArrayHeapMinPQ(n));
+        timeDijkstra("IntQuaternaryHeapMinPQ", new IntQuaternaryHeapMinPQ(n));
+        timeDijkstra("IntRadixHeapMinPQ", new IntRadixHeapMinPQ(n));
+
+        System.out.println(String.format("Heap sort of %d random priorities", NUM_SORTED));
+        double[] priorities = new Random(41).doubles(NUM_SORTED).toArray();
+        timeSort("DoubleMapPQ", new Boxed(DoubleMapPQ::new), priorities);
+        timeSort("ArrayHeapMinPQ", new Boxed(ArrayHeapMinPQ::new), priorities);
+        timeSort("IntArrayHeapMinPQ", new IntArrayHeapMinPQ(NUM_SORTED), priorities);
+        timeSort("IntQuaternaryHeapMinPQ", new IntQuaternaryHeapMinPQ(NUM_SORTED), priorities);
+    }
+
+    /** Connects each vertex to its grid neighbors by two-way roads of random length. */
+    private static void buildGrid(Random r) {
+        int n = SIDE * SIDE;
+        firstEdge = new int[n + 1];
+        targets = new int[4 * n];
+        weights = new double[4 * n];
+        double[] right = r.doubles(n, 1, 2).toArray();
+        double[] up = r.doubles(n, 1, 2).toArray();
+        int e = 0;
+        for (int v = 0; v < n; v += 1) {
+            firstEdge[v] = e;
+            int x = v % SIDE;
+            int y = v / SIDE;
+            int[] neighbors = {x + 1 < SIDE ? v + 1 : -1, x > 0 ? v - 1 : -1,
+                    y + 1 < SIDE ? v + SIDE : -1, y > 0 ? v - SIDE : -1};
+            double[] lengths = {right[v], x > 0 ? right[v - 1] : 0,
+                    up[v], y > 0 ? up[v - SIDE] : 0};
+            for (int i = 0; i < 4; i += 1) {
+                if (neighbors[i] >= 0) {
+                    targets[e] = neighbors[i];
+                    weights[e] = lengths[i];
+                    e += 1;
+                }
+            }
+        }
+        firstEdge[n] = e;
+    }
+
+    private static void timeDijkstra(String label, IntExtrinsicMinPQ pq) {
+        double checksum = 0;
+        for (int round = 0; round < WARMUP_ROUNDS; round += 1) {
+            checksum = dijkstra(pq);
+        }
+        Stopwatch sw = new Stopwatch();
+        checksum = dijkstra(pq);
+        double time = sw.elapsedTime();
+        System.out.println(String.format("  %-24s %8.3f ms (checksum %.3f)",
+                label, time * 1e3, checksum));
+    }
+
+    /** Returns the sum of the distances from vertex 0 to every vertex. */
+    private static double dijkstra(IntExtrinsicMinPQ pq) {
+        int n = firstEdge.length - 1;
+        double[] dist = new double[n];
+        boolean[] settled = new boolean[n];
+        pq.clear();
+        pq.add(0, 0);
+        double sum = 0;
+        while (pq.size() > 0) {
+            // The settled distance is read from the queue, so a queue that
+            // misreports priorities changes the checksum.
+            sum += pq.smallestPriority();
+            int v = pq.removeSmallest();
+            settled[v] = true;
+            for (int e = firstEdge[v]; e < firstEdge[v + 1]; e += 1) {
+                int w = targets[e];
+                double d = dist[v] + weights[e];
+                if (settled[w]) {
+                    continue;
+                }
+                if (!pq.contains(w)) {
+                    dist[w] = d;
+                    pq.add(w, d);
+                } else if (d < dist[w]) {
+                    dist[w] = d;
+                    pq.changePriority(w, d);
+                }
+            }
+        }
+        return sum;
+    }
+
+    private static void timeSort(String label, IntExtrinsicMinPQ pq, double[] priorities) {
+        double checksum = 0;
+        for (int round = 0; round < WARMUP_ROUNDS; round += 1) {
+            checksum = sort(pq, priorities);
+        }
+        Stopwatch sw = new Stopwatch();
+        checksum = sort(pq, priorities);
+        double time = sw.elapsedTime();
+        System.out.println(String.format("  %-24s %8.3f ms (checksum %.3f)",
+                label, time * 1e3, checksum));
+    }
+
+    /** Adds every priority, then removes them all, and returns a sum that depends on the order. */
+    private static double sort(IntExtrinsicMinPQ pq, double[] priorities) {
+        pq.clear();
+        for (int i = 0; i < priorities.length; i += 1) {
+            pq.add(i, priorities[i]);
+        }
+        double sum = 0;
+        for (int rank = 0; pq.size() > 0; rank += 1) {
+            sum += rank * priorities[pq.removeSmallest()];
+        }
+        return sum;
+    }
+
+    /**
+     * Runs an ExtrinsicMinPQ of boxed Integers through the IntExtrinsicMinPQ
+     * interface. ExtrinsicMinPQ cannot report priorities, so the priority of
+     * each item is kept alongside, indexed by item.
+     */
+    private static class Boxed implements IntExtrinsicMinPQ {
+        private final Supplier<ExtrinsicMinPQ<Integer>> factory;
+        private ExtrinsicMinPQ<Integer> pq;
+        private double[] priorities = new double[16];
+
+        Boxed(Supplier<ExtrinsicMinPQ<Integer>> factory) {
+            this.factory = factory;
+            pq = factory.get();
+        }
+
+        @Override
+        public void add(int item, double priority) {
+            pq.add(item, priority);
+            ensureCapacity(item + 1);
+            priorities[item] = priority;
+        }
+
+        @Override
+        public boolean contains(int item) {
+            return pq.contains(item);
+        }
+
+        @Override
+        public int getSmallest() {
+            return pq.getSmallest();
+        }
+
+        @Override
+        public double smallestPriority() {
+            return priorities[pq.getSmallest()];
+        }
+
+        @Override
+        public int removeSmallest() {
+            return pq.removeSmallest();
+        }
+
+        @Override
+        public void changePriority(int item, double priority) {
+            pq.changePriority(item, priority);
+            priorities[item] = priority;
+        }
+
+        @Override
+        public int size() {
+            return pq.size();
+        }
+
+        @Override
+        public void clear() {
+            pq = factory.get();
+        }
+
+        @Override
+        public void ensureCapacity(int capacity) {
+            if (capacity > priorities.length) {
+                priorities = Arrays.copyOf(priorities, Math.max(capacity, 2 * priorities.length));
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package bearmaps.test;
+
+import bearmaps.proj2ab.KDTree;
+import bearmaps.proj2ab.NaivePointSet;
+import bearmaps.proj2ab.Point;
+import bearmaps.proj2ab.PointSet;
+import bearmaps.proj2ab.StaticKDTree;
+import bearmaps.proj2ab.WeirdPointSet;
+import edu.princeton.cs.algs4.Stopwatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Times construction and nearest queries for each PointSet on random points
+ * spread over the Berkeley map. Each query batch is run a few times first so
+ * the JIT has compiled it before the timed run.
+ */
+public class TimePointSets {
+    private static final int NUM_POINTS = 200000;
+    private static final int NUM_QUERIES = 200000;
+    /* NaivePointSet is linear per query, so it gets far fewer. */
+    private static final int NUM_NAIVE_QUERIES = 500;
+    private static final int WARMUP_ROUNDS = 3;
+
+    public static void main(String[] args) {
+        Random r = new Random(61);
+        List<Point> points = new ArrayList<>();
+        double[] xs = new double[NUM_POINTS];
+        double[] ys = new double[NUM_POINTS];
+        int[] ids = new int[NUM_POINTS];
+        for (int i = 0; i < NUM_POINTS; i += 1) {
+            xs[i] = -122.30 + r.nextDouble() * 0.09;
+            ys[i] = 37.82 + r.nextDouble() * 0.08;
+            ids[i] = i;
+            points.add(new Point(xs[i], ys[i]));
+        }
+        double[] queries = new double[2 * NUM_QUERIES];
+        for (int i = 0; i < NUM_QUERIES; i += 1) {
+            queries[2 * i] = -122.30 + r.nextDouble() * 0.09;
+            queries[2 * i + 1] = 37.82 + r.nextDouble() * 0.08;
+        }
+
+        System.out.println(String.format("%d points, %d queries (%d for NaivePointSet)",
+                NUM_POINTS, NUM_QUERIES, NUM_NAIVE_QUERIES));
+        time("NaivePointSet", NaivePointSet::new, points, queries, NUM_NAIVE_QUERIES);
+        time("WeirdPointSet", WeirdPointSet::new, points, queries, NUM_QUERIES);
+        time("KDTree", KDTree::new, points, queries, NUM_QUERIES);
+        time("StaticKDTree", StaticKDTree::new, points, queries, NUM_QUERIES);
+        time("StaticKDTree (parallel build)", p -> new StaticKDTree(xs, ys, ids, true),
+                points, queries, NUM_QUERIES);
+    }
+
+    private static void time(String label, Function<List<Point>, PointSet> build,
+                             List<Point> points, double[] queries, int numQueries) {
+        // The list is copied because KDTree and WeirdPointSet shuffle it.
+        Stopwatch sw = new Stopwatch();
+        PointSet set = build.apply(new ArrayList<>(points));
+        double buildTime = sw.elapsedTime();
+
+        double checksum = 0;
+        for (int round = 0; round < WARMUP_ROUNDS; round += 1) {
+            checksum += runQueries(set, queries, numQueries);
+        }
+        sw = new Stopwatch();
+        checksum += runQueries(set, queries, numQueries);
+        double queryTime = sw.elapsedTime();
+
+        System.out.println(String.format("%-30s build %7.3f s, %8.3f us/query (checksum %.1f)",
+                label, buildTime, queryTime * 1e6 / numQueries, checksum));
+    }
+
+    private static double runQueries(PointSet set, double[] queries, int numQueries) {
+        double sum = 0;
+        for (int i = 0; i < numQueries; i += 1) {
+            sum += set.nearest(queries[2 * i], queries[2 * i + 1]).getX();
+        }
+        return sum;
+    }
+}
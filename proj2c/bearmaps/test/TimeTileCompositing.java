@@ -0,0 +1,120 @@
+package bearmaps.test;
+
+import bearmaps.proj2c.server.TileCompositor;
+import bearmaps.proj2c.utils.Constants;
+import edu.princeton.cs.algs4.Stopwatch;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Times compositing square grids of tiles on one thread and on all
+ * processors, both when every tile has to be decoded from PNG and when
+ * every tile is already decoded, as it is once the tile cache is warm. The
+ * tiles are synthetic, so the tile images need not be present.
+ */
+public class TimeTileCompositing {
+    private static final int[] GRID_SIZES = {1, 2, 3, 4, 6, 8};
+    private static final int NUM_DISTINCT_TILES = 16;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        Random r = new Random(13);
+        byte[][] pngs = new byte[NUM_DISTINCT_TILES][];
+        BufferedImage[] decoded = new BufferedImage[NUM_DISTINCT_TILES];
+        for (int i = 0; i < NUM_DISTINCT_TILES; i += 1) {
+            decoded[i] = randomTile(r);
+            pngs[i] = encode(decoded[i]);
+        }
+        Function<String, BufferedImage> decoding = name -> decode(pngs[tileNumber(name)]);
+        Function<String, BufferedImage> cached = name -> decoded[tileNumber(name)];
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        System.out.println(String.format("%d processors; milliseconds per raster", processors));
+        System.out.println(String.format("%6s %6s %12s %12s %12s %12s %12s", "grid", "tiles",
+                "decode x1", "decode xN", "cached x1", "cached xN", "encode"));
+        TileCompositor serialDecoding = new TileCompositor(Constants.TILE_SIZE, decoding, 1);
+        TileCompositor parallelDecoding = new TileCompositor(Constants.TILE_SIZE, decoding,
+                processors);
+        TileCompositor serialCached = new TileCompositor(Constants.TILE_SIZE, cached, 1);
+        TileCompositor parallelCached = new TileCompositor(Constants.TILE_SIZE, cached,
+                processors);
+        for (int size : GRID_SIZES) {
+            String[][] grid = new String[size][size];
+            for (int row = 0; row < size; row += 1) {
+                for (int col = 0; col < size; col += 1) {
+                    grid[row][col] = "t" + r.nextInt(NUM_DISTINCT_TILES);
+                }
+            }
+            System.out.println(String.format("%3dx%-2d %6d %12.2f %12.2f %12.2f %12.2f %12.2f",
+                    size, size, size * size,
+                    time(() -> serialDecoding.composite(grid)),
+                    time(() -> parallelDecoding.composite(grid)),
+                    time(() -> serialCached.composite(grid)),
+                    time(() -> parallelCached.composite(grid)),
+                    time(() -> encode(serialCached.composite(grid)))));
+        }
+        serialDecoding.shutdown();
+        parallelDecoding.shutdown();
+        serialCached.shutdown();
+        parallelCached.shutdown();
+    }
+
+    /** Returns the average milliseconds per run of TASK, after a few untimed runs. */
+    private static double time(Runnable task) {
+        for (int i = 0; i < WARMUP_ROUNDS; i += 1) {
+            task.run();
+        }
+        Stopwatch sw = new Stopwatch();
+        for (int i = 0; i < ROUNDS; i += 1) {
+            task.run();
+        }
+        return sw.elapsedTime() * 1000 / ROUNDS;
+    }
+
+    private static int tileNumber(String name) {
+        return Integer.parseInt(name.substring(1));
+    }
+
+    /** Returns a tile of blocky noise, which compresses roughly as badly as a map tile. */
+    private static BufferedImage randomTile(Random r) {
+        BufferedImage tile = new BufferedImage(Constants.TILE_SIZE, Constants.TILE_SIZE,
+                BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < Constants.TILE_SIZE; y += 4) {
+            for (int x = 0; x < Constants.TILE_SIZE; x += 4) {
+                int rgb = r.nextInt(1 << 24);
+                for (int dy = 0; dy < 4; dy += 1) {
+                    for (int dx = 0; dx < 4; dx += 1) {
+                        tile.setRGB(x + dx, y + dy, rgb);
+                    }
+                }
+            }
+        }
+        return tile;
+    }
+
+    private static byte[] encode(BufferedImage img) {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(img, "png", os);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return os.toByteArray();
+    }
+
+    private static BufferedImage decode(byte[] png) {
+        try {
+            return ImageIO.read(new ByteArrayInputStream(png));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
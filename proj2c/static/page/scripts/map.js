@@ -24,6 +24,8 @@ $(function() {
     var getInProgress = false;
     var updatePending = false;
     var route_params = {};
+    // identifies this page's route to the server, so other users' routes are not drawn here
+    const session = Math.random().toString(36).slice(2) + Date.now().toString(36);
     var map;
     var dest;
     var markers = [];
@@ -56,6 +58,7 @@ $(function() {
         host = 'http://localhost:4567';
     }
     const raster_server = host + '/raster';
+    const raster_image = host + '/raster.png';
     const route_server = host + '/route';
     const clear_route = host + '/clear_route';
     const search = host + '/search';
@@ -81,6 +84,14 @@ $(function() {
         markers = [];
     }
 
+    function raster_error() {
+        getInProgress = false;
+        $errorStatus.show();
+        setTimeout(function() {
+            $errorStatus.fadeOut();
+        }, 4000);
+    }
+
     function updateImg() {
         if (getInProgress) {
             updatePending = true;
@@ -92,19 +103,26 @@ $(function() {
         var params = get_view_bounds();
         params.w = w;
         params.h = h;
+        params.session = session;
         console.log(params);
         $warningsContainer.empty();
         $.get({
             async: true,
             url: raster_server,
-            data: params,
+            data: $.extend({b64: false}, params),
             success: function(data) {
                 console.log(data);
-                if (data.query_success) {
+                if (!data.query_success) {
+                    $loadingStatus.hide();
+                    return;
+                }
+                // Fetch the image itself as a plain PNG, which the browser can cache, and
+                // only move the map once it has loaded.
+                const img = new Image();
+                img.onerror = raster_error;
+                img.onload = function() {
                     $loadingStatus.hide();
-                    map.src = 'data:image/png;base64,' + data.b64_encoded_image_data;
-                    console.log('Updating map with image length: ' +
-                                data.b64_encoded_image_data.length);
+                    map.src = img.src;
                     ullon_bound = data.raster_ul_lon;
                     ullat_bound = data.raster_ul_lat;
                     lrlon_bound = data.raster_lr_lon;
@@ -137,17 +155,10 @@ $(function() {
                         updatePending = false;
                         updateImg();
                     }
-                } else {
-                    $loadingStatus.hide();
-                }
-            },
-            error: function() {
-                getInProgress = false;
-                $errorStatus.show();
-                setTimeout(function() {
-                    $errorStatus.fadeOut();
-                }, 4000);
+                };
+                img.src = raster_image + '?' + $.param(params);
             },
+            error: raster_error,
             dataType: 'json'
         });
     }
@@ -178,7 +189,7 @@ $(function() {
         $.get({
             async: true,
             url: route_server,
-            data: route_params,
+            data: $.extend({session: session}, route_params),
             success: function(data) {
                 data = JSON.parse(data);
                 updateImg();
@@ -386,6 +397,7 @@ $(function() {
         $.get({
             async: true,
             url: clear_route,
+            data: {session: session},
             success: function() {
                 dest.style.visibility = 'hidden';
                 $directionsText.html('No routing directions to display.');